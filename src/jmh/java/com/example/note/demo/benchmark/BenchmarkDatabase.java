@@ -0,0 +1,71 @@
+package com.example.note.demo.benchmark;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.flywaydb.core.Flyway;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Embedded H2 database with the application schema for benchmarks.
+ */
+final class BenchmarkDatabase implements AutoCloseable {
+    private final HikariDataSource dataSource;
+    private final JdbcTemplate template;
+
+    BenchmarkDatabase() {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl("jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        dataSource.setMaximumPoolSize(5);
+        Flyway.configure().dataSource(dataSource).load().migrate();
+        template = new JdbcTemplate(dataSource);
+    }
+
+    JdbcTemplate template() {
+        return template;
+    }
+
+    /**
+     * Inserts notes linked to every one of {@code categoriesPerNote} categories and
+     * {@code tagsPerNote} tags.
+     */
+    void fill(int notes, int categoriesPerNote, int tagsPerNote) {
+        List<Object[]> categories = new ArrayList<>();
+        for (int i = 0; i < categoriesPerNote; i++) {
+            categories.add(new Object[]{"category " + i});
+        }
+        template.batchUpdate("INSERT INTO categories (name) VALUES (?)", categories);
+        List<Object[]> tags = new ArrayList<>();
+        for (int i = 0; i < tagsPerNote; i++) {
+            tags.add(new Object[]{"tag " + i, "#000000"});
+        }
+        template.batchUpdate("INSERT INTO tags (name, colour) VALUES (?, ?)", tags);
+
+        List<Object[]> noteRows = new ArrayList<>();
+        List<Object[]> noteCategories = new ArrayList<>();
+        List<Object[]> noteTags = new ArrayList<>();
+        for (long noteId = 1; noteId <= notes; noteId++) {
+            noteRows.add(new Object[]{noteId, "note " + noteId});
+            for (long categoryId = 1; categoryId <= categoriesPerNote; categoryId++) {
+                noteCategories.add(new Object[]{noteId, categoryId});
+            }
+            for (long tagId = 1; tagId <= tagsPerNote; tagId++) {
+                noteTags.add(new Object[]{noteId, tagId});
+            }
+        }
+        template.batchUpdate("""
+                INSERT INTO notes (id, name, date_of_creation, date_of_update, is_done)
+                VALUES (?, ?, CURRENT_DATE, CURRENT_DATE, FALSE)
+                """, noteRows);
+        template.batchUpdate("INSERT INTO note_category (note_id, category_id) VALUES (?, ?)", noteCategories);
+        template.batchUpdate("INSERT INTO note_tag (note_id, tag_id) VALUES (?, ?)", noteTags);
+        template.execute("ALTER TABLE notes ALTER COLUMN id RESTART WITH " + (notes + 1));
+    }
+
+    @Override
+    public void close() {
+        dataSource.close();
+    }
+}
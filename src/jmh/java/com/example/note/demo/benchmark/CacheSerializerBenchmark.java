@@ -0,0 +1,107 @@
+package com.example.note.demo.benchmark;
+
+import com.example.note.demo.configuration.redis.CompactBinaryRedisSerializer;
+import com.example.note.demo.dto.CategoryDto;
+import com.example.note.demo.dto.NoteDto;
+import com.example.note.demo.dto.TagDto;
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import com.fasterxml.jackson.annotation.PropertyAccessor;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.jsontype.impl.LaissezFaireSubTypeValidator;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialize and deserialize time of the cache value serializers for a single note and for the
+ * list of all tags. Entry sizes are printed during setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CacheSerializerBenchmark {
+    private static final int CATEGORIES_PER_NOTE = 5;
+    private static final int TAGS_PER_NOTE = 10;
+    private static final int TAGS = 200;
+
+    @Param({"json", "binary"})
+    String format;
+    @Param({"note", "tags"})
+    String value;
+
+    RedisSerializer<Object> serializer;
+    Object entry;
+    byte[] bytes;
+
+    @Setup
+    public void setUp() {
+        RedisSerializer<Object> json = new GenericJackson2JsonRedisSerializer(objectMapper());
+        serializer = new CompactBinaryRedisSerializer(json, "binary".equals(format));
+        entry = "note".equals(value) ? note() : tags();
+        bytes = serializer.serialize(entry);
+        System.out.printf("%n%s %s: %d bytes per entry%n", format, value, bytes.length);
+    }
+
+    @Benchmark
+    public byte[] serialize() {
+        return serializer.serialize(entry);
+    }
+
+    @Benchmark
+    public Object deserialize() {
+        return serializer.deserialize(bytes);
+    }
+
+    private static NoteDto note() {
+        List<CategoryDto> categories = new ArrayList<>();
+        for (long i = 1; i <= CATEGORIES_PER_NOTE; i++) {
+            categories.add(CategoryDto.builder().id(i).name("category " + i).build());
+        }
+        List<TagDto> tags = new ArrayList<>();
+        for (long i = 1; i <= TAGS_PER_NOTE; i++) {
+            tags.add(TagDto.builder().id(i).name("tag " + i).colour("#00ff00").build());
+        }
+        return NoteDto.builder()
+                .id(42L)
+                .name("Купить продукты на неделю")
+                .dateOfCreation(LocalDate.of(2024, 5, 1))
+                .dateOfUpdate(LocalDate.of(2024, 5, 3))
+                .isDone(false)
+                .categories(categories)
+                .tags(tags)
+                .build();
+    }
+
+    private static List<TagDto> tags() {
+        List<TagDto> tags = new ArrayList<>();
+        for (long i = 1; i <= TAGS; i++) {
+            tags.add(TagDto.builder().id(i).name("tag " + i).colour("#00ff00").build());
+        }
+        return tags;
+    }
+
+    /**
+     * Same settings as the cache object mapper in {@code RedisConfig}.
+     */
+    private static ObjectMapper objectMapper() {
+        ObjectMapper mapper = new ObjectMapper();
+        mapper.registerModule(new JavaTimeModule());
+        mapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        mapper.setVisibility(PropertyAccessor.ALL, JsonAutoDetect.Visibility.ANY);
+        mapper.activateDefaultTyping(LaissezFaireSubTypeValidator.instance,
+                ObjectMapper.DefaultTyping.EVERYTHING,
+                JsonTypeInfo.As.PROPERTY);
+        return mapper;
+    }
+}
@@ -0,0 +1,152 @@
+package com.example.note.demo.benchmark;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Closed-loop HTTP load against a running application: each of {@code concurrency} clients sends
+ * the next request as soon as the previous one completes. The mix is 60% note by id (cache), 30%
+ * filtered pages (database) and 10% note creation. Prints throughput and latency percentiles.
+ * <p>
+ * {@code java -cp target/test-classes com.example.note.demo.benchmark.LoadGenerator
+ * [baseUrl] [concurrency] [seconds]}
+ */
+public final class LoadGenerator {
+    private static final int NOTES = 1000;
+    private static final int CATEGORIES = 20;
+    private static final int TAGS = 50;
+
+    private LoadGenerator() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        String baseUrl = args.length > 0 ? args[0] : "http://localhost:8080";
+        int concurrency = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+        Duration duration = Duration.ofSeconds(args.length > 2 ? Long.parseLong(args[2]) : 30);
+
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        seed(client, baseUrl);
+        run(client, baseUrl, concurrency, Duration.ofSeconds(5));
+        run(client, baseUrl, concurrency, duration).print(concurrency, duration);
+    }
+
+    private static Result run(HttpClient client, String baseUrl, int concurrency, Duration duration) throws Exception {
+        long deadline = System.nanoTime() + duration.toNanos();
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+        try {
+            List<Future<Result>> futures = new ArrayList<>();
+            for (int i = 0; i < concurrency; i++) {
+                futures.add(executor.submit(() -> worker(client, baseUrl, deadline)));
+            }
+            Result total = new Result();
+            for (Future<Result> future : futures) {
+                total.add(future.get());
+            }
+            return total;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static Result worker(HttpClient client, String baseUrl, long deadline) {
+        Result result = new Result();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (System.nanoTime() < deadline) {
+            int kind = random.nextInt(10);
+            HttpRequest request;
+            if (kind < 6) {
+                request = HttpRequest.newBuilder(URI.create(baseUrl + "/note/" + (1 + random.nextInt(NOTES)))).build();
+            } else if (kind < 9) {
+                request = HttpRequest.newBuilder(URI.create(baseUrl + "/note/page?limit=50&categoryId="
+                        + (1 + random.nextInt(CATEGORIES)))).build();
+            } else {
+                request = HttpRequest.newBuilder(URI.create(baseUrl + "/note"))
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString(note(random.nextInt(NOTES))))
+                        .build();
+            }
+            long start = System.nanoTime();
+            try {
+                HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                result.record(System.nanoTime() - start, response.statusCode() < 400);
+            } catch (Exception e) {
+                result.record(System.nanoTime() - start, false);
+            }
+        }
+        return result;
+    }
+
+    private static void seed(HttpClient client, String baseUrl) throws Exception {
+        StringBuilder body = new StringBuilder("[");
+        for (int i = 0; i < NOTES; i++) {
+            body.append(i == 0 ? "" : ",").append(note(i));
+        }
+        body.append(']');
+        HttpResponse<Void> response = client.send(HttpRequest.newBuilder(URI.create(baseUrl + "/note/batch"))
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString(body.toString()))
+                        .build(),
+                HttpResponse.BodyHandlers.discarding());
+        System.out.printf("Seeded %d notes, HTTP %d%n", NOTES, response.statusCode());
+    }
+
+    private static String note(int i) {
+        return """
+                {"name":"note %d","dateOfCreation":"2024-01-01","dateOfUpdate":"2024-01-01","isDone":false,\
+                "categories":[{"name":"category %d"},{"name":"category %d"}],\
+                "tags":[{"name":"tag %d","colour":"#00ff00"},{"name":"tag %d","colour":"#ff0000"}]}\
+                """.formatted(i, i % CATEGORIES, (i + 1) % CATEGORIES, i % TAGS, (i + 7) % TAGS);
+    }
+
+    private static final class Result {
+        long[] latencies = new long[1024];
+        int count;
+        int errors;
+
+        void record(long nanos, boolean ok) {
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = nanos;
+            if (!ok) {
+                errors++;
+            }
+        }
+
+        void add(Result other) {
+            for (int i = 0; i < other.count; i++) {
+                record(other.latencies[i], true);
+            }
+            errors += other.errors;
+        }
+
+        void print(int concurrency, Duration duration) {
+            long[] sorted = Arrays.copyOf(latencies, count);
+            Arrays.sort(sorted);
+            System.out.printf("clients=%d requests=%d errors=%d throughput=%.1f req/s "
+                            + "p50=%.2f ms p99=%.2f ms max=%.2f ms%n",
+                    concurrency, count, errors, count / (double) duration.toSeconds(),
+                    percentile(sorted, 0.50), percentile(sorted, 0.99), percentile(sorted, 1.0));
+        }
+
+        private static double percentile(long[] sorted, double quantile) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            return sorted[(int) Math.min(sorted.length - 1, Math.ceil(quantile * sorted.length) - 1)] / 1e6;
+        }
+    }
+}
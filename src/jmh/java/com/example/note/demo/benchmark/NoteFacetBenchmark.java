@@ -0,0 +1,73 @@
+package com.example.note.demo.benchmark;
+
+import com.example.note.demo.dto.NoteFacetFilter;
+import com.example.note.demo.dto.NoteFacetsDto;
+import com.example.note.demo.model.*;
+import com.example.note.demo.service.NoteSearchIndex;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Facet counts over all notes and over done notes with one tag and one category.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+public class NoteFacetBenchmark {
+    private static final int TAGS = 50;
+    private static final int CATEGORIES = 20;
+    private static final int TAGS_PER_NOTE = 3;
+
+    @Param({"1000000"})
+    int notes;
+
+    NoteSearchIndex index;
+    NoteFacetFilter all = new NoteFacetFilter();
+    NoteFacetFilter doneWithTagAndCategory = NoteFacetFilter.builder()
+            .tagId(List.of(7L))
+            .categoryId(List.of(3L))
+            .isDone(true)
+            .build();
+
+    @Setup
+    public void setUp() {
+        index = new NoteSearchIndex(null, new SimpleMeterRegistry(), 10000);
+        Random random = new Random(42);
+        List<Note> batch = new ArrayList<>();
+        for (long id = 1; id <= notes; id++) {
+            Note note = Note.builder().id(id).name("note " + id).isDone(random.nextBoolean()).build();
+            List<NoteTag> tags = new ArrayList<>();
+            for (int i = 0; i < TAGS_PER_NOTE; i++) {
+                tags.add(NoteTag.builder().tag(Tag.builder().id(1L + random.nextInt(TAGS)).build()).build());
+            }
+            note.setNoteTags(tags);
+            note.setNoteCategories(List.of(NoteCategory.builder()
+                    .category(Category.builder().id(1L + random.nextInt(CATEGORIES)).build())
+                    .build()));
+            batch.add(note);
+            if (batch.size() == 10000) {
+                index.index(batch);
+                batch.clear();
+            }
+        }
+        index.index(batch);
+    }
+
+    @Benchmark
+    public NoteFacetsDto allNotes() {
+        return index.facets(all);
+    }
+
+    @Benchmark
+    public NoteFacetsDto doneWithTagAndCategory() {
+        return index.facets(doneWithTagAndCategory);
+    }
+}
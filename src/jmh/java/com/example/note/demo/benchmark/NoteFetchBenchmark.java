@@ -0,0 +1,98 @@
+package com.example.note.demo.benchmark;
+
+import com.example.note.demo.model.Note;
+import com.example.note.demo.repository.NoteChangeRepository;
+import com.example.note.demo.repository.NoteRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares reading notes with a single LEFT JOIN over both link tables, de-duplicated row by row
+ * the way the former {@code NoteWithRelationsExtractor} did, with the two-phase fetch used by
+ * {@link NoteRepository}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NoteFetchBenchmark {
+    private static final String JOIN_QUERY = """
+            SELECT
+                n.id as note_id, n.name as note_name, n.date_of_creation, n.date_of_update, n.is_done,
+                c.id as category_id, c.name as category_name,
+                t.id as tag_id, t.name as tag_name, t.colour as tag_colour
+            FROM notes n
+            LEFT JOIN note_category nc ON n.id = nc.note_id
+            LEFT JOIN categories c ON nc.category_id = c.id
+            LEFT JOIN note_tag nt ON n.id = nt.note_id
+            LEFT JOIN tags t ON nt.tag_id = t.id
+            ORDER BY n.id
+            """;
+
+    @Param({"200"})
+    int notes;
+    @Param({"1", "20"})
+    int categoriesPerNote;
+    @Param({"1", "30"})
+    int tagsPerNote;
+
+    BenchmarkDatabase database;
+    NoteRepository repository;
+
+    @Setup
+    public void setUp() {
+        database = new BenchmarkDatabase();
+        database.fill(notes, categoriesPerNote, tagsPerNote);
+        repository = new NoteRepository(database.template(), new NoteChangeRepository(database.template()),
+                new SimpleMeterRegistry());
+    }
+
+    @TearDown
+    public void tearDown() {
+        database.close();
+    }
+
+    @Benchmark
+    public Map<Long, List<Long>> joinAll() {
+        return joinFetch(database.template());
+    }
+
+    @Benchmark
+    public List<Note> twoPhaseAll() {
+        return repository.getAll();
+    }
+
+    @Benchmark
+    public Note twoPhaseById() {
+        return repository.getById(1L);
+    }
+
+    private static Map<Long, List<Long>> joinFetch(JdbcTemplate template) {
+        Map<Long, List<Long>> categories = new HashMap<>();
+        Map<Long, List<Long>> tags = new HashMap<>();
+        template.query(JOIN_QUERY, rs -> {
+            long noteId = rs.getLong("note_id");
+            List<Long> noteCategories = categories.computeIfAbsent(noteId, id -> new ArrayList<>());
+            long categoryId = rs.getLong("category_id");
+            if (noteCategories.stream().noneMatch(id -> id == categoryId)) {
+                noteCategories.add(categoryId);
+            }
+            List<Long> noteTags = tags.computeIfAbsent(noteId, id -> new ArrayList<>());
+            long tagId = rs.getLong("tag_id");
+            if (noteTags.stream().noneMatch(id -> id == tagId)) {
+                noteTags.add(tagId);
+            }
+        });
+        categories.putAll(tags);
+        return categories;
+    }
+}
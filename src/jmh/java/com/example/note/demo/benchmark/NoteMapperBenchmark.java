@@ -0,0 +1,66 @@
+package com.example.note.demo.benchmark;
+
+import com.example.note.demo.dto.NoteDto;
+import com.example.note.demo.model.*;
+import com.example.note.demo.util.mapper.NoteMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mapping of large note lists with their categories and tags to DTOs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NoteMapperBenchmark {
+    private static final int CATEGORIES_PER_NOTE = 3;
+    private static final int TAGS_PER_NOTE = 5;
+
+    @Param({"100", "10000"})
+    int notes;
+
+    NoteMapper mapper = new NoteMapper();
+    List<Note> entities;
+
+    @Setup
+    public void setUp() {
+        entities = new ArrayList<>(notes);
+        for (long id = 1; id <= notes; id++) {
+            Note note = new Note();
+            note.setId(id);
+            note.setName("note " + id);
+            note.setDateOfCreation(LocalDate.of(2024, 1, 1));
+            note.setDateOfUpdate(LocalDate.of(2024, 1, 2));
+            note.setIsDone(id % 2 == 0);
+            List<NoteCategory> categories = new ArrayList<>();
+            for (long i = 1; i <= CATEGORIES_PER_NOTE; i++) {
+                categories.add(NoteCategory.builder()
+                        .note(note)
+                        .category(Category.builder().id(i).name("category " + i).build())
+                        .build());
+            }
+            List<NoteTag> tags = new ArrayList<>();
+            for (long i = 1; i <= TAGS_PER_NOTE; i++) {
+                tags.add(NoteTag.builder()
+                        .note(note)
+                        .tag(Tag.builder().id(i).name("tag " + i).colour("#00ff00").build())
+                        .build());
+            }
+            note.setNoteCategories(categories);
+            note.setNoteTags(tags);
+            entities.add(note);
+        }
+    }
+
+    @Benchmark
+    public List<NoteDto> toDto() {
+        return mapper.toDto(entities);
+    }
+}
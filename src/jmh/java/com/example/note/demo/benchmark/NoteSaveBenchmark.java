@@ -0,0 +1,63 @@
+package com.example.note.demo.benchmark;
+
+import com.example.note.demo.dto.CategoryDto;
+import com.example.note.demo.dto.TagDto;
+import com.example.note.demo.model.Note;
+import com.example.note.demo.repository.NoteChangeRepository;
+import com.example.note.demo.repository.NoteRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Saving a note with N categories and N tags whose names already exist, which resolves the names
+ * and inserts the note with its links.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NoteSaveBenchmark {
+    @Param({"0", "10", "50"})
+    int links;
+
+    BenchmarkDatabase database;
+    NoteRepository repository;
+    List<CategoryDto> categories;
+    List<TagDto> tags;
+
+    @Setup
+    public void setUp() {
+        database = new BenchmarkDatabase();
+        repository = new NoteRepository(database.template(), new NoteChangeRepository(database.template()),
+                new SimpleMeterRegistry());
+        categories = new ArrayList<>();
+        tags = new ArrayList<>();
+        for (int i = 0; i < links; i++) {
+            categories.add(CategoryDto.builder().name("category " + i).build());
+            tags.add(TagDto.builder().name("tag " + i).colour("#00ff00").build());
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        database.close();
+    }
+
+    @Benchmark
+    public Note save() {
+        Note note = Note.builder()
+                .name("note")
+                .dateOfCreation(LocalDate.of(2024, 1, 1))
+                .dateOfUpdate(LocalDate.of(2024, 1, 1))
+                .isDone(false)
+                .build();
+        return repository.save(note, categories, tags);
+    }
+}
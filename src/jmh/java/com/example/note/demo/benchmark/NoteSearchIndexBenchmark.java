@@ -0,0 +1,78 @@
+package com.example.note.demo.benchmark;
+
+import com.example.note.demo.model.*;
+import com.example.note.demo.service.NoteSearchIndex;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Search over an index of generated Russian note names: a rare word, a common word, a prefix of
+ * several words and a common word filtered by tag.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+public class NoteSearchIndexBenchmark {
+    private static final String[] WORDS = {
+            "купить", "продукты", "молоко", "хлеб", "позвонить", "маме", "отчёт", "квартальный", "встреча",
+            "команда", "проект", "релиз", "починить", "велосипед", "записаться", "врач", "оплатить", "счёт",
+            "прочитать", "книга", "подарок", "день", "рождения", "билеты", "поезд", "отпуск", "ремонт", "кухня"
+    };
+    private static final int TAGS = 50;
+    private static final int CATEGORIES = 20;
+
+    @Param({"1000000"})
+    int notes;
+    @Param({"велосипед", "купить", "про", "отчет квартальный"})
+    String query;
+
+    NoteSearchIndex index;
+
+    @Setup
+    public void setUp() {
+        index = new NoteSearchIndex(null, new SimpleMeterRegistry(), 10000);
+        Random random = new Random(42);
+        List<Note> batch = new ArrayList<>();
+        for (long id = 1; id <= notes; id++) {
+            StringBuilder name = new StringBuilder();
+            int words = 2 + random.nextInt(4);
+            for (int i = 0; i < words; i++) {
+                // skewed towards the first words so that some terms are common and some rare
+                int word = (int) (WORDS.length * Math.pow(random.nextDouble(), 2));
+                name.append(i == 0 ? "" : " ").append(WORDS[word]);
+            }
+            name.append(' ').append(id);
+            Note note = Note.builder().id(id).name(name.toString()).build();
+            note.setNoteTags(List.of(NoteTag.builder()
+                    .tag(Tag.builder().id(1 + id % TAGS).build())
+                    .build()));
+            note.setNoteCategories(List.of(NoteCategory.builder()
+                    .category(Category.builder().id(1 + id % CATEGORIES).build())
+                    .build()));
+            batch.add(note);
+            if (batch.size() == 10000) {
+                index.index(batch);
+                batch.clear();
+            }
+        }
+        index.index(batch);
+    }
+
+    @Benchmark
+    public List<Long> search() {
+        return index.search(query, null, null, 20);
+    }
+
+    @Benchmark
+    public List<Long> searchByTag() {
+        return index.search(query, 7L, null, 20);
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.note.demo.configuration.cache;
+
+import com.example.note.demo.dto.NoteDto;
+import com.example.note.demo.dto.TagDto;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Read paths of {@link TwoLevelCache} with an in-memory map standing in for Redis: a hit in the
+ * local tier, and a local miss served from the shared tier.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TwoLevelCacheBenchmark {
+    private static final Long KEY = 1L;
+
+    TwoLevelCache cache;
+
+    @Setup
+    public void setUp() {
+        cache = new TwoLevelCache("notes", new ConcurrentMapCache("notes", false),
+                TwoLevelCacheManager.localCache(100_000),
+                new CacheInvalidationPublisher(new StringRedisTemplate(), "cache-invalidation"),
+                CacheWriteListener.NONE, Duration.ofMinutes(5), 0.1, 1.0);
+        NoteDto note = NoteDto.builder()
+                .id(KEY)
+                .name("note")
+                .dateOfCreation(LocalDate.of(2024, 1, 1))
+                .dateOfUpdate(LocalDate.of(2024, 1, 1))
+                .isDone(false)
+                .categories(List.of())
+                .tags(List.of(TagDto.builder().id(1L).name("tag").colour("#00ff00").build()))
+                .build();
+        cache.get(KEY, () -> note);
+    }
+
+    @Benchmark
+    public Object localHit() {
+        return cache.get(KEY, () -> {
+            throw new IllegalStateException("Unexpected load");
+        });
+    }
+
+    @Benchmark
+    public Object sharedHit() {
+        cache.evictLocal(TwoLevelCache.localKey(KEY));
+        return cache.get(KEY, () -> {
+            throw new IllegalStateException("Unexpected load");
+        });
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.note.demo.configuration.cache;
+
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.util.ByteUtils;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.function.UnaryOperator;
+
+/**
+ * Changes values cached in Redis in place instead of evicting them. The value is read, changed and
+ * written back with a Lua script that writes only if Redis still holds the bytes that were read, so
+ * a concurrent write is never overwritten with a value derived from an older one. After
+ * {@code maxAttempts} lost races the entry is evicted.
+ * <p>
+ * The written value replaces the local tier entry of this node and is evicted from the local tiers
+ * of the other nodes, like a {@link TwoLevelCache#put} would.
+ */
+@Slf4j
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class CacheEntryPatcher {
+    private static final byte[] COMPARE_AND_SET = """
+            if redis.call('GET', KEYS[1]) ~= ARGV[1] then
+                return 0
+            end
+            if tonumber(ARGV[3]) > 0 then
+                redis.call('SET', KEYS[1], ARGV[2], 'PX', ARGV[3])
+            else
+                redis.call('SET', KEYS[1], ARGV[2])
+            end
+            return 1
+            """.getBytes(StandardCharsets.UTF_8);
+
+    StringRedisTemplate template;
+    TwoLevelCacheManager cacheManager;
+    int maxAttempts;
+
+    public CacheEntryPatcher(StringRedisTemplate template, TwoLevelCacheManager cacheManager, int maxAttempts) {
+        this.template = template;
+        this.cacheManager = cacheManager;
+        this.maxAttempts = maxAttempts;
+    }
+
+    /**
+     * Applies the change to the cached value of the key, if there is one of the given type. The change
+     * gets a deserialized copy it may modify and returns the new value, or {@code null} to keep the
+     * cached one.
+     *
+     * @return the value written, or {@code null} if nothing was written
+     */
+    public <T> T patch(String cacheName, Object key, Class<T> type, UnaryOperator<T> change) {
+        RedisCacheConfiguration configuration = cacheManager.getRedisCacheConfiguration(cacheName);
+        if (!(cacheManager.getCache(cacheName) instanceof TwoLevelCache cache) || configuration == null) {
+            throw new IllegalArgumentException("Unknown cache " + cacheName);
+        }
+        String cacheKey = configuration.getKeyPrefixFor(cacheName)
+                + configuration.getConversionService().convert(key, String.class);
+        byte[] redisKey = ByteUtils.getBytes(configuration.getKeySerializationPair().write(cacheKey));
+        try {
+            for (int attempt = 0; attempt < maxAttempts; attempt++) {
+                byte[] current = template.execute((RedisCallback<byte[]>) connection ->
+                        connection.stringCommands().get(redisKey));
+                if (current == null) {
+                    // nothing to patch in Redis, but this node may still hold the value locally
+                    cache.evictLocal(TwoLevelCache.localKey(key));
+                    return null;
+                }
+                Object value = configuration.getValueSerializationPair().read(ByteBuffer.wrap(current));
+                if (!type.isInstance(value)) {
+                    cache.evict(key);
+                    return null;
+                }
+                T patched = change.apply(type.cast(value));
+                if (patched == null) {
+                    return null;
+                }
+                byte[] next = ByteUtils.getBytes(configuration.getValueSerializationPair().write(patched));
+                Duration ttl = configuration.getTtlFunction().getTimeToLive(key, patched);
+                byte[] ttlMillis = String.valueOf(ttl.toMillis()).getBytes(StandardCharsets.UTF_8);
+                Long written = template.execute((RedisCallback<Long>) connection -> connection.scriptingCommands()
+                        .eval(COMPARE_AND_SET, ReturnType.INTEGER, 1, redisKey, current, next, ttlMillis));
+                if (written != null && written == 1) {
+                    cache.putWritten(key, patched);
+                    return patched;
+                }
+                log.debug("Entry {} of cache {} changed while patching, attempt {}", cacheKey, cacheName, attempt + 1);
+            }
+            log.debug("Evicting entry {} of cache {} after {} failed patch attempts", cacheKey, cacheName, maxAttempts);
+            cache.evict(key);
+        } catch (RuntimeException e) {
+            log.warn("Failed to patch entry {} of cache {}: {}", cacheKey, cacheName, e.getMessage());
+            cache.evictLocal(TwoLevelCache.localKey(key));
+        }
+        return null;
+    }
+}
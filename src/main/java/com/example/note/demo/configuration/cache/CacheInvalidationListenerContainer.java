@@ -0,0 +1,50 @@
+package com.example.note.demo.configuration.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.listener.adapter.RedisListenerExecutionFailedException;
+
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Listener container that does not fail application startup when Redis is unreachable. The
+ * standard container only recovers subscriptions that were established once, so the initial
+ * subscription is retried here until it succeeds. Until then local entries expire by their TTL.
+ */
+@Slf4j
+public class CacheInvalidationListenerContainer extends RedisMessageListenerContainer {
+    private final Duration retryInterval;
+    private final ScheduledExecutorService retryExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "cache-invalidation-retry");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile boolean closing;
+
+    public CacheInvalidationListenerContainer(Duration retryInterval) {
+        this.retryInterval = retryInterval;
+    }
+
+    @Override
+    public void start() {
+        try {
+            super.start();
+        } catch (RedisListenerExecutionFailedException e) {
+            log.warn("Cache invalidation listener is not subscribed, retrying in {}: {}", retryInterval, e.getMessage());
+            super.stop();
+            if (!closing) {
+                retryExecutor.schedule(this::start, retryInterval.toMillis(), TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        closing = true;
+        retryExecutor.shutdownNow();
+        super.destroy();
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.note.demo.configuration.cache;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.util.UUID;
+
+/**
+ * Broadcasts local cache invalidations to the other nodes over Redis pub/sub. Messages carry the id
+ * of the sending node so that a node ignores its own messages.
+ */
+@Slf4j
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class CacheInvalidationPublisher {
+    static final String EVICT = "evict";
+    static final String CLEAR = "clear";
+    static final String SEPARATOR = "\n";
+
+    StringRedisTemplate template;
+    @Getter
+    String channel;
+    @Getter
+    String nodeId = UUID.randomUUID().toString();
+
+    public CacheInvalidationPublisher(StringRedisTemplate template, String channel) {
+        this.template = template;
+        this.channel = channel;
+    }
+
+    public void publishEvict(String cacheName, String key) {
+        publish(String.join(SEPARATOR, EVICT, nodeId, cacheName, key));
+    }
+
+    public void publishClear(String cacheName) {
+        publish(String.join(SEPARATOR, CLEAR, nodeId, cacheName));
+    }
+
+    private void publish(String message) {
+        try {
+            template.convertAndSend(channel, message);
+        } catch (RuntimeException e) {
+            log.warn("Failed to publish cache invalidation: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.note.demo.configuration.cache;
+
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.data.redis.util.ByteUtils;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Fills the Redis tier of the cache in bulk. Entries are written with pipelined {@code SET NX}, so
+ * values cached by requests in the meantime are kept, and with the key prefix and serializer of the
+ * cache they belong to. Their time to live is at most that of the cache.
+ * <p>
+ * A marker key is written once a warm-up has finished. It has no expiry, so its absence means
+ * Redis was flushed or restarted empty. The most requested keys of each cache can be saved in a
+ * sorted set, which lets a node started later warm up the keys other nodes have seen.
+ */
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class CacheWarmer {
+    private static final String MARKER_KEY = "cache-warmup:marker";
+    private static final String HOT_KEYS_PREFIX = "cache-warmup:hot:";
+    private static final Duration HOT_KEYS_TTL = Duration.ofDays(1);
+
+    StringRedisTemplate template;
+    Function<String, RedisCacheConfiguration> configurations;
+    Map<String, CacheWriteListener> writeListeners;
+
+    public CacheWarmer(StringRedisTemplate template, Function<String, RedisCacheConfiguration> configurations,
+                       Map<String, CacheWriteListener> writeListeners) {
+        this.template = template;
+        this.configurations = configurations;
+        this.writeListeners = writeListeners;
+    }
+
+    /**
+     * Writes the entries that are not cached yet in one pipeline, to live for at most {@code ttl},
+     * and returns how many were written.
+     */
+    public int putAllIfAbsent(String cacheName, Map<?, ?> entries, Duration ttl) {
+        RedisCacheConfiguration configuration = configurations.apply(cacheName);
+        if (configuration == null) {
+            throw new IllegalArgumentException("Unknown cache " + cacheName);
+        }
+        if (entries.isEmpty()) {
+            return 0;
+        }
+        String prefix = configuration.getKeyPrefixFor(cacheName);
+        List<Object> results = template.executePipelined((RedisCallback<Object>) connection -> {
+            entries.forEach((key, value) -> {
+                String cacheKey = prefix + configuration.getConversionService().convert(key, String.class);
+                Duration cacheTtl = configuration.getTtlFunction().getTimeToLive(key, value);
+                Duration entryTtl = cacheTtl.isZero() || cacheTtl.compareTo(ttl) > 0 ? ttl : cacheTtl;
+                connection.stringCommands().set(
+                        ByteUtils.getBytes(configuration.getKeySerializationPair().write(cacheKey)),
+                        ByteUtils.getBytes(configuration.getValueSerializationPair().write(value)),
+                        Expiration.from(entryTtl), RedisStringCommands.SetOption.ifAbsent());
+            });
+            return null;
+        });
+        writeListeners.getOrDefault(cacheName, CacheWriteListener.NONE).onPutAll(entries);
+        return (int) results.stream().filter(Boolean.TRUE::equals).count();
+    }
+
+    public boolean isWarm() {
+        return Boolean.TRUE.equals(template.hasKey(MARKER_KEY));
+    }
+
+    public void markWarm() {
+        template.opsForValue().set(MARKER_KEY, Instant.now().toString());
+    }
+
+    /**
+     * Saves the access counts of the keys, replacing counts saved earlier for the same keys, and keeps
+     * the {@code limit} keys with the highest counts.
+     */
+    public void saveHotKeys(String cacheName, Map<String, Long> counts, int limit) {
+        if (counts.isEmpty()) {
+            return;
+        }
+        String key = HOT_KEYS_PREFIX + cacheName;
+        Set<ZSetOperations.TypedTuple<String>> tuples = counts.entrySet().stream()
+                .map(entry -> ZSetOperations.TypedTuple.of(entry.getKey(), entry.getValue().doubleValue()))
+                .collect(Collectors.toSet());
+        template.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public Object execute(RedisOperations operations) throws DataAccessException {
+                operations.opsForZSet().add(key, tuples);
+                operations.opsForZSet().removeRange(key, 0, -limit - 1);
+                operations.expire(key, HOT_KEYS_TTL);
+                return null;
+            }
+        });
+    }
+
+    public Set<String> loadHotKeys(String cacheName, int limit) {
+        Set<String> keys = template.opsForZSet().reverseRange(HOT_KEYS_PREFIX + cacheName, 0, limit - 1);
+        return keys == null ? Set.of() : keys;
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.note.demo.configuration.cache;
+
+import java.util.Map;
+
+/**
+ * Notified after a value has been written to a {@link TwoLevelCache}.
+ */
+public interface CacheWriteListener {
+    CacheWriteListener NONE = (key, value) -> {
+    };
+
+    void onPut(Object key, Object value);
+
+    /**
+     * Notified after several values have been written at once, by {@link CacheWarmer}.
+     */
+    default void onPutAll(Map<?, ?> entries) {
+        entries.forEach(this::onPut);
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.note.demo.configuration.cache;
+
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import org.springframework.data.redis.cache.RedisCacheWriter;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Shortens the time to live of every entry by a random share of up to {@code jitter}, so that
+ * entries written together do not expire together.
+ */
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class JitteredTtlFunction implements RedisCacheWriter.TtlFunction {
+    Duration ttl;
+    double jitter;
+
+    public JitteredTtlFunction(Duration ttl, double jitter) {
+        this.ttl = ttl;
+        this.jitter = jitter;
+    }
+
+    @Override
+    public Duration getTimeToLive(Object key, Object value) {
+        return jittered(ttl, jitter);
+    }
+
+    public static Duration jittered(Duration ttl, double jitter) {
+        if (jitter <= 0) {
+            return ttl;
+        }
+        double factor = 1 - jitter * ThreadLocalRandom.current().nextDouble();
+        return Duration.ofMillis((long) (ttl.toMillis() * factor));
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.note.demo.configuration.cache;
+
+import com.example.note.demo.dto.CategoryDto;
+import com.example.note.demo.dto.NoteDto;
+import com.example.note.demo.dto.TagDto;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Reverse index from tag and category ids to the ids of the notes cached with them, kept in Redis
+ * sets shared by all nodes. It is filled when a note is written to the notes cache and lets a tag
+ * or category change evict only the notes that contain it. The index may list notes that are no
+ * longer cached or no longer linked, which only costs a redundant eviction; the sets expire with
+ * the cache entries.
+ */
+@Slf4j
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class NoteCacheIndex implements CacheWriteListener {
+    private static final String TAG_PREFIX = "notes-index:tag:";
+    private static final String CATEGORY_PREFIX = "notes-index:category:";
+
+    StringRedisTemplate template;
+    Duration ttl;
+
+    public NoteCacheIndex(StringRedisTemplate template, Duration ttl) {
+        this.template = template;
+        this.ttl = ttl;
+    }
+
+    @Override
+    public void onPut(Object key, Object value) {
+        onPutAll(Map.of(key, value));
+    }
+
+    /**
+     * Indexes all notes among the values with one pipelined round trip.
+     */
+    @Override
+    public void onPutAll(Map<?, ?> entries) {
+        Map<String, List<String>> notesByKey = new HashMap<>();
+        for (Object value : entries.values()) {
+            if (!(value instanceof NoteDto note) || note.getId() == null) {
+                continue;
+            }
+            String noteId = String.valueOf(note.getId());
+            if (note.getTags() != null) {
+                note.getTags().stream()
+                        .map(TagDto::getId)
+                        .filter(Objects::nonNull)
+                        .forEach(id -> notesByKey.computeIfAbsent(TAG_PREFIX + id, k -> new ArrayList<>()).add(noteId));
+            }
+            if (note.getCategories() != null) {
+                note.getCategories().stream()
+                        .map(CategoryDto::getId)
+                        .filter(Objects::nonNull)
+                        .forEach(id -> notesByKey.computeIfAbsent(CATEGORY_PREFIX + id, k -> new ArrayList<>())
+                                .add(noteId));
+            }
+        }
+        if (notesByKey.isEmpty()) {
+            return;
+        }
+        try {
+            template.executePipelined(new SessionCallback<Object>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public Object execute(RedisOperations operations) throws DataAccessException {
+                    notesByKey.forEach((indexKey, noteIds) -> {
+                        operations.opsForSet().add(indexKey, noteIds.toArray());
+                        operations.expire(indexKey, ttl);
+                    });
+                    return null;
+                }
+            });
+        } catch (RuntimeException e) {
+            log.warn("Failed to index {} cached notes: {}", entries.size(), e.getMessage());
+        }
+    }
+
+    /**
+     * Returns the ids of cached notes that may contain the tag and forgets them, since the caller
+     * is about to evict these notes.
+     */
+    public Set<Long> removeNotesWithTag(Long tagId) {
+        return remove(TAG_PREFIX + tagId);
+    }
+
+    public Set<Long> removeNotesWithCategory(Long categoryId) {
+        return remove(CATEGORY_PREFIX + categoryId);
+    }
+
+    private Set<Long> remove(String indexKey) {
+        Set<String> members = template.opsForSet().members(indexKey);
+        if (members == null || members.isEmpty()) {
+            return Set.of();
+        }
+        template.opsForSet().remove(indexKey, members.toArray());
+        return members.stream()
+                .map(Long::valueOf)
+                .collect(Collectors.toSet());
+    }
+}
@@ -0,0 +1,261 @@
+package com.example.note.demo.configuration.cache;
+
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.SimpleValueWrapper;
+
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache that keeps recently used entries in heap in front of a shared Redis cache. Local entries
+ * are keyed by the string form of the cache key, the same form Redis keys are built from, so that
+ * invalidation messages from other nodes can address them.
+ * <p>
+ * Loads through {@link #get(Object, Callable)} are coalesced per key: one caller reads Redis and
+ * runs the loader, concurrent callers for the same key wait for its result. Local entries expire
+ * after a jittered time, and a hit may instead reload the value early, with a probability that
+ * grows as the entry approaches expiry and with the time the entry took to load (XFetch). The
+ * reload also rewrites the Redis entry, so keys that stay hot do not reach their Redis TTL.
+ */
+@Slf4j
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class TwoLevelCache implements Cache {
+    String name;
+    Cache redisCache;
+    com.github.benmanes.caffeine.cache.Cache<String, LocalEntry> localCache;
+    CacheInvalidationPublisher publisher;
+    CacheWriteListener writeListener;
+    Duration localTtl;
+    double ttlJitter;
+    double earlyRefreshBeta;
+    ConcurrentMap<String, CompletableFuture<Object>> loads = new ConcurrentHashMap<>();
+    AtomicLong averageLoadNanos = new AtomicLong();
+
+    public TwoLevelCache(String name, Cache redisCache,
+                         com.github.benmanes.caffeine.cache.Cache<String, LocalEntry> localCache,
+                         CacheInvalidationPublisher publisher, CacheWriteListener writeListener,
+                         Duration localTtl, double ttlJitter, double earlyRefreshBeta) {
+        this.name = name;
+        this.redisCache = redisCache;
+        this.localCache = localCache;
+        this.publisher = publisher;
+        this.writeListener = writeListener;
+        this.localTtl = localTtl;
+        this.ttlJitter = ttlJitter;
+        this.earlyRefreshBeta = earlyRefreshBeta;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return redisCache.getNativeCache();
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        String localKey = localKey(key);
+        LocalEntry entry = localCache.getIfPresent(localKey);
+        if (entry != null) {
+            return new SimpleValueWrapper(entry.value());
+        }
+        ValueWrapper wrapper = redisCache.get(key);
+        if (wrapper != null && wrapper.get() != null) {
+            putLocal(localKey, wrapper.get(), 0);
+        }
+        return wrapper;
+    }
+
+    /**
+     * Returns the value held in heap without reading Redis, or {@code null} if there is none.
+     */
+    public ValueWrapper getLocal(Object key) {
+        LocalEntry entry = localCache.getIfPresent(localKey(key));
+        return entry == null ? null : new SimpleValueWrapper(entry.value());
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Class<T> type) {
+        ValueWrapper wrapper = get(key);
+        Object value = wrapper == null ? null : wrapper.get();
+        if (value != null && type != null && !type.isInstance(value)) {
+            throw new IllegalStateException("Cached value is not of required type [" + type.getName() + "]: " + value);
+        }
+        return (T) value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        String localKey = localKey(key);
+        LocalEntry entry = localCache.getIfPresent(localKey);
+        if (entry == null) {
+            return (T) load(key, localKey, valueLoader, true);
+        }
+        if (shouldRefreshEarly(entry) && !loads.containsKey(localKey)) {
+            try {
+                return (T) load(key, localKey, valueLoader, false);
+            } catch (ValueRetrievalException e) {
+                log.warn("Early refresh of {} in cache {} failed: {}", localKey, name, e.getMessage());
+            }
+        }
+        return (T) entry.value();
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        redisCache.put(key, value);
+        putLocal(localKey(key), value, 0);
+        publisher.publishEvict(name, localKey(key));
+        writeListener.onPut(key, value);
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(Object key, Object value) {
+        ValueWrapper existing = redisCache.putIfAbsent(key, value);
+        localCache.invalidate(localKey(key));
+        publisher.publishEvict(name, localKey(key));
+        if (existing == null) {
+            writeListener.onPut(key, value);
+        }
+        return existing;
+    }
+
+    @Override
+    public void evict(Object key) {
+        try {
+            redisCache.evict(key);
+        } finally {
+            // even if Redis is unreachable, this node must not keep serving the old value
+            localCache.invalidate(localKey(key));
+        }
+        publisher.publishEvict(name, localKey(key));
+    }
+
+    @Override
+    public boolean evictIfPresent(Object key) {
+        boolean evicted = redisCache.evictIfPresent(key);
+        localCache.invalidate(localKey(key));
+        publisher.publishEvict(name, localKey(key));
+        return evicted;
+    }
+
+    @Override
+    public void clear() {
+        redisCache.clear();
+        localCache.invalidateAll();
+        publisher.publishClear(name);
+    }
+
+    @Override
+    public boolean invalidate() {
+        boolean invalidated = redisCache.invalidate();
+        localCache.invalidateAll();
+        publisher.publishClear(name);
+        return invalidated;
+    }
+
+    /**
+     * Takes a value that was written to Redis directly, not through this cache.
+     */
+    void putWritten(Object key, Object value) {
+        putLocal(localKey(key), value, 0);
+        publisher.publishEvict(name, localKey(key));
+        writeListener.onPut(key, value);
+    }
+
+    void evictLocal(String localKey) {
+        localCache.invalidate(localKey);
+    }
+
+    void clearLocal() {
+        localCache.invalidateAll();
+    }
+
+    /**
+     * Runs at most one load per key at a time; callers that arrive while a load is running share
+     * its result or its failure.
+     */
+    private Object load(Object key, String localKey, Callable<?> valueLoader, boolean readRedis) {
+        CompletableFuture<Object> load = new CompletableFuture<>();
+        CompletableFuture<Object> running = loads.putIfAbsent(localKey, load);
+        if (running != null) {
+            try {
+                return running.join();
+            } catch (CompletionException e) {
+                throw new ValueRetrievalException(key, valueLoader, e.getCause());
+            }
+        }
+        try {
+            Object value = null;
+            if (readRedis) {
+                ValueWrapper wrapper = redisCache.get(key);
+                value = wrapper == null ? null : wrapper.get();
+                if (value != null) {
+                    putLocal(localKey, value, 0);
+                }
+            }
+            if (value == null) {
+                long start = System.nanoTime();
+                value = valueLoader.call();
+                long loadNanos = System.nanoTime() - start;
+                averageLoadNanos.accumulateAndGet(loadNanos,
+                        (average, sample) -> average == 0 ? sample : (average * 7 + sample) / 8);
+                if (value != null) {
+                    redisCache.put(key, value);
+                    putLocal(localKey, value, loadNanos);
+                    publisher.publishEvict(name, localKey);
+                    writeListener.onPut(key, value);
+                }
+            }
+            load.complete(value);
+            return value;
+        } catch (Exception e) {
+            load.completeExceptionally(e);
+            throw new ValueRetrievalException(key, valueLoader, e);
+        } finally {
+            loads.remove(localKey, load);
+        }
+    }
+
+    /**
+     * XFetch: refresh when {@code now - delta * beta * ln(random)} reaches the expiry time, where
+     * delta is the time the value took to load.
+     */
+    private boolean shouldRefreshEarly(LocalEntry entry) {
+        long delta = entry.loadNanos() > 0 ? entry.loadNanos() : averageLoadNanos.get();
+        if (delta == 0 || earlyRefreshBeta <= 0) {
+            return false;
+        }
+        double gap = -delta * earlyRefreshBeta * Math.log(1 - ThreadLocalRandom.current().nextDouble());
+        return System.nanoTime() + gap >= entry.expiresAt();
+    }
+
+    private void putLocal(String localKey, Object value, long loadNanos) {
+        long ttlNanos = JitteredTtlFunction.jittered(localTtl, ttlJitter).toNanos();
+        localCache.put(localKey, new LocalEntry(value, System.nanoTime() + ttlNanos, loadNanos));
+    }
+
+    static String localKey(Object key) {
+        return String.valueOf(key);
+    }
+
+    /**
+     * Locally cached value with its expiry time and the time it took to load, in nanoseconds.
+     */
+    record LocalEntry(Object value, long expiresAt, long loadNanos) {
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.note.demo.configuration.cache;
+
+import com.example.note.demo.dto.NoteDto;
+import com.example.note.demo.dto.NoteListView;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.actuate.metrics.cache.RedisCacheMetrics;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.redis.cache.RedisCache;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Wraps every Redis cache into a {@link TwoLevelCache} with a bounded Caffeine (W-TinyLFU) tier
+ * weighted by the number of DTOs in an entry, and applies invalidations published by other nodes.
+ * Hits and misses of both tiers are published as {@code cache.gets} tagged with the cache name and
+ * {@code tier=local|redis}.
+ */
+@Slf4j
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class TwoLevelCacheManager implements CacheManager, MessageListener {
+    RedisCacheManager redisCacheManager;
+    CacheInvalidationPublisher publisher;
+    long maximumWeight;
+    Duration expireAfterWrite;
+    double ttlJitter;
+    double earlyRefreshBeta;
+    Map<String, CacheWriteListener> writeListeners;
+    MeterRegistry meterRegistry;
+    ConcurrentMap<String, TwoLevelCache> caches = new ConcurrentHashMap<>();
+
+    public TwoLevelCacheManager(RedisCacheManager redisCacheManager, CacheInvalidationPublisher publisher,
+                                long maximumWeight, Duration expireAfterWrite, double ttlJitter,
+                                double earlyRefreshBeta, Map<String, CacheWriteListener> writeListeners,
+                                MeterRegistry meterRegistry) {
+        this.redisCacheManager = redisCacheManager;
+        this.publisher = publisher;
+        this.maximumWeight = maximumWeight;
+        this.expireAfterWrite = expireAfterWrite;
+        this.ttlJitter = ttlJitter;
+        this.earlyRefreshBeta = earlyRefreshBeta;
+        this.writeListeners = writeListeners;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public Cache getCache(String name) {
+        TwoLevelCache cache = caches.get(name);
+        if (cache != null) {
+            return cache;
+        }
+        Cache redisCache = redisCacheManager.getCache(name);
+        if (redisCache == null) {
+            return null;
+        }
+        return caches.computeIfAbsent(name, cacheName -> createCache(cacheName, redisCache));
+    }
+
+    private TwoLevelCache createCache(String name, Cache redisCache) {
+        com.github.benmanes.caffeine.cache.Cache<String, TwoLevelCache.LocalEntry> localCache = localCache(maximumWeight);
+        CaffeineCacheMetrics.monitor(meterRegistry, localCache, name, Tags.of("tier", "local"));
+        if (redisCache instanceof RedisCache cache) {
+            new RedisCacheMetrics(cache, Tags.of("tier", "redis")).bindTo(meterRegistry);
+        }
+        return new TwoLevelCache(name, redisCache, localCache, publisher,
+                writeListeners.getOrDefault(name, CacheWriteListener.NONE), expireAfterWrite, ttlJitter, earlyRefreshBeta);
+    }
+
+    /**
+     * The configuration the Redis tier of the cache is written with, or {@code null} for an
+     * unknown cache.
+     */
+    public RedisCacheConfiguration getRedisCacheConfiguration(String name) {
+        return redisCacheManager.getCache(name) instanceof RedisCache cache ? cache.getCacheConfiguration() : null;
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        return redisCacheManager.getCacheNames();
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String[] parts = new String(message.getBody(), StandardCharsets.UTF_8)
+                .split(CacheInvalidationPublisher.SEPARATOR, 4);
+        if (parts.length < 3 || publisher.getNodeId().equals(parts[1])) {
+            return;
+        }
+        TwoLevelCache cache = caches.get(parts[2]);
+        if (cache == null) {
+            return;
+        }
+        if (CacheInvalidationPublisher.CLEAR.equals(parts[0])) {
+            log.debug("Clearing local cache {} on invalidation from node {}", parts[2], parts[1]);
+            cache.clearLocal();
+        } else if (CacheInvalidationPublisher.EVICT.equals(parts[0]) && parts.length == 4) {
+            log.debug("Evicting local entry {} of cache {} on invalidation from node {}", parts[3], parts[2], parts[1]);
+            cache.evictLocal(parts[3]);
+        }
+    }
+
+    static com.github.benmanes.caffeine.cache.Cache<String, TwoLevelCache.LocalEntry> localCache(long maximumWeight) {
+        return Caffeine.newBuilder()
+                .maximumWeight(maximumWeight)
+                .weigher((String key, TwoLevelCache.LocalEntry entry) -> weigh(entry.value()))
+                .expireAfter(Expiry.writing((String key, TwoLevelCache.LocalEntry entry) ->
+                        Duration.ofNanos(Math.max(0, entry.expiresAt() - System.nanoTime()))))
+                .recordStats()
+                .build();
+    }
+
+    static int weigh(Object value) {
+        if (value instanceof Collection<?> collection) {
+            return 1 + collection.stream().mapToInt(TwoLevelCacheManager::weigh).sum();
+        }
+        if (value instanceof NoteListView view) {
+            return 1 + weigh(view.getNotes());
+        }
+        if (value instanceof NoteDto note) {
+            return 1 + (note.getCategories() == null ? 0 : note.getCategories().size())
+                    + (note.getTags() == null ? 0 : note.getTags().size());
+        }
+        return 1;
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.note.demo.configuration.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import java.time.Duration;
+
+/**
+ * Puts a {@link BulkheadDataSource} in front of the Hikari pool when
+ * {@code note.datasource.bulkhead.enabled} is set. By default there are as many permits as pool
+ * connections and callers wait as long as Hikari would.
+ */
+@Configuration
+@ConditionalOnProperty(name = "note.datasource.bulkhead.enabled", havingValue = "true")
+public class BulkheadConfig {
+
+    @Bean
+    public static BeanPostProcessor bulkheadDataSourcePostProcessor(Environment environment,
+                                                                    ObjectProvider<MeterRegistry> meterRegistry) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (!(bean instanceof HikariDataSource dataSource)) {
+                    return bean;
+                }
+                int permits = environment.getProperty("note.datasource.bulkhead.permits", Integer.class,
+                        dataSource.getMaximumPoolSize());
+                Duration timeout = environment.getProperty("note.datasource.bulkhead.timeout", Duration.class,
+                        Duration.ofMillis(dataSource.getConnectionTimeout()));
+                return new BulkheadDataSource(dataSource, permits, timeout, meterRegistry.getObject());
+            }
+        };
+    }
+}
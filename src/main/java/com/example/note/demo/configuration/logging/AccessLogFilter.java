@@ -0,0 +1,91 @@
+package com.example.note.demo.configuration.logging;
+
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Writes one line per request to the {@code access} logger with the method, path, status and
+ * duration, also as key-value pairs for structured output. A share of requests is marked with
+ * the {@link SampledDebugTurboFilter#MDC_KEY} MDC entry, which turns on debug logging of the
+ * application for the duration of that request.
+ */
+@Slf4j(topic = "access")
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class AccessLogFilter extends OncePerRequestFilter {
+    double debugSampleRate;
+
+    public AccessLogFilter(@Value("${note.logging.debug-sample-rate:0}") double debugSampleRate) {
+        this.debugSampleRate = debugSampleRate;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        boolean sampled = debugSampleRate > 0 && ThreadLocalRandom.current().nextDouble() < debugSampleRate;
+        if (sampled) {
+            MDC.put(SampledDebugTurboFilter.MDC_KEY, "true");
+        }
+        long start = System.nanoTime();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            if (sampled) {
+                MDC.remove(SampledDebugTurboFilter.MDC_KEY);
+            }
+            if (request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(new AsyncListener() {
+                    @Override
+                    public void onComplete(AsyncEvent event) {
+                        logRequest(request, response, start);
+                    }
+
+                    @Override
+                    public void onTimeout(AsyncEvent event) {
+                    }
+
+                    @Override
+                    public void onError(AsyncEvent event) {
+                    }
+
+                    @Override
+                    public void onStartAsync(AsyncEvent event) {
+                    }
+                });
+            } else {
+                logRequest(request, response, start);
+            }
+        }
+    }
+
+    private void logRequest(HttpServletRequest request, HttpServletResponse response, long start) {
+        if (!log.isInfoEnabled()) {
+            return;
+        }
+        long durationMicros = (System.nanoTime() - start) / 1000;
+        log.atInfo()
+                .addKeyValue("method", request.getMethod())
+                .addKeyValue("path", request.getRequestURI())
+                .addKeyValue("status", response.getStatus())
+                .addKeyValue("durationMs", durationMicros / 1000.0)
+                .log("{} {} {} {} ms", request.getMethod(), request.getRequestURI(), response.getStatus(),
+                        durationMicros / 1000.0);
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.note.demo.configuration.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+import org.slf4j.MDC;
+import org.slf4j.Marker;
+
+/**
+ * Enables DEBUG for loggers under {@code loggerPrefix} while the current thread serves a request
+ * sampled by {@link AccessLogFilter}; other events are left to the configured levels.
+ */
+public class SampledDebugTurboFilter extends TurboFilter {
+    public static final String MDC_KEY = "debugSampled";
+
+    private String loggerPrefix = "";
+
+    public void setLoggerPrefix(String loggerPrefix) {
+        this.loggerPrefix = loggerPrefix;
+    }
+
+    @Override
+    public FilterReply decide(Marker marker, Logger logger, Level level, String format, Object[] params, Throwable t) {
+        if (level == Level.DEBUG && logger.getName().startsWith(loggerPrefix)
+                && MDC.get(MDC_KEY) != null) {
+            return FilterReply.ACCEPT;
+        }
+        return FilterReply.NEUTRAL;
+    }
+}
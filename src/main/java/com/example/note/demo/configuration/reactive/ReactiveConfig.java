@@ -0,0 +1,23 @@
+package com.example.note.demo.configuration.reactive;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+@Configuration
+@ConditionalOnProperty(name = "note.reactive.enabled", havingValue = "true")
+public class ReactiveConfig {
+
+    /**
+     * Threads for blocking JDBC reads of the reactive API, no more than the pool has connections.
+     * Work beyond the queue capacity is rejected instead of piling up.
+     */
+    @Bean(destroyMethod = "dispose")
+    public Scheduler noteDatabaseScheduler(@Value("${note.reactive.database-threads:5}") int threads,
+                                           @Value("${note.reactive.database-queue:10000}") int queue) {
+        return Schedulers.newBoundedElastic(threads, queue, "note-db");
+    }
+}
@@ -0,0 +1,387 @@
+package com.example.note.demo.configuration.redis;
+
+import com.example.note.demo.dto.CategoryDto;
+import com.example.note.demo.dto.NoteDto;
+import com.example.note.demo.dto.NoteListView;
+import com.example.note.demo.dto.TagDto;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Serializes cached DTOs into a compact binary form: a magic byte, a schema version and the fields
+ * written positionally, with a presence bitmask instead of field names and type properties.
+ * Values the format does not cover are written as JSON, and anything that does not start with
+ * the magic byte is read as JSON, so entries written before switching formats stay readable.
+ * When {@code writeBinary} is off the serializer only writes JSON, which allows rolling back.
+ * Entries with an unknown schema version, or that this version cannot read, are read as cache
+ * misses, so the caller loads the value and overwrites them.
+ */
+@Slf4j
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class CompactBinaryRedisSerializer implements RedisSerializer<Object> {
+    static final byte MAGIC = (byte) 0xCB;
+    static final byte VERSION = 2;
+
+    private static final byte NOTE = 1;
+    private static final byte CATEGORY = 2;
+    private static final byte TAG = 3;
+    private static final byte LIST = 4;
+    private static final byte NOTE_LIST_VIEW = 5;
+
+    RedisSerializer<Object> jsonSerializer;
+    boolean writeBinary;
+
+    public CompactBinaryRedisSerializer(RedisSerializer<Object> jsonSerializer, boolean writeBinary) {
+        this.jsonSerializer = jsonSerializer;
+        this.writeBinary = writeBinary;
+    }
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+        if (value == null) {
+            return null;
+        }
+        if (!writeBinary || !isSupported(value)) {
+            return jsonSerializer.serialize(value);
+        }
+        Output out = new Output();
+        out.write(MAGIC);
+        out.write(VERSION);
+        writeValue(out, value);
+        return out.toByteArray();
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        if (bytes[0] != MAGIC) {
+            return jsonSerializer.deserialize(bytes);
+        }
+        if (bytes.length < 2 || bytes[1] != VERSION) {
+            return null;
+        }
+        try {
+            ByteBuffer in = ByteBuffer.wrap(bytes, 2, bytes.length - 2);
+            Object value = readValue(in);
+            if (in.hasRemaining()) {
+                throw new SerializationException(in.remaining() + " unread bytes after binary cache value");
+            }
+            return value;
+        } catch (RuntimeException e) {
+            log.debug("Could not read binary cache value, treating it as a miss: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private static boolean isSupported(Object value) {
+        if (value instanceof List<?> list) {
+            return list.stream().allMatch(item -> item instanceof NoteDto
+                    || item instanceof CategoryDto || item instanceof TagDto);
+        }
+        return value instanceof NoteDto || value instanceof CategoryDto || value instanceof TagDto
+                || value instanceof NoteListView;
+    }
+
+    private static void writeValue(Output out, Object value) {
+        if (value instanceof NoteDto note) {
+            out.write(NOTE);
+            writeNote(out, note);
+        } else if (value instanceof CategoryDto category) {
+            out.write(CATEGORY);
+            writeCategory(out, category);
+        } else if (value instanceof TagDto tag) {
+            out.write(TAG);
+            writeTag(out, tag);
+        } else if (value instanceof NoteListView view) {
+            out.write(NOTE_LIST_VIEW);
+            writeNoteListView(out, view);
+        } else {
+            List<?> list = (List<?>) value;
+            out.write(LIST);
+            out.writeVarLong(list.size());
+            for (Object item : list) {
+                writeValue(out, item);
+            }
+        }
+    }
+
+    private static Object readValue(ByteBuffer in) {
+        byte type = in.get();
+        switch (type) {
+            case NOTE:
+                return readNote(in);
+            case CATEGORY:
+                return readCategory(in);
+            case TAG:
+                return readTag(in);
+            case NOTE_LIST_VIEW:
+                return readNoteListView(in);
+            case LIST:
+                int size = readSize(in);
+                List<Object> list = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    list.add(readValue(in));
+                }
+                return list;
+            default:
+                throw new SerializationException("Unknown binary cache value type " + type);
+        }
+    }
+
+    private static void writeNote(Output out, NoteDto note) {
+        out.write(flags(note.getId(), note.getName(), note.getDateOfCreation(), note.getDateOfUpdate(),
+                note.getIsDone(), note.getCategories(), note.getTags(), note.getVersion()));
+        if (note.getId() != null) {
+            out.writeVarLong(note.getId());
+        }
+        if (note.getName() != null) {
+            out.writeString(note.getName());
+        }
+        if (note.getDateOfCreation() != null) {
+            out.writeVarLong(zigZag(note.getDateOfCreation().toEpochDay()));
+        }
+        if (note.getDateOfUpdate() != null) {
+            out.writeVarLong(zigZag(note.getDateOfUpdate().toEpochDay()));
+        }
+        if (note.getIsDone() != null) {
+            out.write((byte) (note.getIsDone() ? 1 : 0));
+        }
+        if (note.getCategories() != null) {
+            out.writeVarLong(note.getCategories().size());
+            note.getCategories().forEach(category -> writeCategory(out, category));
+        }
+        if (note.getTags() != null) {
+            out.writeVarLong(note.getTags().size());
+            note.getTags().forEach(tag -> writeTag(out, tag));
+        }
+        if (note.getVersion() != null) {
+            out.writeVarLong(note.getVersion());
+        }
+    }
+
+    private static NoteDto readNote(ByteBuffer in) {
+        int flags = readFlags(in, 8);
+        NoteDto note = new NoteDto();
+        if (isSet(flags, 0)) {
+            note.setId(readVarLong(in));
+        }
+        if (isSet(flags, 1)) {
+            note.setName(readString(in));
+        }
+        if (isSet(flags, 2)) {
+            note.setDateOfCreation(LocalDate.ofEpochDay(unZigZag(readVarLong(in))));
+        }
+        if (isSet(flags, 3)) {
+            note.setDateOfUpdate(LocalDate.ofEpochDay(unZigZag(readVarLong(in))));
+        }
+        if (isSet(flags, 4)) {
+            note.setIsDone(in.get() != 0);
+        }
+        if (isSet(flags, 5)) {
+            int size = readSize(in);
+            List<CategoryDto> categories = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                categories.add(readCategory(in));
+            }
+            note.setCategories(categories);
+        }
+        if (isSet(flags, 6)) {
+            int size = readSize(in);
+            List<TagDto> tags = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                tags.add(readTag(in));
+            }
+            note.setTags(tags);
+        }
+        if (isSet(flags, 7)) {
+            note.setVersion(readVarLong(in));
+        }
+        return note;
+    }
+
+    private static void writeNoteListView(Output out, NoteListView view) {
+        out.writeVarLong(view.getVersion());
+        out.writeVarLong(view.getLoadedAt());
+        out.write((byte) (view.isComplete() ? 1 : 0));
+        out.writeVarLong(view.getNotes().size());
+        view.getNotes().forEach(note -> writeNote(out, note));
+    }
+
+    private static NoteListView readNoteListView(ByteBuffer in) {
+        NoteListView view = new NoteListView();
+        view.setVersion(readVarLong(in));
+        view.setLoadedAt(readVarLong(in));
+        view.setComplete(in.get() != 0);
+        int size = readSize(in);
+        List<NoteDto> notes = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            notes.add(readNote(in));
+        }
+        view.setNotes(notes);
+        return view;
+    }
+
+    private static void writeCategory(Output out, CategoryDto category) {
+        out.write(flags(category.getId(), category.getName()));
+        if (category.getId() != null) {
+            out.writeVarLong(category.getId());
+        }
+        if (category.getName() != null) {
+            out.writeString(category.getName());
+        }
+    }
+
+    private static CategoryDto readCategory(ByteBuffer in) {
+        int flags = readFlags(in, 2);
+        CategoryDto category = new CategoryDto();
+        if (isSet(flags, 0)) {
+            category.setId(readVarLong(in));
+        }
+        if (isSet(flags, 1)) {
+            category.setName(readString(in));
+        }
+        return category;
+    }
+
+    private static void writeTag(Output out, TagDto tag) {
+        out.write(flags(tag.getId(), tag.getName(), tag.getColour()));
+        if (tag.getId() != null) {
+            out.writeVarLong(tag.getId());
+        }
+        if (tag.getName() != null) {
+            out.writeString(tag.getName());
+        }
+        if (tag.getColour() != null) {
+            out.writeString(tag.getColour());
+        }
+    }
+
+    private static TagDto readTag(ByteBuffer in) {
+        int flags = readFlags(in, 3);
+        TagDto tag = new TagDto();
+        if (isSet(flags, 0)) {
+            tag.setId(readVarLong(in));
+        }
+        if (isSet(flags, 1)) {
+            tag.setName(readString(in));
+        }
+        if (isSet(flags, 2)) {
+            tag.setColour(readString(in));
+        }
+        return tag;
+    }
+
+    private static byte flags(Object... fields) {
+        int flags = 0;
+        for (int i = 0; i < fields.length; i++) {
+            if (fields[i] != null) {
+                flags |= 1 << i;
+            }
+        }
+        return (byte) flags;
+    }
+
+    /**
+     * Reads a presence bitmask of {@code fields} fields; a bit set above them was written by a newer
+     * schema this version cannot read.
+     */
+    private static int readFlags(ByteBuffer in, int fields) {
+        int flags = in.get() & 0xFF;
+        if (flags >>> fields != 0) {
+            throw new SerializationException("Unknown fields in presence bitmask " + Integer.toBinaryString(flags));
+        }
+        return flags;
+    }
+
+    private static boolean isSet(int flags, int bit) {
+        return (flags & (1 << bit)) != 0;
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static long readVarLong(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new SerializationException("Malformed variable-length number");
+    }
+
+    /**
+     * Reads the length of a list or string. Every element takes at least one byte, so a length
+     * beyond the remaining bytes comes from a corrupted or foreign entry and is not allocated.
+     */
+    private static int readSize(ByteBuffer in) {
+        long size = readVarLong(in);
+        if (size < 0 || size > in.remaining()) {
+            throw new SerializationException("Length " + size + " exceeds the " + in.remaining() + " remaining bytes");
+        }
+        return (int) size;
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = readSize(in);
+        String value = new String(in.array(), in.position(), length, StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return value;
+    }
+
+    private static final class Output {
+        byte[] buffer = new byte[128];
+        int size;
+
+        void write(byte value) {
+            ensureCapacity(1);
+            buffer[size++] = value;
+        }
+
+        void writeVarLong(long value) {
+            ensureCapacity(10);
+            while ((value & ~0x7FL) != 0) {
+                buffer[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[size++] = (byte) value;
+        }
+
+        void writeString(String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(bytes.length);
+            ensureCapacity(bytes.length);
+            System.arraycopy(bytes, 0, buffer, size, bytes.length);
+            size += bytes.length;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer, size);
+        }
+
+        private void ensureCapacity(int length) {
+            if (size + length > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + length));
+            }
+        }
+    }
+}
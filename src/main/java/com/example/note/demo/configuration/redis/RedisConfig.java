@@ -1,5 +1,12 @@
 package com.example.note.demo.configuration.redis;
 
+import com.example.note.demo.configuration.cache.CacheEntryPatcher;
+import com.example.note.demo.configuration.cache.CacheInvalidationListenerContainer;
+import com.example.note.demo.configuration.cache.CacheInvalidationPublisher;
+import com.example.note.demo.configuration.cache.CacheWarmer;
+import com.example.note.demo.configuration.cache.JitteredTtlFunction;
+import com.example.note.demo.configuration.cache.NoteCacheIndex;
+import com.example.note.demo.configuration.cache.TwoLevelCacheManager;
 import com.fasterxml.jackson.annotation.JsonAutoDetect;
 import com.fasterxml.jackson.annotation.PropertyAccessor;
 import com.fasterxml.jackson.annotation.JsonTypeInfo;
@@ -7,24 +14,32 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.databind.jsontype.impl.LaissezFaireSubTypeValidator;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
-import org.springframework.cache.CacheManager;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.cache.RedisCacheConfiguration;
 import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
 import java.time.Duration;
+import java.util.List;
+import java.util.Map;
 
 @Configuration
 @EnableCaching
 public class RedisConfig {
-
     private ObjectMapper objectMapper() {
         ObjectMapper mapper = new ObjectMapper();
         mapper.registerModule(new JavaTimeModule());
@@ -53,18 +68,91 @@ public class RedisConfig {
         return template;
     }
 
+    /**
+     * Reads cache entries written by {@link #cacheManager}; the serializer accepts both the binary
+     * and the JSON format.
+     */
+    @Bean
+    public ReactiveRedisTemplate<String, Object> reactiveRedisTemplate(ReactiveRedisConnectionFactory factory) {
+        RedisSerializer<Object> serializer = new CompactBinaryRedisSerializer(
+                new GenericJackson2JsonRedisSerializer(objectMapper()), true);
+        RedisSerializationContext<String, Object> context = RedisSerializationContext
+                .<String, Object>newSerializationContext(new StringRedisSerializer())
+                .value(serializer)
+                .build();
+        return new ReactiveRedisTemplate<>(factory, context);
+    }
+
+    @Bean
+    public NoteCacheIndex noteCacheIndex(RedisConnectionFactory factory, @Value("${cache.ttl:10m}") Duration ttl) {
+        return new NoteCacheIndex(new StringRedisTemplate(factory), ttl);
+    }
+
+    @Bean
+    public CacheInvalidationPublisher cacheInvalidationPublisher(RedisConnectionFactory factory,
+                                                                 @Value("${cache.invalidation.channel:cache-invalidation}") String channel) {
+        return new CacheInvalidationPublisher(new StringRedisTemplate(factory), channel);
+    }
+
+    /**
+     * Caches listed in {@code cache.serializer.binary-caches} are written in the compact binary
+     * format, the others as JSON. Both formats are readable by every cache, so a cache can be moved
+     * between the lists without flushing Redis.
+     */
     @Bean
-    public CacheManager cacheManager(RedisConnectionFactory factory) {
+    public TwoLevelCacheManager cacheManager(RedisConnectionFactory factory, CacheInvalidationPublisher publisher,
+                                             NoteCacheIndex noteCacheIndex,
+                                             @Value("${cache.ttl:10m}") Duration ttl,
+                                             @Value("${cache.local.maximum-weight:100000}") long maximumWeight,
+                                             @Value("${cache.local.expire-after-write:5m}") Duration expireAfterWrite,
+                                             @Value("${cache.serializer.binary-caches:}") List<String> binaryCaches,
+                                             @Value("${cache.ttl-jitter:0.1}") double ttlJitter,
+                                             @Value("${cache.early-refresh.beta:1.0}") double earlyRefreshBeta,
+                                             MeterRegistry meterRegistry) {
         GenericJackson2JsonRedisSerializer serializer = new GenericJackson2JsonRedisSerializer(objectMapper());
 
         RedisCacheConfiguration config = RedisCacheConfiguration.defaultCacheConfig()
-                .entryTtl(Duration.ofMinutes(10))
+                .entryTtl(new JitteredTtlFunction(ttl, ttlJitter))
                 .disableCachingNullValues()
                 .serializeKeysWith(RedisSerializationContext.SerializationPair.fromSerializer(new StringRedisSerializer()))
-                .serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(serializer));
+                .serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(
+                        new CompactBinaryRedisSerializer(serializer, false)));
+        RedisCacheConfiguration binaryConfig = config.serializeValuesWith(
+                RedisSerializationContext.SerializationPair.fromSerializer(new CompactBinaryRedisSerializer(serializer, true)));
 
-        return RedisCacheManager.builder(factory)
+        RedisCacheManager.RedisCacheManagerBuilder builder = RedisCacheManager.builder(factory)
                 .cacheDefaults(config)
-                .build();
+                .enableStatistics();
+        binaryCaches.stream()
+                .map(String::trim)
+                .filter(name -> !name.isEmpty())
+                .forEach(name -> builder.withCacheConfiguration(name, binaryConfig));
+        RedisCacheManager redisCacheManager = builder.build();
+        redisCacheManager.afterPropertiesSet();
+        return new TwoLevelCacheManager(redisCacheManager, publisher, maximumWeight, expireAfterWrite, ttlJitter,
+                earlyRefreshBeta, Map.of("notes", noteCacheIndex), meterRegistry);
+    }
+
+    @Bean
+    public CacheWarmer cacheWarmer(RedisConnectionFactory factory, TwoLevelCacheManager cacheManager,
+                                   NoteCacheIndex noteCacheIndex) {
+        return new CacheWarmer(new StringRedisTemplate(factory), cacheManager::getRedisCacheConfiguration,
+                Map.of("notes", noteCacheIndex));
+    }
+
+    @Bean
+    public CacheEntryPatcher cacheEntryPatcher(RedisConnectionFactory factory, TwoLevelCacheManager cacheManager,
+                                               @Value("${cache.patch.max-attempts:3}") int maxAttempts) {
+        return new CacheEntryPatcher(new StringRedisTemplate(factory), cacheManager, maxAttempts);
+    }
+
+    @Bean
+    public RedisMessageListenerContainer cacheInvalidationListenerContainer(RedisConnectionFactory factory,
+                                                                            TwoLevelCacheManager cacheManager,
+                                                                            CacheInvalidationPublisher publisher) {
+        RedisMessageListenerContainer container = new CacheInvalidationListenerContainer(Duration.ofSeconds(5));
+        container.setConnectionFactory(factory);
+        container.addMessageListener(cacheManager, new ChannelTopic(publisher.getChannel()));
+        return container;
     }
-}
\ No newline at end of file
+}
@@ -2,6 +2,8 @@ package com.example.note.demo.controller;
 
 import com.example.note.demo.dto.CategoryDto;
 import com.example.note.demo.dto.NoteDto;
+import com.example.note.demo.dto.NoteLinksResultDto;
+import com.example.note.demo.dto.NoteSelectionDto;
 import com.example.note.demo.service.CategoryService;
 import jakarta.validation.Valid;
 import lombok.AccessLevel;
@@ -29,59 +31,59 @@ public class CategoryController {
 
     @PostMapping
     public ResponseEntity<CategoryDto> save(@RequestBody @Valid CategoryDto categoryDto) {
-        log.info("Received POST request to create category with name: {}", categoryDto.getName());
+        log.debug("Received POST request to create category with name: {}", categoryDto.getName());
         CategoryDto savedCategory = categoryService.save(categoryDto);
-        log.info("Successfully created category with name: {}", savedCategory.getName());
+        log.debug("Successfully created category with name: {}", savedCategory.getName());
         return new ResponseEntity<>(savedCategory, HttpStatus.CREATED);
     }
 
     @GetMapping("/{id}")
     public ResponseEntity<CategoryDto> getById(@PathVariable Long id) {
-        log.info("Received GET request to fetch category by ID: {}", id);
+        log.debug("Received GET request to fetch category by ID: {}", id);
         CategoryDto category = categoryService.getById(id);
-        log.info("Successfully retrieved category with ID: {} and name: {}", id, category.getName());
+        log.debug("Successfully retrieved category with ID: {} and name: {}", id, category.getName());
         return new ResponseEntity<>(category, HttpStatus.OK);
     }
 
     @GetMapping
     public ResponseEntity<List<CategoryDto>> getAll() {
-        log.info("Received GET request to fetch all categories");
+        log.debug("Received GET request to fetch all categories");
         List<CategoryDto> categories = categoryService.getAll();
-        log.info("Successfully retrieved {} categories", categories.size());
+        log.debug("Successfully retrieved {} categories", categories.size());
         return new ResponseEntity<>(categories, HttpStatus.OK);
     }
 
     @PutMapping("/{id}")
     public ResponseEntity<CategoryDto> update(@RequestBody @Valid CategoryDto categoryDto, @PathVariable Long id) {
-        log.info("Received PUT request to update category with ID: {} to new name: {}", id, categoryDto.getName());
+        log.debug("Received PUT request to update category with ID: {} to new name: {}", id, categoryDto.getName());
         CategoryDto updatedCategory = categoryService.update(categoryDto, id);
-        log.info("Successfully updated category with ID: {} to name: {}", id, updatedCategory.getName());
+        log.debug("Successfully updated category with ID: {} to name: {}", id, updatedCategory.getName());
         return new ResponseEntity<>(updatedCategory, HttpStatus.OK);
     }
 
     @DeleteMapping("/{id}")
     public ResponseEntity<Map<String, Boolean>> delete(@PathVariable Long id) {
-        log.info("Received DELETE request to remove category with ID: {}", id);
+        log.debug("Received DELETE request to remove category with ID: {}", id);
         Map<String, Boolean> result = categoryService.delete(id);
-        log.info("Successfully processed DELETE request for category ID: {}, result: {}", id, result);
+        log.debug("Successfully processed DELETE request for category ID: {}, result: {}", id, result);
         return new ResponseEntity<>(result, HttpStatus.OK);
     }
 
     @PostMapping("/{categoryId}/note/{noteId}")
     public ResponseEntity<NoteDto> addCategoryToNote(@PathVariable Long noteId, @PathVariable Long categoryId) {
-        log.info("Received POST request to add category ID: {} to note ID: {}", categoryId, noteId);
+        log.debug("Received POST request to add category ID: {} to note ID: {}", categoryId, noteId);
         NoteDto note = categoryService.addCategoryToNote(noteId, categoryId);
-        log.info("Successfully added category ID: {} to note ID: {}", categoryId, noteId);
+        log.debug("Successfully added category ID: {} to note ID: {}", categoryId, noteId);
         return new ResponseEntity<>(note, HttpStatus.OK);
     }
 
     @PutMapping("/{categoryId}/note/{noteId}/newCategory/{newCategoryId}")
     public ResponseEntity<NoteDto> updateCategoryInNote(@PathVariable Long noteId, @PathVariable Long categoryId,
                                                         @PathVariable Long newCategoryId) {
-        log.info("Received PUT request to update category in note - Note ID: {}, Old Category ID: {}, New Category ID: {}",
+        log.debug("Received PUT request to update category in note - Note ID: {}, Old Category ID: {}, New Category ID: {}",
                 noteId, categoryId, newCategoryId);
         NoteDto note = categoryService.updateCategoryInNote(noteId, categoryId, newCategoryId);
-        log.info("Successfully updated category in note - Note ID: {}, Old Category ID: {}, New Category ID: {}",
+        log.debug("Successfully updated category in note - Note ID: {}, Old Category ID: {}, New Category ID: {}",
                 noteId, categoryId, newCategoryId);
         return new ResponseEntity<>(note, HttpStatus.OK);
     }
@@ -89,10 +91,41 @@ public class CategoryController {
     @DeleteMapping("/{categoryId}/note/{noteId}")
     public ResponseEntity<Map<String, Boolean>> deleteCategoryFromNote(@PathVariable Long noteId,
                                                                        @PathVariable Long categoryId) {
-        log.info("Received DELETE request to remove category ID: {} from note ID: {}", categoryId, noteId);
+        log.debug("Received DELETE request to remove category ID: {} from note ID: {}", categoryId, noteId);
         Map<String, Boolean> result = categoryService.deleteCategoryFromNote(noteId, categoryId);
-        log.info("Successfully processed DELETE request for category ID: {} from note ID: {}, result: {}",
+        log.debug("Successfully processed DELETE request for category ID: {} from note ID: {}, result: {}",
                 categoryId, noteId, result);
         return new ResponseEntity<>(result, HttpStatus.OK);
     }
+
+    @PostMapping("/{categoryId}/notes")
+    public ResponseEntity<NoteLinksResultDto> addCategoryToNotes(@PathVariable Long categoryId,
+                                                              @RequestBody @Valid NoteSelectionDto selection) {
+        log.debug("Received POST request to add category ID: {} to selected notes", categoryId);
+        NoteLinksResultDto result = categoryService.addCategoryToNotes(selection, categoryId);
+        log.debug("Successfully added category ID: {} to {} of {} notes", categoryId, result.getAffected(),
+                result.getSelected());
+        return new ResponseEntity<>(result, HttpStatus.OK);
+    }
+
+    @PutMapping("/{categoryId}/notes/newCategory/{newCategoryId}")
+    public ResponseEntity<NoteLinksResultDto> updateCategoryInNotes(@PathVariable Long categoryId,
+                                                                 @PathVariable Long newCategoryId,
+                                                                 @RequestBody @Valid NoteSelectionDto selection) {
+        log.debug("Received PUT request to update category in selected notes - Old ID: {}, New ID: {}",
+                categoryId, newCategoryId);
+        NoteLinksResultDto result = categoryService.updateCategoryInNotes(selection, categoryId, newCategoryId);
+        log.debug("Successfully updated category in {} of {} notes", result.getAffected(), result.getSelected());
+        return new ResponseEntity<>(result, HttpStatus.OK);
+    }
+
+    @DeleteMapping("/{categoryId}/notes")
+    public ResponseEntity<NoteLinksResultDto> deleteCategoryFromNotes(@PathVariable Long categoryId,
+                                                                   @RequestBody @Valid NoteSelectionDto selection) {
+        log.debug("Received DELETE request to remove category ID: {} from selected notes", categoryId);
+        NoteLinksResultDto result = categoryService.deleteCategoryFromNotes(selection, categoryId);
+        log.debug("Successfully removed category ID: {} from {} of {} notes", categoryId, result.getAffected(),
+                result.getSelected());
+        return new ResponseEntity<>(result, HttpStatus.OK);
+    }
 }
@@ -1,6 +1,8 @@
 package com.example.note.demo.controller;
 
 import com.example.note.demo.util.exception.ErrorResponse;
+import com.example.note.demo.util.exception.IndexNotReadyException;
+import com.example.note.demo.util.exception.InvalidCursorException;
 import com.example.note.demo.util.exception.NoDataFoundException;
 import com.example.note.demo.util.exception.ObjectAlreadyInTableException;
 import org.springframework.http.HttpStatus;
@@ -21,4 +23,16 @@ public class MyRestControllerAdvice {
         return new ResponseEntity<>(new ErrorResponse(exception.getClass().getName(), exception.getMessage()),
                 HttpStatus.BAD_REQUEST);
     }
+
+    @ExceptionHandler(InvalidCursorException.class)
+    public ResponseEntity<ErrorResponse> invalidCursorException(InvalidCursorException exception) {
+        return new ResponseEntity<>(new ErrorResponse(exception.getClass().getName(), exception.getMessage()),
+                HttpStatus.BAD_REQUEST);
+    }
+
+    @ExceptionHandler(IndexNotReadyException.class)
+    public ResponseEntity<ErrorResponse> indexNotReadyException(IndexNotReadyException exception) {
+        return new ResponseEntity<>(new ErrorResponse(exception.getClass().getName(), exception.getMessage()),
+                HttpStatus.SERVICE_UNAVAILABLE);
+    }
 }
@@ -1,15 +1,33 @@
 package com.example.note.demo.controller;
 
+import com.example.note.demo.dto.NoteChangeDto;
+import com.example.note.demo.dto.NoteDeltaDto;
 import com.example.note.demo.dto.NoteDto;
+import com.example.note.demo.dto.NoteFacetFilter;
+import com.example.note.demo.dto.NoteFacetsDto;
+import com.example.note.demo.dto.NoteFilter;
+import com.example.note.demo.dto.NoteImportResultDto;
+import com.example.note.demo.dto.NotePageDto;
+import com.example.note.demo.service.NoteAccessSketch;
+import com.example.note.demo.service.NoteChangeFeed;
+import com.example.note.demo.service.NoteExportService;
+import com.example.note.demo.service.NoteImportService;
 import com.example.note.demo.service.NoteService;
 import lombok.AccessLevel;
 import lombok.experimental.FieldDefaults;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import reactor.core.publisher.Flux;
 
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.List;
 import java.util.Map;
 
@@ -18,50 +36,194 @@ import java.util.Map;
 @RequestMapping("/note")
 @FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
 public class NoteController {
+    private static final Duration HEARTBEAT_INTERVAL = Duration.ofSeconds(15);
+
     NoteService noteService;
+    NoteExportService noteExportService;
+    NoteImportService noteImportService;
+    NoteAccessSketch noteAccessSketch;
+    NoteChangeFeed noteChangeFeed;
 
     @Autowired
-    public NoteController(NoteService noteService) {
+    public NoteController(NoteService noteService, NoteExportService noteExportService,
+                          NoteImportService noteImportService, NoteAccessSketch noteAccessSketch,
+                          NoteChangeFeed noteChangeFeed) {
         this.noteService = noteService;
+        this.noteExportService = noteExportService;
+        this.noteImportService = noteImportService;
+        this.noteAccessSketch = noteAccessSketch;
+        this.noteChangeFeed = noteChangeFeed;
     }
 
     @PostMapping
     public ResponseEntity<NoteDto> save(@RequestBody NoteDto noteDto) {
-        log.info("Received POST request to create note with name: {}", noteDto.getName());
+        log.debug("Received POST request to create note with name: {}", noteDto.getName());
         NoteDto savedNote = noteService.save(noteDto);
-        log.info("Successfully created note with name: {}", savedNote.getName());
+        log.debug("Successfully created note with name: {}", savedNote.getName());
         return new ResponseEntity<>(savedNote, HttpStatus.CREATED);
     }
 
+    @PostMapping("/batch")
+    public ResponseEntity<NoteImportResultDto> saveAll(@RequestBody List<NoteDto> notes) {
+        log.debug("Received POST request to create batch of {} notes", notes.size());
+        NoteImportResultDto result = noteImportService.importNotes(notes);
+        log.debug("Successfully imported {} of {} notes", result.getImported(), result.getTotal());
+        return new ResponseEntity<>(result, HttpStatus.OK);
+    }
+
+    @PostMapping(value = "/import", consumes = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.TEXT_PLAIN_VALUE,
+            MediaType.APPLICATION_OCTET_STREAM_VALUE})
+    public ResponseEntity<NoteImportResultDto> importNotes(InputStream body) {
+        log.debug("Received POST request to import notes from NDJSON");
+        NoteImportResultDto result = noteImportService.importNdjson(body);
+        log.debug("Successfully imported {} of {} notes", result.getImported(), result.getTotal());
+        return new ResponseEntity<>(result, HttpStatus.OK);
+    }
+
     @GetMapping("/{id}")
     public ResponseEntity<NoteDto> getById(@PathVariable Long id) {
-        log.info("Received GET request to fetch note by ID: {}", id);
+        log.debug("Received GET request to fetch note by ID: {}", id);
+        noteAccessSketch.record(id);
         NoteDto note = noteService.getById(id);
-        log.info("Successfully retrieved note with ID: {} and name: {}", id, note.getName());
-        return new ResponseEntity<>(note, HttpStatus.OK);
+        log.debug("Successfully retrieved note with ID: {} and name: {}", id, note.getName());
+        return ResponseEntity.ok()
+                .eTag(note.getId() + "-" + versionOf(note))
+                .body(note);
     }
 
     @GetMapping
     public ResponseEntity<List<NoteDto>> getAll() {
-        log.info("Received GET request to fetch all notes");
+        log.debug("Received GET request to fetch all notes");
         List<NoteDto> notes = noteService.getAll();
-        log.info("Successfully retrieved {} notes", notes.size());
+        log.debug("Successfully retrieved {} notes", notes.size());
+        return ResponseEntity.ok()
+                .eTag(eTag(notes, ""))
+                .body(notes);
+    }
+
+    /**
+     * Notes changed after version {@code since}, for clients that keep a local copy in sync.
+     */
+    @GetMapping(params = "since")
+    public ResponseEntity<NoteDeltaDto> getChangedSince(@RequestParam long since,
+                                                       @RequestParam(required = false) Integer limit) {
+        log.debug("Received GET request to fetch notes changed after version: {}", since);
+        NoteDeltaDto delta = noteService.getChangedSince(since, limit);
+        log.debug("Successfully retrieved {} changed and {} deleted notes up to version: {}",
+                delta.getNotes().size(), delta.getDeleted().size(), delta.getVersion());
+        return ResponseEntity.ok()
+                .eTag(eTag(delta.getNotes(), since + ":" + delta.getVersion() + ":" + delta.getDeleted()))
+                .body(delta);
+    }
+
+    @GetMapping("/page")
+    public ResponseEntity<NotePageDto> getPage(@RequestParam(required = false) String cursor,
+                                               @RequestParam(required = false) Integer limit,
+                                               NoteFilter filter) {
+        log.debug("Received GET request to fetch page of notes, cursor: {}, limit: {}", cursor, limit);
+        NotePageDto page = noteService.getPage(cursor, limit, filter);
+        log.debug("Successfully retrieved {} notes", page.getNotes().size());
+        return ResponseEntity.ok()
+                .eTag(eTag(page.getNotes(), String.valueOf(page.getNextCursor())))
+                .body(page);
+    }
+
+    @GetMapping("/search")
+    public ResponseEntity<List<NoteDto>> search(@RequestParam String q,
+                                                @RequestParam(required = false) Long tagId,
+                                                @RequestParam(required = false) Long categoryId,
+                                                @RequestParam(required = false) Integer limit) {
+        log.debug("Received GET request to search notes by query: {}", q);
+        List<NoteDto> notes = noteService.search(q, tagId, categoryId, limit);
+        log.debug("Successfully found {} notes", notes.size());
         return new ResponseEntity<>(notes, HttpStatus.OK);
     }
 
+    @GetMapping("/facets")
+    public ResponseEntity<NoteFacetsDto> getFacets(NoteFacetFilter filter) {
+        log.debug("Received GET request to count note facets");
+        NoteFacetsDto facets = noteService.getFacets(filter);
+        log.debug("Successfully counted facets over {} notes", facets.getTotal());
+        return new ResponseEntity<>(facets, HttpStatus.OK);
+    }
+
+    /**
+     * Server-Sent Events with the note changes after {@code since}, or after the {@code Last-Event-ID}
+     * sent by a reconnecting client. Each event has the change version as its id.
+     */
+    @GetMapping(value = "/changes", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<NoteChangeDto>> changes(
+            @RequestParam(required = false) Long since,
+            @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId) {
+        Long from = lastEventId != null ? lastEventId : since;
+        log.debug("Received GET request to subscribe to note changes after version: {}", from);
+        Flux<ServerSentEvent<NoteChangeDto>> changes = noteChangeFeed.changes(from)
+                .map(change -> ServerSentEvent.builder(change)
+                        .id(String.valueOf(change.getVersion()))
+                        .event(change.getType())
+                        .build());
+        Flux<ServerSentEvent<NoteChangeDto>> heartbeats = Flux.interval(HEARTBEAT_INTERVAL)
+                .map(tick -> ServerSentEvent.<NoteChangeDto>builder().comment("heartbeat").build());
+        return Flux.merge(changes, heartbeats);
+    }
+
+    @GetMapping("/export/ndjson")
+    public ResponseEntity<StreamingResponseBody> exportNdjson() {
+        log.debug("Received GET request to export all notes as NDJSON");
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(noteExportService::exportNdjson);
+    }
+
+    @GetMapping("/export/csv")
+    public ResponseEntity<StreamingResponseBody> exportCsv() {
+        log.debug("Received GET request to export all notes as CSV");
+        return ResponseEntity.ok()
+                .contentType(new MediaType("text", "csv", StandardCharsets.UTF_8))
+                .body(noteExportService::exportCsv);
+    }
+
     @PutMapping("/{id}")
     public ResponseEntity<NoteDto> update(@RequestBody NoteDto noteDto, @PathVariable Long id) {
-        log.info("Received PUT request to update note with ID: {}", id);
+        log.debug("Received PUT request to update note with ID: {}", id);
         NoteDto updatedNote = noteService.update(noteDto, id);
-        log.info("Successfully updated note with ID: {} to name: {}", id, updatedNote.getName());
+        log.debug("Successfully updated note with ID: {} to name: {}", id, updatedNote.getName());
         return new ResponseEntity<>(updatedNote, HttpStatus.OK);
     }
 
     @DeleteMapping("/{id}")
     public ResponseEntity<Map<String, Boolean>> delete(@PathVariable Long id) {
-        log.info("Received DELETE request to remove note with ID: {}", id);
+        log.debug("Received DELETE request to remove note with ID: {}", id);
         Map<String, Boolean> result = noteService.delete(id);
-        log.info("Successfully processed DELETE request for note ID: {}, result: {}", id, result);
+        log.debug("Successfully processed DELETE request for note ID: {}, result: {}", id, result);
         return new ResponseEntity<>(result, HttpStatus.OK);
     }
+
+    private static long versionOf(NoteDto note) {
+        return note.getVersion() == null ? 0 : note.getVersion();
+    }
+
+    /**
+     * Strong ETag of a list of notes: the FNV-1a hash of their ids and versions and of the rest of
+     * the response, so that it is computed without serializing the notes.
+     */
+    private static String eTag(List<NoteDto> notes, String rest) {
+        long hash = 0xCBF29CE484222325L;
+        for (NoteDto note : notes) {
+            hash = fnv(hash, note.getId());
+            hash = fnv(hash, versionOf(note));
+        }
+        for (int i = 0; i < rest.length(); i++) {
+            hash = (hash ^ rest.charAt(i)) * 0x100000001B3L;
+        }
+        return notes.size() + "-" + Long.toHexString(hash);
+    }
+
+    private static long fnv(long hash, long value) {
+        for (int i = 0; i < Long.BYTES; i++) {
+            hash = (hash ^ (value & 0xFF)) * 0x100000001B3L;
+            value >>>= 8;
+        }
+        return hash;
+    }
 }
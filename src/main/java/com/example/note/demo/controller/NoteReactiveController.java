@@ -0,0 +1,49 @@
+package com.example.note.demo.controller;
+
+import com.example.note.demo.dto.NoteDto;
+import com.example.note.demo.service.NoteAccessSketch;
+import com.example.note.demo.service.NoteReactiveService;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+@Slf4j
+@RestController
+@RequestMapping("/reactive/note")
+@ConditionalOnProperty(name = "note.reactive.enabled", havingValue = "true")
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class NoteReactiveController {
+    NoteReactiveService noteReactiveService;
+    NoteAccessSketch noteAccessSketch;
+
+    @Autowired
+    public NoteReactiveController(NoteReactiveService noteReactiveService, NoteAccessSketch noteAccessSketch) {
+        this.noteReactiveService = noteReactiveService;
+        this.noteAccessSketch = noteAccessSketch;
+    }
+
+    @GetMapping("/{id}")
+    public Mono<NoteDto> getById(@PathVariable Long id) {
+        log.debug("Received reactive GET request to fetch note by ID: {}", id);
+        noteAccessSketch.record(id);
+        return noteReactiveService.getById(id);
+    }
+
+    @GetMapping
+    public Flux<NoteDto> getAll() {
+        log.debug("Received reactive GET request to fetch all notes");
+        return noteReactiveService.getAll();
+    }
+
+    @GetMapping(value = "/stream", produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.TEXT_EVENT_STREAM_VALUE})
+    public Flux<NoteDto> stream() {
+        log.debug("Received reactive GET request to stream all notes");
+        return noteReactiveService.stream();
+    }
+}
@@ -1,8 +1,11 @@
 package com.example.note.demo.controller;
 
 import com.example.note.demo.dto.NoteDto;
+import com.example.note.demo.dto.NoteLinksResultDto;
+import com.example.note.demo.dto.NoteSelectionDto;
 import com.example.note.demo.dto.TagDto;
 import com.example.note.demo.service.TagService;
+import jakarta.validation.Valid;
 import lombok.AccessLevel;
 import lombok.experimental.FieldDefaults;
 import lombok.extern.slf4j.Slf4j;
@@ -28,54 +31,54 @@ public class TagController {
 
     @PostMapping
     public ResponseEntity<TagDto> save(@RequestBody TagDto tagDto) {
-        log.info("Received POST request to create tag with name: {} and colour: {}",
+        log.debug("Received POST request to create tag with name: {} and colour: {}",
                 tagDto.getName(), tagDto.getColour());
         TagDto savedTag = tagService.save(tagDto);
-        log.info("Successfully created tag with name: {} and colour: {}",
+        log.debug("Successfully created tag with name: {} and colour: {}",
                 savedTag.getName(), savedTag.getColour());
         return new ResponseEntity<>(savedTag, HttpStatus.CREATED);
     }
 
     @GetMapping("/{id}")
     public ResponseEntity<TagDto> getById(@PathVariable Long id) {
-        log.info("Received GET request to fetch tag by ID: {}", id);
+        log.debug("Received GET request to fetch tag by ID: {}", id);
         TagDto tag = tagService.getById(id);
-        log.info("Successfully retrieved tag with ID: {}, name: {}, colour: {}",
+        log.debug("Successfully retrieved tag with ID: {}, name: {}, colour: {}",
                 id, tag.getName(), tag.getColour());
         return new ResponseEntity<>(tag, HttpStatus.OK);
     }
 
     @GetMapping
     public ResponseEntity<List<TagDto>> getAll() {
-        log.info("Received GET request to fetch all tags");
+        log.debug("Received GET request to fetch all tags");
         List<TagDto> tags = tagService.getAll();
-        log.info("Successfully retrieved {} tags", tags.size());
+        log.debug("Successfully retrieved {} tags", tags.size());
         return new ResponseEntity<>(tags, HttpStatus.OK);
     }
 
     @PutMapping("/{id}")
     public ResponseEntity<TagDto> update(@RequestBody TagDto tagDto, @PathVariable Long id) {
-        log.info("Received PUT request to update tag with ID: {} to name: {} and colour: {}",
+        log.debug("Received PUT request to update tag with ID: {} to name: {} and colour: {}",
                 id, tagDto.getName(), tagDto.getColour());
         TagDto updatedTag = tagService.update(tagDto, id);
-        log.info("Successfully updated tag with ID: {} to name: {} and colour: {}",
+        log.debug("Successfully updated tag with ID: {} to name: {} and colour: {}",
                 id, updatedTag.getName(), updatedTag.getColour());
         return new ResponseEntity<>(updatedTag, HttpStatus.OK);
     }
 
     @DeleteMapping("/{id}")
     public ResponseEntity<Map<String, Boolean>> delete(@PathVariable Long id) {
-        log.info("Received DELETE request to remove tag with ID: {}", id);
+        log.debug("Received DELETE request to remove tag with ID: {}", id);
         Map<String, Boolean> result = tagService.delete(id);
-        log.info("Successfully processed DELETE request for tag ID: {}, result: {}", id, result);
+        log.debug("Successfully processed DELETE request for tag ID: {}, result: {}", id, result);
         return new ResponseEntity<>(result, HttpStatus.OK);
     }
 
     @PostMapping("/{tagId}/note/{noteId}")
     public ResponseEntity<?> addTagToNote(@PathVariable Long noteId, @PathVariable Long tagId) {
-        log.info("Received POST request to add tag ID: {} to note ID: {}", tagId, noteId);
+        log.debug("Received POST request to add tag ID: {} to note ID: {}", tagId, noteId);
         NoteDto note = tagService.addTagToNote(noteId, tagId);
-        log.info("Successfully added tag ID: {} to note ID: {}", tagId, noteId);
+        log.debug("Successfully added tag ID: {} to note ID: {}", tagId, noteId);
         return new ResponseEntity<>(note, HttpStatus.OK);
     }
 
@@ -84,10 +87,10 @@ public class TagController {
             @PathVariable Long noteId,
             @PathVariable Long tagId,
             @PathVariable Long newTagId) {
-        log.info("Received PUT request to update tag in note - Note ID: {}, Old Tag ID: {}, New Tag ID: {}",
+        log.debug("Received PUT request to update tag in note - Note ID: {}, Old Tag ID: {}, New Tag ID: {}",
                 noteId, tagId, newTagId);
         NoteDto note = tagService.updateTagInNote(noteId, tagId, newTagId);
-        log.info("Successfully updated tag in note - Note ID: {}, Old Tag ID: {}, New Tag ID: {}",
+        log.debug("Successfully updated tag in note - Note ID: {}, Old Tag ID: {}, New Tag ID: {}",
                 noteId, tagId, newTagId);
         return new ResponseEntity<>(note, HttpStatus.OK);
     }
@@ -96,10 +99,41 @@ public class TagController {
     public ResponseEntity<Map<String, Boolean>> deleteTagFromNote(
             @PathVariable Long noteId,
             @PathVariable Long tagId) {
-        log.info("Received DELETE request to remove tag ID: {} from note ID: {}", tagId, noteId);
+        log.debug("Received DELETE request to remove tag ID: {} from note ID: {}", tagId, noteId);
         Map<String, Boolean> result = tagService.deleteTagFromNote(noteId, tagId);
-        log.info("Successfully processed DELETE request for tag ID: {} from note ID: {}, result: {}",
+        log.debug("Successfully processed DELETE request for tag ID: {} from note ID: {}, result: {}",
                 tagId, noteId, result);
         return new ResponseEntity<>(result, HttpStatus.OK);
     }
+
+    @PostMapping("/{tagId}/notes")
+    public ResponseEntity<NoteLinksResultDto> addTagToNotes(@PathVariable Long tagId,
+                                                              @RequestBody @Valid NoteSelectionDto selection) {
+        log.debug("Received POST request to add tag ID: {} to selected notes", tagId);
+        NoteLinksResultDto result = tagService.addTagToNotes(selection, tagId);
+        log.debug("Successfully added tag ID: {} to {} of {} notes", tagId, result.getAffected(),
+                result.getSelected());
+        return new ResponseEntity<>(result, HttpStatus.OK);
+    }
+
+    @PutMapping("/{tagId}/notes/newTag/{newTagId}")
+    public ResponseEntity<NoteLinksResultDto> updateTagInNotes(@PathVariable Long tagId,
+                                                                 @PathVariable Long newTagId,
+                                                                 @RequestBody @Valid NoteSelectionDto selection) {
+        log.debug("Received PUT request to update tag in selected notes - Old ID: {}, New ID: {}",
+                tagId, newTagId);
+        NoteLinksResultDto result = tagService.updateTagInNotes(selection, tagId, newTagId);
+        log.debug("Successfully updated tag in {} of {} notes", result.getAffected(), result.getSelected());
+        return new ResponseEntity<>(result, HttpStatus.OK);
+    }
+
+    @DeleteMapping("/{tagId}/notes")
+    public ResponseEntity<NoteLinksResultDto> deleteTagFromNotes(@PathVariable Long tagId,
+                                                                   @RequestBody @Valid NoteSelectionDto selection) {
+        log.debug("Received DELETE request to remove tag ID: {} from selected notes", tagId);
+        NoteLinksResultDto result = tagService.deleteTagFromNotes(selection, tagId);
+        log.debug("Successfully removed tag ID: {} from {} of {} notes", tagId, result.getAffected(),
+                result.getSelected());
+        return new ResponseEntity<>(result, HttpStatus.OK);
+    }
 }
@@ -0,0 +1,24 @@
+package com.example.note.demo.dto;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+/**
+ * A change of one note in the change feed. {@code note} holds the note as it is when the change is
+ * delivered and is absent for deleted notes. A {@code reset} change carries no note: the changes
+ * since the requested version are no longer kept and the client has to reload all notes.
+ */
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class NoteChangeDto {
+    public static final String RESET = "reset";
+
+    long version;
+    String type;
+    Long noteId;
+    NoteDto note;
+}
@@ -0,0 +1,20 @@
+package com.example.note.demo.dto;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.util.List;
+
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class NoteDeltaDto {
+    long version;
+    List<NoteDto> notes;
+    List<Long> deleted;
+    boolean hasMore;
+    boolean reset;
+}
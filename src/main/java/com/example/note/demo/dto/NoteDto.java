@@ -14,7 +14,7 @@ import java.util.List;
 @Setter
 @AllArgsConstructor
 @NoArgsConstructor
-@Builder
+@Builder(toBuilder = true)
 public class NoteDto {
     Long id;
     @NotBlank(message = "Название заметки не может быть пустым")
@@ -30,5 +30,6 @@ public class NoteDto {
     @NotNull(message = "Список тегов обязателен")
     @Size(min = 0, message = "Список тегов должен быть корректным")
     List<TagDto> tags;
+    Long version;
 }
 
@@ -0,0 +1,23 @@
+package com.example.note.demo.dto;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.util.List;
+
+/**
+ * Notes to count facets over: those linked to all, or with {@code any} to at least one, of the
+ * given tags and categories, optionally restricted by {@code isDone}.
+ */
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class NoteFacetFilter {
+    List<Long> tagId;
+    List<Long> categoryId;
+    Boolean isDone;
+    Boolean any;
+}
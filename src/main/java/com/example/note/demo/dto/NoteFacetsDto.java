@@ -0,0 +1,19 @@
+package com.example.note.demo.dto;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.util.Map;
+
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class NoteFacetsDto {
+    long total;
+    long done;
+    Map<Long, Long> tags;
+    Map<Long, Long> categories;
+}
@@ -0,0 +1,23 @@
+package com.example.note.demo.dto;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+import org.springframework.format.annotation.DateTimeFormat;
+
+import java.time.LocalDate;
+
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class NoteFilter {
+    Boolean isDone;
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    LocalDate dateFrom;
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    LocalDate dateTo;
+    Long categoryId;
+    Long tagId;
+}
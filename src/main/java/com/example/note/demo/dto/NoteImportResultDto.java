@@ -0,0 +1,21 @@
+package com.example.note.demo.dto;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.util.List;
+
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class NoteImportResultDto {
+    long total;
+    long imported;
+    long failed;
+    long elapsedMillis;
+    double notesPerSecond;
+    List<NoteImportItemDto> items;
+}
@@ -0,0 +1,23 @@
+package com.example.note.demo.dto;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.util.List;
+
+/**
+ * Cached head of the note list ordered by id. {@code complete} is set when the view holds every
+ * note, {@code version} grows with every reload of the view.
+ */
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class NoteListView {
+    long version;
+    long loadedAt;
+    boolean complete;
+    List<NoteDto> notes;
+}
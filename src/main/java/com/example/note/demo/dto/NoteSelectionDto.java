@@ -0,0 +1,28 @@
+package com.example.note.demo.dto;
+
+import jakarta.validation.constraints.AssertTrue;
+import jakarta.validation.constraints.Size;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.util.List;
+
+/**
+ * Notes to change at once: the listed ones, or if there is no list, the ones matching the filter.
+ */
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class NoteSelectionDto {
+    @Size(max = 100000, message = "Слишком много заметок в одном запросе")
+    List<Long> noteIds;
+    NoteFilter filter;
+
+    @AssertTrue(message = "Нужно указать список заметок или фильтр")
+    public boolean isSelected() {
+        return noteIds != null || filter != null;
+    }
+}
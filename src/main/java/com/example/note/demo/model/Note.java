@@ -5,6 +5,7 @@ import lombok.*;
 import lombok.experimental.FieldDefaults;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Entity
@@ -27,6 +28,10 @@ public class Note {
     LocalDate dateOfUpdate;
     @Column(name = "is_done", nullable = false)
     Boolean isDone;
+    @Column(name = "version", nullable = false)
+    Long version;
+    @Column(name = "updated_at", nullable = false)
+    LocalDateTime updatedAt;
 
     @OneToMany(mappedBy = "note", cascade = CascadeType.ALL, fetch = FetchType.LAZY, orphanRemoval = true)
     List<NoteCategory> noteCategories;
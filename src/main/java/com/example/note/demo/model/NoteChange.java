@@ -0,0 +1,32 @@
+package com.example.note.demo.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "note_changes")
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class NoteChange {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    Long version;
+    @Column(name = "note_id", nullable = false)
+    Long noteId;
+    @Enumerated(EnumType.STRING)
+    @Column(name = "operation", nullable = false, length = 10)
+    Operation operation;
+    @Column(name = "changed_at", nullable = false)
+    LocalDateTime changedAt;
+
+    public enum Operation {
+        CREATED, UPDATED, DELETED
+    }
+}
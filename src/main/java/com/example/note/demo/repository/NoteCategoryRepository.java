@@ -1,109 +1,286 @@
 package com.example.note.demo.repository;
 
 import com.example.note.demo.model.Note;
+import com.example.note.demo.model.NoteChange;
 import com.example.note.demo.util.exception.NoDataFoundException;
+import com.example.note.demo.util.exception.ObjectAlreadyInTableException;
+import io.micrometer.core.annotation.Timed;
 import jakarta.transaction.Transactional;
 import lombok.AccessLevel;
 import lombok.experimental.FieldDefaults;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Repository;
 
-import java.util.Map;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
 
+/**
+ * Links between notes and categories, changed with single statements like in {@link NoteTagRepository}.
+ */
 @Slf4j
 @Repository
+@Timed("repository")
 @FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
 public class NoteCategoryRepository {
     JdbcTemplate template;
+    NoteChangeRepository noteChangeRepository;
+    SqlDialect dialect;
 
     @Autowired
-    public NoteCategoryRepository(JdbcTemplate template) {
+    public NoteCategoryRepository(JdbcTemplate template, NoteChangeRepository noteChangeRepository) {
         this.template = template;
+        this.noteChangeRepository = noteChangeRepository;
+        this.dialect = SqlDialect.of(template);
     }
 
     @Transactional
     public Note addCategoryToNote(Long noteId, Long categoryId) {
-        log.info("Adding category id: {} to note id: {}", categoryId, noteId);
-        Note noteInTable = checkNoteInTable(noteId);
-        checkCategoryInTable(categoryId);
-
-        String insertSql = "INSERT INTO note_category (note_id, category_id) VALUES (?, ?)";
-        template.update(insertSql, noteId, categoryId);
-        log.info("Successfully added category to note");
-        return noteInTable;
+        log.debug("Adding category id: {} to note id: {}", categoryId, noteId);
+        String sqlQuery = """
+                INSERT INTO note_category (note_id, category_id)
+                SELECT n.id, c.id
+                FROM notes n
+                JOIN categories c ON c.id = ?
+                WHERE n.id = ?
+                """;
+        int insertedRows;
+        try {
+            insertedRows = template.update(sqlQuery, categoryId, noteId);
+        } catch (DuplicateKeyException e) {
+            throw alreadyLinked(noteId, categoryId);
+        } catch (DataIntegrityViolationException e) {
+            // the note or the category was deleted concurrently, the failed statement may have aborted
+            // the transaction, so which one is told by the violated key
+            if (SqlDialect.isForeignKeyViolation(e, "category_id")) {
+                throw categoryNotFound(categoryId);
+            }
+            log.error("Note id: {} or category id: {} was deleted concurrently", noteId, categoryId);
+            throw new NoDataFoundException("No note or category found: note_id=" + noteId
+                    + ", category_id=" + categoryId);
+        }
+        if (insertedRows == 0) {
+            throw notFound(noteId, categoryId);
+        }
+        noteChangeRepository.record(noteId, NoteChange.Operation.UPDATED);
+        log.debug("Successfully added category to note. Inserted {} rows", insertedRows);
+        return getNote(noteId);
     }
 
     @Transactional
     public Note updateCategoryInNote(Long noteId, Long categoryId, Long newCategoryId) {
-        log.info("Updating category in note: noteId={}, oldCategoryId={}, newCategoryId={}",
+        log.debug("Updating category in note: noteId={}, oldCategoryId={}, newCategoryId={}",
                 noteId, categoryId, newCategoryId);
-        Note noteInTable = checkNoteInTable(noteId);
-        checkCategoryInTable(categoryId);
-        checkCategoryInTable(newCategoryId);
-
         String sqlQuery = """
                 UPDATE note_category
                 SET category_id = ?
                 WHERE note_id = ? AND category_id = ?
                 """;
-        template.update(sqlQuery, newCategoryId, noteId, categoryId);
-        log.info("Updated category in note");
-        return noteInTable;
+        int updatedRows;
+        try {
+            updatedRows = template.update(sqlQuery, newCategoryId, noteId, categoryId);
+        } catch (DuplicateKeyException e) {
+            throw alreadyLinked(noteId, newCategoryId);
+        } catch (DataIntegrityViolationException e) {
+            throw categoryNotFound(newCategoryId);
+        }
+        if (updatedRows == 0) {
+            throw notFound(noteId, categoryId);
+        }
+        noteChangeRepository.record(noteId, NoteChange.Operation.UPDATED);
+        log.debug("Updated {} rows for category update in note", updatedRows);
+        return getNote(noteId);
     }
 
-    public Map<String, Boolean> deleteCategoryFromNote(Long noteId, Long categoryId) {
-        log.info("Deleting category id: {} from note id: {}", categoryId, noteId);
-        checkNoteCategoryInTable(noteId, categoryId);
+    /**
+     * Unlinks the category from the note and records the change.
+     *
+     * @return the version of the change
+     */
+    @Transactional
+    public long deleteCategoryFromNote(Long noteId, Long categoryId) {
+        log.debug("Deleting category id: {} from note id: {}", categoryId, noteId);
         String sqlQuery = """
                 DELETE FROM note_category
                 WHERE note_id = ? AND category_id = ?
                 """;
         int countOfDeleted = template.update(sqlQuery, noteId, categoryId);
-        log.info("Category deletion from note result: {}", countOfDeleted > 0);
-        return Map.of("deleted", countOfDeleted > 0);
+        if (countOfDeleted == 0) {
+            log.error("No note-category relation found: noteId={}, categoryId={}", noteId, categoryId);
+            throw new NoDataFoundException("No note_id= " + noteId + " and category_id= " + categoryId
+                    + " found");
+        }
+        long version = noteChangeRepository.record(noteId, NoteChange.Operation.UPDATED);
+        log.debug("Category deletion from note result: {}", countOfDeleted > 0);
+        return version;
+    }
+
+    /**
+     * Links the category to those of the notes that do not have it yet.
+     *
+     * @return the ids of the notes the category was linked to
+     */
+    @Transactional
+    public List<Long> addCategoryToNotes(List<Long> noteIds, Long categoryId) {
+        log.debug("Adding category id: {} to {} notes", categoryId, noteIds.size());
+        checkCategoryInTable(categoryId);
+        List<Long> changed = merge(noteIds, categoryId);
+        noteChangeRepository.recordAll(changed, NoteChange.Operation.UPDATED);
+        log.debug("Added category id: {} to {} of {} notes", categoryId, changed.size(), noteIds.size());
+        return changed;
+    }
+
+    /**
+     * Replaces the category with the new one in those of the notes that have it. Notes that already have
+     * the new category just lose the old one.
+     *
+     * @return the ids of the notes that had the old category
+     */
+    @Transactional
+    public List<Long> updateCategoryInNotes(List<Long> noteIds, Long oldCategoryId, Long newCategoryId) {
+        log.debug("Updating category in {} notes: oldCategoryId={}, newCategoryId={}", noteIds.size(), oldCategoryId, newCategoryId);
+        checkCategoryInTable(newCategoryId);
+        if (oldCategoryId.equals(newCategoryId)) {
+            return List.of();
+        }
+        List<Long> changed = unlink(noteIds, oldCategoryId);
+        merge(changed, newCategoryId);
+        noteChangeRepository.recordAll(changed, NoteChange.Operation.UPDATED);
+        log.debug("Updated category in {} of {} notes", changed.size(), noteIds.size());
+        return changed;
+    }
+
+    /**
+     * Unlinks the category from those of the notes that have it.
+     *
+     * @return the ids of the notes the category was unlinked from
+     */
+    @Transactional
+    public List<Long> deleteCategoryFromNotes(List<Long> noteIds, Long categoryId) {
+        log.debug("Deleting category id: {} from {} notes", categoryId, noteIds.size());
+        List<Long> changed = unlink(noteIds, categoryId);
+        noteChangeRepository.recordAll(changed, NoteChange.Operation.UPDATED);
+        log.debug("Deleted category id: {} from {} of {} notes", categoryId, changed.size(), noteIds.size());
+        return changed;
     }
 
-    private Note checkNoteInTable(Long noteId) {
-        log.info("Checking note exists with id: {}", noteId);
+    /**
+     * Inserts only the links that do not exist yet, so links added concurrently are skipped instead
+     * of failing the transaction, see {@link SqlDialect#insertMissing}.
+     */
+    private List<Long> merge(List<Long> noteIds, Long categoryId) {
+        String h2Merge = """
+                MERGE INTO note_category nc
+                USING (VALUES (CAST(? AS BIGINT), CAST(? AS BIGINT))) AS s(note_id, category_id)
+                ON nc.note_id = s.note_id AND nc.category_id = s.category_id
+                WHEN NOT MATCHED THEN INSERT (note_id, category_id) VALUES (s.note_id, s.category_id)
+                """;
+        String postgresInsert = """
+                INSERT INTO note_category (note_id, category_id)
+                VALUES (?, ?)
+                ON CONFLICT (note_id, category_id) DO NOTHING
+                """;
+        List<Object[]> args = noteIds.stream().map(noteId -> new Object[]{noteId, categoryId}).toList();
         try {
-            String sqlNote = "SELECT * FROM notes WHERE id = ?";
-            return template.queryForObject(sqlNote, (rs, rowNum) -> {
-                Note note = new Note();
-                note.setId(rs.getLong("id"));
-                note.setName(rs.getString("name"));
-                note.setDateOfCreation(rs.getDate("date_of_creation").toLocalDate());
-                note.setDateOfUpdate(rs.getDate("date_of_update").toLocalDate());
-                note.setIsDone(rs.getBoolean("is_done"));
-                return note;
-            }, noteId);
-        } catch (EmptyResultDataAccessException e) {
-            log.error("No note found with id: {}", noteId);
-            throw new NoDataFoundException("No note found by id " + noteId);
+            return changed(noteIds, dialect.insertMissing(template, h2Merge, postgresInsert, args));
+        } catch (DataIntegrityViolationException e) {
+            if (SqlDialect.isForeignKeyViolation(e, "category_id")) {
+                throw categoryNotFound(categoryId);
+            }
+            log.error("Notes were deleted concurrently while adding category id: {}", categoryId);
+            throw new NoDataFoundException("Some of the notes were deleted while adding category id " + categoryId);
+        }
+    }
+
+    private List<Long> unlink(List<Long> noteIds, Long categoryId) {
+        String sqlQuery = """
+                DELETE FROM note_category
+                WHERE note_id = ? AND category_id = ?
+                """;
+        return changed(noteIds, template.batchUpdate(sqlQuery,
+                noteIds.stream().map(noteId -> new Object[]{noteId, categoryId}).toList()));
+    }
+
+    private static List<Long> changed(List<Long> noteIds, int[] counts) {
+        List<Long> changed = new ArrayList<>();
+        for (int i = 0; i < counts.length; i++) {
+            // drivers that do not report counts of batched statements return SUCCESS_NO_INFO
+            if (counts[i] != 0) {
+                changed.add(noteIds.get(i));
+            }
         }
+        return changed;
     }
 
     private void checkCategoryInTable(Long categoryId) {
-        log.info("Checking category exists with id: {}", categoryId);
+        Integer count = template.queryForObject("SELECT COUNT(*) FROM categories WHERE id = ?", Integer.class, categoryId);
+        if (count == null || count == 0) {
+            throw categoryNotFound(categoryId);
+        }
+    }
+
+    private Note getNote(Long noteId) {
         try {
-            template.queryForObject("SELECT COUNT(*) FROM categories WHERE id = ?", Integer.class, categoryId);
+            return template.queryForObject(
+                    """
+                    SELECT id, name, date_of_creation, date_of_update, is_done, version, updated_at
+                    FROM notes
+                    WHERE id = ?
+                    """,
+                    (rs, rowNum) -> {
+                        Note note = new Note();
+                        note.setId(rs.getLong("id"));
+                        note.setName(rs.getString("name"));
+                        note.setDateOfCreation(rs.getObject("date_of_creation", LocalDate.class));
+                        note.setDateOfUpdate(rs.getObject("date_of_update", LocalDate.class));
+                        note.setIsDone(rs.getBoolean("is_done"));
+                        note.setVersion(rs.getLong("version"));
+                        note.setUpdatedAt(rs.getObject("updated_at", LocalDateTime.class));
+                        return note;
+                    },
+                    noteId
+            );
         } catch (EmptyResultDataAccessException e) {
-            log.error("No category found with id: {}", categoryId);
-            throw new NoDataFoundException("No category found by id = " + categoryId);
+            log.error("No note found with id: {}", noteId);
+            throw new NoDataFoundException("No note found by id " + noteId);
         }
     }
 
-    private void checkNoteCategoryInTable(Long noteId, Long categoryId) {
-        log.info("Checking note-category relation: noteId={}, categoryId={}", noteId, categoryId);
-        Integer count = template.queryForObject(
-                "SELECT COUNT(*) FROM note_category WHERE note_id = ? AND category_id = ?",
-                Integer.class, noteId, categoryId
-        );
-        if (count == null || count == 0) {
+    /**
+     * Finds out why a statement on the link of the note and the category affected no rows.
+     */
+    private NoDataFoundException notFound(Long noteId, Long categoryId) {
+        String sqlQuery = """
+                SELECT EXISTS (SELECT 1 FROM notes WHERE id = ?) AS note_found,
+                       EXISTS (SELECT 1 FROM categories WHERE id = ?) AS category_found
+                """;
+        return template.queryForObject(sqlQuery, (rs, rowNum) -> {
+            if (!rs.getBoolean("note_found")) {
+                log.error("No note found with id: {}", noteId);
+                return new NoDataFoundException("No note found by id " + noteId);
+            }
+            if (!rs.getBoolean("category_found")) {
+                return categoryNotFound(categoryId);
+            }
             log.error("No note-category relation found: noteId={}, categoryId={}", noteId, categoryId);
-            throw new NoDataFoundException("No note_id= " + noteId + " and category_id= " + categoryId + " found");
-        }
+            return new NoDataFoundException("No note_id= " + noteId + " and category_id= " + categoryId + " found");
+        }, noteId, categoryId);
+    }
+
+    private NoDataFoundException categoryNotFound(Long categoryId) {
+        log.error("No category found with id: {}", categoryId);
+        return new NoDataFoundException("No category found by id = " + categoryId);
+    }
+
+    private ObjectAlreadyInTableException alreadyLinked(Long noteId, Long categoryId) {
+        log.error("Category id: {} is already linked to note id: {}", categoryId, noteId);
+        return new ObjectAlreadyInTableException(String.format("Category with id %d already linked to note with id %d",
+                categoryId, noteId));
     }
 }
@@ -0,0 +1,187 @@
+package com.example.note.demo.repository;
+
+import com.example.note.demo.model.NoteChange;
+import io.micrometer.core.annotation.Timed;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.simple.SimpleJdbcInsert;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Log of note changes, numbered by a monotonically increasing version. Changes are recorded by the
+ * repositories that change notes, within their transactions, so a change is visible exactly when
+ * the data it describes is. The version of the last change of a note is also kept in
+ * {@code notes.version}, which is what the note ETags and the delta sync are based on.
+ */
+@Slf4j
+@Repository
+@Timed("repository")
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class NoteChangeRepository {
+    private static final String UPDATE_NOTE_VERSION = """
+            UPDATE notes
+            SET version = ?, updated_at = CURRENT_TIMESTAMP
+            WHERE id = ?
+            """;
+
+    JdbcTemplate template;
+    SimpleJdbcInsert insert;
+
+    @Autowired
+    public NoteChangeRepository(JdbcTemplate template) {
+        this.template = template;
+        this.insert = new SimpleJdbcInsert(template)
+                .withTableName("note_changes")
+                .usingColumns("note_id", "operation")
+                .usingGeneratedKeyColumns("version");
+    }
+
+    /**
+     * Records the change and stamps its version on the note, unless the note was deleted.
+     *
+     * @return the version of the change
+     */
+    public long record(Long noteId, NoteChange.Operation operation) {
+        log.debug("Recording {} change of note id: {}", operation, noteId);
+        long version = insert.executeAndReturnKey(Map.of("note_id", noteId, "operation", operation.name()))
+                .longValue();
+        if (operation != NoteChange.Operation.DELETED) {
+            template.update(UPDATE_NOTE_VERSION, version, noteId);
+        }
+        return version;
+    }
+
+    /**
+     * Records the same change of every note and stamps the versions on the notes, unless they were
+     * deleted.
+     *
+     * @return the versions of the changes, in the order of {@code noteIds}
+     */
+    public List<Long> recordAll(Collection<Long> noteIds, NoteChange.Operation operation) {
+        log.debug("Recording {} change of {} notes", operation, noteIds.size());
+        List<Long> ids = List.copyOf(noteIds);
+        List<Long> versions = new ArrayList<>(ids.size());
+        template.execute((ConnectionCallback<Void>) connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "INSERT INTO note_changes (note_id, operation) VALUES (?, ?)", new String[]{"version"})) {
+                for (Long id : ids) {
+                    statement.setLong(1, id);
+                    statement.setString(2, operation.name());
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+                try (ResultSet keys = statement.getGeneratedKeys()) {
+                    while (keys.next()) {
+                        versions.add(keys.getLong(1));
+                    }
+                }
+            }
+            return null;
+        });
+        if (operation != NoteChange.Operation.DELETED) {
+            List<Object[]> args = new ArrayList<>(ids.size());
+            for (int i = 0; i < ids.size(); i++) {
+                args.add(new Object[]{versions.get(i), ids.get(i)});
+            }
+            template.batchUpdate(UPDATE_NOTE_VERSION, args);
+        }
+        return versions;
+    }
+
+    public void recordNotesWithTag(Long tagId) {
+        log.debug("Recording change of notes with tag id: {}", tagId);
+        String sqlQuery = """
+                INSERT INTO note_changes (note_id, operation)
+                SELECT note_id, 'UPDATED'
+                FROM note_tag
+                WHERE tag_id = ?
+                """;
+        template.update(sqlQuery, tagId);
+        updateNoteVersions("SELECT note_id FROM note_tag WHERE tag_id = ?", tagId);
+    }
+
+    public void recordNotesWithCategory(Long categoryId) {
+        log.debug("Recording change of notes with category id: {}", categoryId);
+        String sqlQuery = """
+                INSERT INTO note_changes (note_id, operation)
+                SELECT note_id, 'UPDATED'
+                FROM note_category
+                WHERE category_id = ?
+                """;
+        template.update(sqlQuery, categoryId);
+        updateNoteVersions("SELECT note_id FROM note_category WHERE category_id = ?", categoryId);
+    }
+
+    /**
+     * Returns the ids of the notes deleted after {@code afterVersion} and up to {@code toVersion}.
+     */
+    public List<Long> findDeletedAfter(long afterVersion, long toVersion) {
+        String sqlQuery = """
+                SELECT DISTINCT note_id
+                FROM note_changes
+                WHERE version > ? AND version <= ? AND operation = 'DELETED'
+                """;
+        return template.queryForList(sqlQuery, Long.class, afterVersion, toVersion);
+    }
+
+    /**
+     * Returns up to {@code limit} changes with versions after {@code afterVersion} and up to
+     * {@code toVersion}, in version order.
+     */
+    public List<NoteChange> findAfter(long afterVersion, long toVersion, int limit) {
+        String sqlQuery = """
+                SELECT version, note_id, operation, changed_at
+                FROM note_changes
+                WHERE version > ? AND version <= ?
+                ORDER BY version
+                LIMIT ?
+                """;
+        return template.query(sqlQuery, (rs, rowNum) -> mapChange(rs), afterVersion, toVersion, limit);
+    }
+
+    public long getLatestVersion() {
+        Long version = template.queryForObject("SELECT MAX(version) FROM note_changes", Long.class);
+        return version == null ? 0 : version;
+    }
+
+    public long getOldestVersion() {
+        Long version = template.queryForObject("SELECT MIN(version) FROM note_changes", Long.class);
+        return version == null ? 0 : version;
+    }
+
+    public int deleteUpTo(long version) {
+        log.debug("Deleting note changes up to version: {}", version);
+        return template.update("DELETE FROM note_changes WHERE version <= ?", version);
+    }
+
+    private void updateNoteVersions(String noteIdQuery, Long id) {
+        String sqlQuery = """
+                UPDATE notes n
+                SET version = (SELECT MAX(c.version) FROM note_changes c WHERE c.note_id = n.id),
+                    updated_at = CURRENT_TIMESTAMP
+                WHERE n.id IN (%s)
+                """.formatted(noteIdQuery);
+        template.update(sqlQuery, id);
+    }
+
+    private NoteChange mapChange(ResultSet rs) throws SQLException {
+        NoteChange change = new NoteChange();
+        change.setVersion(rs.getLong("version"));
+        change.setNoteId(rs.getLong("note_id"));
+        change.setOperation(NoteChange.Operation.valueOf(rs.getString("operation")));
+        change.setChangedAt(rs.getTimestamp("changed_at").toLocalDateTime());
+        return change;
+    }
+}
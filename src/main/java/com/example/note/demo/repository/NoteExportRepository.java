@@ -0,0 +1,168 @@
+package com.example.note.demo.repository;
+
+import com.example.note.demo.model.*;
+import io.micrometer.core.annotation.Timed;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+@Slf4j
+@Repository
+@Timed("repository")
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class NoteExportRepository {
+    JdbcTemplate template;
+    int fetchSize;
+
+    @Autowired
+    public NoteExportRepository(JdbcTemplate template, @Value("${note.export.fetch-size:500}") int fetchSize) {
+        this.template = template;
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * Reads notes, category links and tag links with three forward-only cursors ordered by note id
+     * and merges them, passing every note to the consumer as soon as all its relations have been read.
+     * The link cursors read the link tables alone, in the order of their note id index, and take
+     * names from the categories and tags loaded up front: joined with them, the planner drives the
+     * join from the small table and sorts every link before returning the first row.
+     */
+    public long streamAll(Consumer<Note> consumer) {
+        log.debug("Streaming all notes with fetch size: {}", fetchSize);
+        Map<Long, Category> categoriesById = loadCategories();
+        Map<Long, Tag> tagsById = loadTags();
+        Long count = template.execute((ConnectionCallback<Long>) connection -> {
+            boolean autoCommit = connection.getAutoCommit();
+            // PostgreSQL only honours the fetch size inside a transaction
+            connection.setAutoCommit(false);
+            try (PreparedStatement notesStatement = prepare(connection, """
+                    SELECT id, name, date_of_creation, date_of_update, is_done, version, updated_at
+                    FROM notes
+                    ORDER BY id
+                    """);
+                 PreparedStatement categoriesStatement = prepare(connection, """
+                         SELECT note_id, category_id
+                         FROM note_category
+                         ORDER BY note_id
+                         """);
+                 PreparedStatement tagsStatement = prepare(connection, """
+                         SELECT note_id, tag_id
+                         FROM note_tag
+                         ORDER BY note_id
+                         """);
+                 ResultSet notes = notesStatement.executeQuery();
+                 ResultSet categories = categoriesStatement.executeQuery();
+                 ResultSet tags = tagsStatement.executeQuery()) {
+                long streamed = 0;
+                boolean hasCategory = categories.next();
+                boolean hasTag = tags.next();
+                while (notes.next()) {
+                    Note note = mapNote(notes);
+                    while (hasCategory && categories.getLong("note_id") <= note.getId()) {
+                        if (categories.getLong("note_id") == note.getId()) {
+                            long categoryId = categories.getLong("category_id");
+                            if (!categoriesById.containsKey(categoryId)) {
+                                // created after the categories were loaded
+                                categoriesById.putAll(loadCategories());
+                            }
+                            addCategory(note, categoriesById.get(categoryId));
+                        }
+                        hasCategory = categories.next();
+                    }
+                    while (hasTag && tags.getLong("note_id") <= note.getId()) {
+                        if (tags.getLong("note_id") == note.getId()) {
+                            long tagId = tags.getLong("tag_id");
+                            if (!tagsById.containsKey(tagId)) {
+                                tagsById.putAll(loadTags());
+                            }
+                            addTag(note, tagsById.get(tagId));
+                        }
+                        hasTag = tags.next();
+                    }
+                    consumer.accept(note);
+                    streamed++;
+                }
+                connection.commit();
+                return streamed;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        });
+        log.debug("Streamed {} notes", count);
+        return count == null ? 0 : count;
+    }
+
+    private Map<Long, Category> loadCategories() {
+        Map<Long, Category> categories = new HashMap<>();
+        template.query("SELECT id, name FROM categories", rs -> {
+            categories.put(rs.getLong("id"), Category.builder()
+                    .id(rs.getLong("id"))
+                    .name(rs.getString("name"))
+                    .build());
+        });
+        return categories;
+    }
+
+    private Map<Long, Tag> loadTags() {
+        Map<Long, Tag> tags = new HashMap<>();
+        template.query("SELECT id, name, colour FROM tags", rs -> {
+            tags.put(rs.getLong("id"), Tag.builder()
+                    .id(rs.getLong("id"))
+                    .name(rs.getString("name"))
+                    .colour(rs.getString("colour"))
+                    .build());
+        });
+        return tags;
+    }
+
+    private PreparedStatement prepare(Connection connection, String sqlQuery) throws SQLException {
+        PreparedStatement statement = connection.prepareStatement(sqlQuery,
+                ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        statement.setFetchSize(fetchSize);
+        return statement;
+    }
+
+    private static Note mapNote(ResultSet rs) throws SQLException {
+        Note note = new Note();
+        note.setId(rs.getLong("id"));
+        note.setName(rs.getString("name"));
+        note.setDateOfCreation(rs.getObject("date_of_creation", LocalDate.class));
+        note.setDateOfUpdate(rs.getObject("date_of_update", LocalDate.class));
+        note.setIsDone(rs.getBoolean("is_done"));
+        note.setVersion(rs.getLong("version"));
+        note.setUpdatedAt(rs.getObject("updated_at", LocalDateTime.class));
+        note.setNoteCategories(new ArrayList<>());
+        note.setNoteTags(new ArrayList<>());
+        return note;
+    }
+
+    private static void addCategory(Note note, Category category) {
+        NoteCategory noteCategory = new NoteCategory();
+        noteCategory.setCategory(category);
+        noteCategory.setNote(note);
+        note.getNoteCategories().add(noteCategory);
+    }
+
+    private static void addTag(Note note, Tag tag) {
+        NoteTag noteTag = new NoteTag();
+        noteTag.setTag(tag);
+        noteTag.setNote(note);
+        note.getNoteTags().add(noteTag);
+    }
+}
@@ -1,47 +1,68 @@
 package com.example.note.demo.repository;
 
 import com.example.note.demo.dto.CategoryDto;
+import com.example.note.demo.dto.NoteFilter;
+import com.example.note.demo.dto.NoteSelectionDto;
 import com.example.note.demo.dto.TagDto;
 import com.example.note.demo.model.*;
 import com.example.note.demo.util.exception.NoDataFoundException;
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.transaction.Transactional;
 import lombok.AccessLevel;
 import lombok.experimental.FieldDefaults;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.jdbc.core.ResultSetExtractor;
 import org.springframework.jdbc.core.simple.SimpleJdbcInsert;
 import org.springframework.stereotype.Repository;
 
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.time.LocalDate;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Repository
+@Timed("repository")
 @FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
 public class NoteRepository {
+    private static final int ID_BATCH_SIZE = 1000;
+
     JdbcTemplate template;
+    NoteChangeRepository noteChangeRepository;
+    SqlDialect dialect;
     SimpleJdbcInsert insert;
+    DistributionSummary noteRows;
+    DistributionSummary categoryRows;
+    DistributionSummary tagRows;
 
     @Autowired
-    public NoteRepository(JdbcTemplate template) {
+    public NoteRepository(JdbcTemplate template, NoteChangeRepository noteChangeRepository,
+                          MeterRegistry meterRegistry) {
         this.template = template;
+        this.noteChangeRepository = noteChangeRepository;
+        this.dialect = SqlDialect.of(template);
         this.insert = new SimpleJdbcInsert(template)
                 .withTableName("notes")
+                .usingColumns("name", "date_of_creation", "date_of_update", "is_done")
                 .usingGeneratedKeyColumns("id");
+        this.noteRows = rowsRead(meterRegistry, "notes");
+        this.categoryRows = rowsRead(meterRegistry, "categories");
+        this.tagRows = rowsRead(meterRegistry, "tags");
     }
 
     @Transactional
     public Note save(Note note, List<CategoryDto> categoryNames, List<TagDto> tags) {
-        log.info("Saving new note with name: {}, categories: {}, tags: {}",
-                note.getName(), categoryNames.size(), tags.size());
+        if (log.isDebugEnabled()) {
+            log.debug("Saving new note with name: {}, categories: {}, tags: {}",
+                    note.getName(), categoryNames.size(), tags.size());
+        }
         Map<String, Object> values = new HashMap<>();
         values.put("name", note.getName());
         values.put("date_of_creation", note.getDateOfCreation());
@@ -50,66 +71,190 @@ public class NoteRepository {
 
         Number id = insert.executeAndReturnKey(values);
         note.setId(id.longValue());
-        log.info("Note saved with id: {}", note.getId());
+        log.debug("Note saved with id: {}", note.getId());
 
         List<Long> categoryIds = processCategories(categoryNames);
         batchInsertNoteCategory(note.getId(), categoryIds);
-        log.info("Added {} categories to note", categoryIds.size());
+        log.debug("Added {} categories to note", categoryIds.size());
 
         List<Long> tagIds = processTags(tags);
         batchInsertNoteTag(note.getId(), tagIds);
-        log.info("Added {} tags to note", tagIds.size());
+        log.debug("Added {} tags to note", tagIds.size());
+        noteChangeRepository.record(note.getId(), NoteChange.Operation.CREATED);
 
         return getById(note.getId());
     }
 
     public Note getById(Long id) {
-        log.info("Fetching note with relations by id: {}", id);
+        log.debug("Fetching note with relations by id: {}", id);
         String sqlQuery = """
-                SELECT 
-                    n.id as note_id, n.name as note_name, n.date_of_creation, n.date_of_update, n.is_done,
-                    c.id as category_id, c.name as category_name,
-                    t.id as tag_id, t.name as tag_name, t.colour as tag_colour
-                FROM notes n
-                LEFT JOIN note_category nc ON n.id = nc.note_id
-                LEFT JOIN categories c ON nc.category_id = c.id
-                LEFT JOIN note_tag nt ON n.id = nt.note_id
-                LEFT JOIN tags t ON nt.tag_id = t.id
-                WHERE n.id = ?
+                SELECT id, name, date_of_creation, date_of_update, is_done, version, updated_at
+                FROM notes
+                WHERE id = ?
                 """;
 
-        List<Note> notes = template.query(sqlQuery, new NoteWithRelationsExtractor(), id);
+        List<Note> notes = template.query(sqlQuery, (rs, rowNum) -> mapNote(rs), id);
         if (notes.isEmpty()) {
             log.error("No note found with id: {}", id);
             throw new NoDataFoundException("No note found by id");
         }
-        log.info("Found note: {} with {} categories and {} tags",
-                notes.get(0).getName(), notes.get(0).getNoteCategories().size(), notes.get(0).getNoteTags().size());
+        loadRelations(notes);
+        if (log.isDebugEnabled()) {
+            log.debug("Found note: {} with {} categories and {} tags",
+                    notes.get(0).getName(), notes.get(0).getNoteCategories().size(), notes.get(0).getNoteTags().size());
+        }
         return notes.get(0);
     }
 
 
     public List<Note> getAll() {
-        log.info("Getting all notes with relations");
+        log.debug("Getting all notes with relations");
         String sqlQuery = """
-                SELECT 
-                    n.id as note_id, n.name as note_name, n.date_of_creation, n.date_of_update, n.is_done,
-                    c.id as category_id, c.name as category_name,
-                    t.id as tag_id, t.name as tag_name, t.colour as tag_colour
+                SELECT id, name, date_of_creation, date_of_update, is_done, version, updated_at
+                FROM notes
+                ORDER BY id
+                """;
+        List<Note> notes = template.query(sqlQuery, (rs, rowNum) -> mapNote(rs));
+        loadRelations(notes);
+        log.debug("Found {} notes with relations", notes.size());
+        return notes;
+    }
+
+    public List<Note> getPage(Long afterId, int limit, NoteFilter filter) {
+        log.debug("Getting page of notes after id: {}, limit: {}", afterId, limit);
+        StringBuilder sqlQuery = new StringBuilder("""
+                SELECT n.id
+                FROM notes n
+                WHERE n.id > ?
+                """);
+        List<Object> args = new ArrayList<>();
+        args.add(afterId);
+        appendFilter(sqlQuery, args, filter);
+        sqlQuery.append("ORDER BY n.id\nLIMIT ?");
+        args.add(limit);
+
+        List<Long> ids = template.queryForList(sqlQuery.toString(), Long.class, args.toArray());
+        log.debug("Found {} note ids for page", ids.size());
+        return getByIds(ids);
+    }
+
+    /**
+     * Returns the ids of the selected notes that exist, in id order.
+     */
+    public List<Long> findIds(NoteSelectionDto selection) {
+        return selection.getNoteIds() != null
+                ? findExistingIds(selection.getNoteIds())
+                : findIds(selection.getFilter());
+    }
+
+    private List<Long> findIds(NoteFilter filter) {
+        StringBuilder sqlQuery = new StringBuilder("""
+                SELECT n.id
                 FROM notes n
-                LEFT JOIN note_category nc ON n.id = nc.note_id
-                LEFT JOIN categories c ON nc.category_id = c.id
-                LEFT JOIN note_tag nt ON n.id = nt.note_id
-                LEFT JOIN tags t ON nt.tag_id = t.id
-                ORDER BY n.id
+                WHERE 1 = 1
+                """);
+        List<Object> args = new ArrayList<>();
+        appendFilter(sqlQuery, args, filter);
+        sqlQuery.append("ORDER BY n.id");
+        List<Long> ids = template.queryForList(sqlQuery.toString(), Long.class, args.toArray());
+        log.debug("Found {} note ids by filter", ids.size());
+        return ids;
+    }
+
+    private List<Long> findExistingIds(Collection<Long> ids) {
+        List<Long> existing = new ArrayList<>(ids.size());
+        List<Long> sorted = ids.stream().filter(Objects::nonNull).distinct().sorted().toList();
+        for (List<Long> batch : batches(sorted)) {
+            String sqlQuery = """
+                    SELECT id
+                    FROM notes
+                    WHERE id IN (%s)
+                    ORDER BY id
+                    """.formatted(placeholders(batch.size()));
+            existing.addAll(template.queryForList(sqlQuery, Long.class, batch.toArray()));
+        }
+        log.debug("Found {} of {} note ids", existing.size(), ids.size());
+        return existing;
+    }
+
+    private static void appendFilter(StringBuilder sqlQuery, List<Object> args, NoteFilter filter) {
+        if (filter.getIsDone() != null) {
+            sqlQuery.append("AND n.is_done = ?\n");
+            args.add(filter.getIsDone());
+        }
+        if (filter.getDateFrom() != null) {
+            sqlQuery.append("AND n.date_of_creation >= ?\n");
+            args.add(filter.getDateFrom());
+        }
+        if (filter.getDateTo() != null) {
+            sqlQuery.append("AND n.date_of_creation <= ?\n");
+            args.add(filter.getDateTo());
+        }
+        if (filter.getCategoryId() != null) {
+            sqlQuery.append("AND EXISTS (SELECT 1 FROM note_category nc WHERE nc.note_id = n.id AND nc.category_id = ?)\n");
+            args.add(filter.getCategoryId());
+        }
+        if (filter.getTagId() != null) {
+            sqlQuery.append("AND EXISTS (SELECT 1 FROM note_tag nt WHERE nt.note_id = n.id AND nt.tag_id = ?)\n");
+            args.add(filter.getTagId());
+        }
+    }
+
+    public List<Note> getByIds(List<Long> ids) {
+        List<Note> notes = new ArrayList<>(ids.size());
+        for (List<Long> batch : batches(ids)) {
+            String sqlQuery = """
+                    SELECT id, name, date_of_creation, date_of_update, is_done, version, updated_at
+                    FROM notes
+                    WHERE id IN (%s)
+                    ORDER BY id
+                    """.formatted(placeholders(batch.size()));
+            notes.addAll(template.query(sqlQuery, (rs, rowNum) -> mapNote(rs), batch.toArray()));
+        }
+        loadRelations(notes);
+        return notes;
+    }
+
+    /**
+     * Returns the current version of each of the notes that exist, by id.
+     */
+    public Map<Long, Long> getVersions(List<Long> ids) {
+        Map<Long, Long> versions = new HashMap<>(ids.size());
+        for (List<Long> batch : batches(ids)) {
+            String sqlQuery = """
+                    SELECT id, version
+                    FROM notes
+                    WHERE id IN (%s)
+                    """.formatted(placeholders(batch.size()));
+            template.query(sqlQuery, (ResultSet rs) -> {
+                versions.put(rs.getLong("id"), rs.getLong("version"));
+            }, batch.toArray());
+        }
+        return versions;
+    }
+
+    /**
+     * Returns up to {@code limit} notes last changed after {@code afterVersion} and up to
+     * {@code toVersion}, in version order.
+     */
+    public List<Note> getChangedAfter(long afterVersion, long toVersion, int limit) {
+        log.debug("Getting notes changed after version: {}, up to: {}", afterVersion, toVersion);
+        String sqlQuery = """
+                SELECT id
+                FROM notes
+                WHERE version > ? AND version <= ?
+                ORDER BY version
+                LIMIT ?
                 """;
-        log.info("Found notes with relations");
-        return template.query(sqlQuery, new NoteWithRelationsExtractor());
+        List<Long> ids = template.queryForList(sqlQuery, Long.class, afterVersion, toVersion, limit);
+        List<Note> notes = getByIds(ids);
+        notes.sort(Comparator.comparing(Note::getVersion));
+        return notes;
     }
 
     @Transactional
     public Note update(Note note, Long id) {
-        log.info("Updating note with id: {}, new name: {}", id, note.getName());
+        log.debug("Updating note with id: {}, new name: {}", id, note.getName());
         String sqlQuery = """
                 UPDATE notes
                 SET name = ?, date_of_creation = ?, date_of_update = ?, is_done = ?
@@ -122,50 +267,162 @@ public class NoteRepository {
                 note.getIsDone(),
                 id
         );
-        log.info("Updated {} rows for note id: {}", updatedRows, id);
+        log.debug("Updated {} rows for note id: {}", updatedRows, id);
+        if (updatedRows > 0) {
+            noteChangeRepository.record(id, NoteChange.Operation.UPDATED);
+        }
         return getById(id);
     }
 
     @Transactional
     public Map<String, Boolean> delete(Long id) {
-        log.info("Deleting note with id: {}", id);
+        log.debug("Deleting note with id: {}", id);
         String sqlQuery = """
                 DELETE FROM notes
                 WHERE id = ?
                 """;
         int countOfUpdate = template.update(sqlQuery, id);
-        log.info("Note deletion result for id {}: {}", id, countOfUpdate > 0);
+        if (countOfUpdate > 0) {
+            noteChangeRepository.record(id, NoteChange.Operation.DELETED);
+        }
+        log.debug("Note deletion result for id {}: {}", id, countOfUpdate > 0);
         return Map.of("deleted", countOfUpdate > 0);
     }
 
-    private Long findCategoryByName(String name) {
-        log.info("Searching for category by name: {}", name);
+    @Transactional
+    public List<Note> saveAll(List<Note> notes) {
+        log.debug("Saving batch of {} notes", notes.size());
+        Set<String> categoryNames = new HashSet<>();
+        Map<String, String> tagColours = new HashMap<>();
+        for (Note note : notes) {
+            note.getNoteCategories().forEach(nc -> categoryNames.add(nc.getCategory().getName()));
+            note.getNoteTags().forEach(nt -> tagColours.putIfAbsent(nt.getTag().getName(),
+                    nt.getTag().getColour() == null ? "#000000" : nt.getTag().getColour()));
+        }
+        Map<String, Long> categoryIds = resolveCategoryIds(categoryNames);
+        Map<String, Long> tagIds = resolveTagIds(tagColours);
+
+        batchInsertNotes(notes);
+
+        List<Object[]> noteCategoryArgs = new ArrayList<>();
+        List<Object[]> noteTagArgs = new ArrayList<>();
+        for (Note note : notes) {
+            note.getNoteCategories().forEach(nc -> nc.getCategory().setId(categoryIds.get(nc.getCategory().getName())));
+            note.getNoteTags().forEach(nt -> nt.getTag().setId(tagIds.get(nt.getTag().getName())));
+            note.getNoteCategories().stream()
+                    .map(nc -> nc.getCategory().getId())
+                    .distinct()
+                    .forEach(id -> noteCategoryArgs.add(new Object[]{note.getId(), id}));
+            note.getNoteTags().stream()
+                    .map(nt -> nt.getTag().getId())
+                    .distinct()
+                    .forEach(id -> noteTagArgs.add(new Object[]{note.getId(), id}));
+        }
+        template.batchUpdate("INSERT INTO note_category (note_id, category_id) VALUES (?, ?)", noteCategoryArgs);
+        template.batchUpdate("INSERT INTO note_tag (note_id, tag_id) VALUES (?, ?)", noteTagArgs);
+        List<Long> versions = noteChangeRepository.recordAll(notes.stream().map(Note::getId).toList(),
+                NoteChange.Operation.CREATED);
+        for (int i = 0; i < notes.size(); i++) {
+            notes.get(i).setVersion(versions.get(i));
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Saved batch of {} notes with {} category and {} tag links",
+                    notes.size(), noteCategoryArgs.size(), noteTagArgs.size());
+        }
+        return notes;
+    }
+
+    private void batchInsertNotes(List<Note> notes) {
         String sqlQuery = """
-                SELECT id
-                FROM categories
-                WHERE name = ?
+                INSERT INTO notes (name, date_of_creation, date_of_update, is_done)
+                VALUES (?, ?, ?, ?)
                 """;
-        try {
-            log.info("Found category {}", name);
-            return template.queryForObject(sqlQuery, Long.class, name);
-        } catch (EmptyResultDataAccessException e) {
-            log.info("Category not found with name: {}", name);
+        template.execute((ConnectionCallback<Void>) connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(sqlQuery, new String[]{"id"})) {
+                for (Note note : notes) {
+                    statement.setString(1, note.getName());
+                    statement.setObject(2, note.getDateOfCreation());
+                    statement.setObject(3, note.getDateOfUpdate());
+                    statement.setBoolean(4, note.getIsDone());
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+                try (ResultSet keys = statement.getGeneratedKeys()) {
+                    for (Note note : notes) {
+                        keys.next();
+                        note.setId(keys.getLong(1));
+                    }
+                }
+            }
             return null;
+        });
+    }
+
+    private Map<String, Long> resolveCategoryIds(Set<String> names) {
+        Map<String, Long> ids = findIdsByName("categories", names);
+        List<Object[]> missing = names.stream()
+                .filter(name -> !ids.containsKey(name))
+                .map(name -> new Object[]{name})
+                .toList();
+        if (!missing.isEmpty()) {
+            log.debug("Inserting {} new categories", missing.size());
+            dialect.insertMissing(template, """
+                    MERGE INTO categories c
+                    USING (VALUES (CAST(? AS VARCHAR(100)))) AS s(name)
+                    ON c.name = s.name
+                    WHEN NOT MATCHED THEN INSERT (name) VALUES (s.name)
+                    """, """
+                    INSERT INTO categories (name)
+                    VALUES (?)
+                    ON CONFLICT (name) DO NOTHING
+                    """, missing);
+            ids.putAll(findIdsByName("categories", missing.stream().map(args -> (String) args[0]).toList()));
         }
+        return ids;
     }
 
-    private Long insertCategory(String name) {
-        log.info("Inserting new category: {}", name);
-        SimpleJdbcInsert insert = new SimpleJdbcInsert(template)
-                .withTableName("categories")
-                .usingGeneratedKeyColumns("id");
-        Map<String, Object> values = Map.of("name", name);
-        log.info("Inserted new category with name: {}", name);
-        return insert.executeAndReturnKey(values).longValue();
+    private Map<String, Long> resolveTagIds(Map<String, String> colours) {
+        Map<String, Long> ids = findIdsByName("tags", colours.keySet());
+        List<Object[]> missing = colours.entrySet().stream()
+                .filter(entry -> !ids.containsKey(entry.getKey()))
+                .map(entry -> new Object[]{entry.getKey(), entry.getValue()})
+                .toList();
+        if (!missing.isEmpty()) {
+            log.debug("Inserting {} new tags", missing.size());
+            dialect.insertMissing(template, """
+                    MERGE INTO tags t
+                    USING (VALUES (CAST(? AS VARCHAR(100)), CAST(? AS VARCHAR(100)))) AS s(name, colour)
+                    ON t.name = s.name
+                    WHEN NOT MATCHED THEN INSERT (name, colour) VALUES (s.name, s.colour)
+                    """, """
+                    INSERT INTO tags (name, colour)
+                    VALUES (?, ?)
+                    ON CONFLICT (name) DO NOTHING
+                    """, missing);
+            ids.putAll(findIdsByName("tags", missing.stream().map(args -> (String) args[0]).toList()));
+        }
+        return ids;
+    }
+
+    private Map<String, Long> findIdsByName(String table, Collection<String> names) {
+        Map<String, Long> ids = new HashMap<>();
+        List<String> nameList = new ArrayList<>(names);
+        for (int from = 0; from < nameList.size(); from += ID_BATCH_SIZE) {
+            List<String> batch = nameList.subList(from, Math.min(from + ID_BATCH_SIZE, nameList.size()));
+            String sqlQuery = """
+                    SELECT id, name
+                    FROM %s
+                    WHERE name IN (%s)
+                    """.formatted(table, placeholders(batch.size()));
+            template.query(sqlQuery, rs -> {
+                ids.putIfAbsent(rs.getString("name"), rs.getLong("id"));
+            }, batch.toArray());
+        }
+        return ids;
     }
 
     private void batchInsertNoteCategory(Long noteId, List<Long> categoryIds) {
-        log.info("Batch inserting {} note-category relations for note id: {}", categoryIds.size(), noteId);
+        log.debug("Batch inserting {} note-category relations for note id: {}", categoryIds.size(), noteId);
         String sqlQuery = """
                 INSERT INTO note_category (note_id, category_id)
                 VALUES (?, ?)
@@ -174,35 +431,11 @@ public class NoteRepository {
                 .map(id -> new Object[]{noteId, id})
                 .toList();
         template.batchUpdate(sqlQuery, args);
-        log.info("Batch inserted for note-category relations");
-    }
-
-    private Long findTagByName(String name) {
-        log.info("Searching for tag by name: {}", name);
-        String sqlQuery = """
-                SELECT id
-                FROM tags
-                WHERE name = ?
-                """;
-        try {
-            return template.queryForObject(sqlQuery, Long.class, name);
-        } catch (EmptyResultDataAccessException e) {
-            log.info("Tag not found with name: {}", name);
-            return null;
-        }
-    }
-
-    private Long insertTag(String name, String colour) {
-        log.info("Inserting new tag: {} with colour: {}", name, colour);
-        SimpleJdbcInsert insert = new SimpleJdbcInsert(template)
-                .withTableName("tags")
-                .usingGeneratedKeyColumns("id");
-        Map<String, Object> values = Map.of("name", name, "colour", colour);
-        return insert.executeAndReturnKey(values).longValue();
+        log.debug("Batch inserted for note-category relations");
     }
 
     private void batchInsertNoteTag(Long noteId, List<Long> tagIds) {
-        log.info("Batch inserting {} note-tag relations for note id: {}", tagIds.size(), noteId);
+        log.debug("Batch inserting {} note-tag relations for note id: {}", tagIds.size(), noteId);
         String sqlQuery = """
                 INSERT INTO note_tag (note_id, tag_id)
                 VALUES (?, ?)
@@ -211,105 +444,116 @@ public class NoteRepository {
                 .map(id -> new Object[]{noteId, id})
                 .toList();
         template.batchUpdate(sqlQuery, args);
-        log.info("Batch inserted for note-tag relations");
+        log.debug("Batch inserted for note-tag relations");
     }
 
     private List<Long> processCategories(List<CategoryDto> categoryNames) {
-        log.info("Processing {} categories", categoryNames.size());
-        List<Long> categoryIds = new ArrayList<>();
-        for (CategoryDto categoryDto : categoryNames) {
-            Long categoryId = findCategoryByName(categoryDto.getName());
-            if (categoryId == null) {
-                categoryId = insertCategory(categoryDto.getName());
-            }
-            categoryIds.add(categoryId);
-        }
-        return categoryIds;
+        log.debug("Processing {} categories", categoryNames.size());
+        Set<String> names = categoryNames.stream()
+                .map(CategoryDto::getName)
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+        Map<String, Long> categoryIds = resolveCategoryIds(names);
+        return names.stream()
+                .map(categoryIds::get)
+                .toList();
     }
 
     private List<Long> processTags(List<TagDto> tags) {
-        log.info("Processing {} tags", tags.size());
-        List<Long> tagIds = new ArrayList<>();
+        log.debug("Processing {} tags", tags.size());
+        Map<String, String> colours = new LinkedHashMap<>();
         for (TagDto tag : tags) {
-            Long tagId = findTagByName(tag.getName());
-            if (tagId == null) {
-                tagId = insertTag(tag.getName(), tag.getColour() == null ? "#000000" : tag.getColour());
-            }
-            tagIds.add(tagId);
+            colours.putIfAbsent(tag.getName(), tag.getColour() == null ? "#000000" : tag.getColour());
         }
-        return tagIds;
+        Map<String, Long> tagIds = resolveTagIds(colours);
+        return colours.keySet().stream()
+                .map(tagIds::get)
+                .toList();
     }
 
-
-    private static class NoteWithRelationsExtractor implements ResultSetExtractor<List<Note>> {
-        @Override
-        public List<Note> extractData(ResultSet rs) throws SQLException {
-            Map<Long, Note> noteMap = new HashMap<>();
-
-            while (rs.next()) {
-                Long noteId = rs.getLong("note_id");
-                Note note = noteMap.get(noteId);
-
-                if (note == null) {
-                    note = mapNote(rs);
-                    note.setNoteCategories(new ArrayList<>());
-                    note.setNoteTags(new ArrayList<>());
-                    noteMap.put(noteId, note);
-                }
-                addCategoryToNote(rs, note);
-                addTagToNote(rs, note);
-            }
-
-            return new ArrayList<>(noteMap.values());
+    private void loadRelations(List<Note> notes) {
+        noteRows.record(notes.size());
+        int[] rows = new int[2];
+        Map<Long, Note> noteMap = new HashMap<>(notes.size() * 2);
+        for (Note note : notes) {
+            note.setNoteCategories(new ArrayList<>());
+            note.setNoteTags(new ArrayList<>());
+            noteMap.put(note.getId(), note);
         }
 
-        private static Note mapNote(ResultSet rs) throws SQLException {
-            Note n = new Note();
-            n.setId(rs.getLong("note_id"));
-            n.setName(rs.getString("note_name"));
-            n.setDateOfCreation(rs.getObject("date_of_creation", LocalDate.class));
-            n.setDateOfUpdate(rs.getObject("date_of_update", LocalDate.class));
-            n.setIsDone(rs.getBoolean("is_done"));
-            return n;
+        for (List<Long> batch : batches(new ArrayList<>(noteMap.keySet()))) {
+            String categorySql = """
+                    SELECT nc.note_id, c.id, c.name
+                    FROM note_category nc
+                    JOIN categories c ON nc.category_id = c.id
+                    WHERE nc.note_id IN (%s)
+                    """.formatted(placeholders(batch.size()));
+            template.query(categorySql, rs -> {
+                rows[0]++;
+                Note note = noteMap.get(rs.getLong("note_id"));
+                Category category = new Category();
+                category.setId(rs.getLong("id"));
+                category.setName(rs.getString("name"));
+
+                NoteCategory noteCategory = new NoteCategory();
+                noteCategory.setCategory(category);
+                noteCategory.setNote(note);
+                note.getNoteCategories().add(noteCategory);
+            }, batch.toArray());
+
+            String tagSql = """
+                    SELECT nt.note_id, t.id, t.name, t.colour
+                    FROM note_tag nt
+                    JOIN tags t ON nt.tag_id = t.id
+                    WHERE nt.note_id IN (%s)
+                    """.formatted(placeholders(batch.size()));
+            template.query(tagSql, rs -> {
+                rows[1]++;
+                Note note = noteMap.get(rs.getLong("note_id"));
+                Tag tag = new Tag();
+                tag.setId(rs.getLong("id"));
+                tag.setName(rs.getString("name"));
+                tag.setColour(rs.getString("colour"));
+
+                NoteTag noteTag = new NoteTag();
+                noteTag.setTag(tag);
+                noteTag.setNote(note);
+                note.getNoteTags().add(noteTag);
+            }, batch.toArray());
         }
+        categoryRows.record(rows[0]);
+        tagRows.record(rows[1]);
+    }
 
-        private void addCategoryToNote(ResultSet rs, Note note) throws SQLException {
-            Long categoryId = rs.getLong("category_id");
-            if (!rs.wasNull() && categoryId > 0) {
-                boolean categoryExists = note.getNoteCategories().stream()
-                        .anyMatch(nc -> nc.getCategory().getId().equals(categoryId));
-
-                if (!categoryExists) {
-                    Category category = new Category();
-                    category.setId(categoryId);
-                    category.setName(rs.getString("category_name"));
-
-                    NoteCategory noteCategory = new NoteCategory();
-                    noteCategory.setCategory(category);
-                    noteCategory.setNote(note);
-                    note.getNoteCategories().add(noteCategory);
-                }
-            }
-        }
+    private static DistributionSummary rowsRead(MeterRegistry meterRegistry, String relation) {
+        return DistributionSummary.builder("note.repository.rows")
+                .description("Rows read per note fetch")
+                .baseUnit("rows")
+                .tag("relation", relation)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
 
-        private void addTagToNote(ResultSet rs, Note note) throws SQLException {
-            Long tagId = rs.getLong("tag_id");
-            if (!rs.wasNull() && tagId > 0) {
-                boolean tagExists = note.getNoteTags().stream()
-                        .anyMatch(nt -> nt.getTag().getId().equals(tagId));
-
-                if (!tagExists) {
-                    Tag tag = new Tag();
-                    tag.setId(tagId);
-                    tag.setName(rs.getString("tag_name"));
-                    tag.setColour(rs.getString("tag_colour"));
-
-                    NoteTag noteTag = new NoteTag();
-                    noteTag.setTag(tag);
-                    noteTag.setNote(note);
-                    note.getNoteTags().add(noteTag);
-                }
-            }
+    private static List<List<Long>> batches(List<Long> ids) {
+        List<List<Long>> batches = new ArrayList<>();
+        for (int from = 0; from < ids.size(); from += ID_BATCH_SIZE) {
+            batches.add(ids.subList(from, Math.min(from + ID_BATCH_SIZE, ids.size())));
         }
+        return batches;
+    }
+
+    private static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+
+    private static Note mapNote(ResultSet rs) throws SQLException {
+        Note note = new Note();
+        note.setId(rs.getLong("id"));
+        note.setName(rs.getString("name"));
+        note.setDateOfCreation(rs.getObject("date_of_creation", LocalDate.class));
+        note.setDateOfUpdate(rs.getObject("date_of_update", LocalDate.class));
+        note.setIsDone(rs.getBoolean("is_done"));
+        note.setVersion(rs.getLong("version"));
+        note.setUpdatedAt(rs.getObject("updated_at", LocalDateTime.class));
+        return note;
     }
 }
@@ -1,83 +1,246 @@
 package com.example.note.demo.repository;
 
 import com.example.note.demo.model.Note;
+import com.example.note.demo.model.NoteChange;
 import com.example.note.demo.util.exception.NoDataFoundException;
+import com.example.note.demo.util.exception.ObjectAlreadyInTableException;
+import io.micrometer.core.annotation.Timed;
 import jakarta.transaction.Transactional;
 import lombok.AccessLevel;
 import lombok.experimental.FieldDefaults;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Repository;
 
-import java.util.Map;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
 
+/**
+ * Links between notes and tags. Every change is a single statement: a missing note or tag shows up
+ * as no affected rows, a link that already exists as a unique constraint violation. Which entity is
+ * missing is only looked up after such a failure, so successful calls do no existence checks.
+ */
 @Slf4j
 @Repository
+@Timed("repository")
 @FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
 public class NoteTagRepository {
     JdbcTemplate template;
+    NoteChangeRepository noteChangeRepository;
+    SqlDialect dialect;
 
     @Autowired
-    public NoteTagRepository(JdbcTemplate template) {
+    public NoteTagRepository(JdbcTemplate template, NoteChangeRepository noteChangeRepository) {
         this.template = template;
+        this.noteChangeRepository = noteChangeRepository;
+        this.dialect = SqlDialect.of(template);
     }
 
     @Transactional
     public Note addTagToNote(Long noteId, Long tagId) {
-        log.info("Adding tag id: {} to note id: {}", tagId, noteId);
-        Note noteInTable = checkNoteInTable(noteId);
-        checkTagInTable(tagId);
-
-        String insertSql = "INSERT INTO note_tag (note_id, tag_id) VALUES (?, ?)";
-        int insertedRows = template.update(insertSql, noteId, tagId);
-        log.info("Successfully added tag to note. Inserted {} rows", insertedRows);
-        return noteInTable;
+        log.debug("Adding tag id: {} to note id: {}", tagId, noteId);
+        String sqlQuery = """
+                INSERT INTO note_tag (note_id, tag_id)
+                SELECT n.id, t.id
+                FROM notes n
+                JOIN tags t ON t.id = ?
+                WHERE n.id = ?
+                """;
+        int insertedRows;
+        try {
+            insertedRows = template.update(sqlQuery, tagId, noteId);
+        } catch (DuplicateKeyException e) {
+            throw alreadyLinked(noteId, tagId);
+        } catch (DataIntegrityViolationException e) {
+            // the note or the tag was deleted concurrently, the failed statement may have aborted
+            // the transaction, so which one is told by the violated key
+            if (SqlDialect.isForeignKeyViolation(e, "tag_id")) {
+                throw tagNotFound(tagId);
+            }
+            log.error("Note id: {} or tag id: {} was deleted concurrently", noteId, tagId);
+            throw new NoDataFoundException("No note or tag found: note_id=" + noteId + ", tag_id=" + tagId);
+        }
+        if (insertedRows == 0) {
+            throw notFound(noteId, tagId);
+        }
+        noteChangeRepository.record(noteId, NoteChange.Operation.UPDATED);
+        log.debug("Successfully added tag to note. Inserted {} rows", insertedRows);
+        return getNote(noteId);
     }
 
     @Transactional
     public Note updateTagInNote(Long noteId, Long oldTagId, Long newTagId) {
-        log.info("Updating tag in note: noteId={}, oldTagId={}, newTagId={}", noteId, oldTagId, newTagId);
-        Note noteInTable = checkNoteInTable(noteId);
-        checkTagInTable(oldTagId);
-        checkTagInTable(newTagId);
-
+        log.debug("Updating tag in note: noteId={}, oldTagId={}, newTagId={}", noteId, oldTagId, newTagId);
         String sqlQuery = """
                 UPDATE note_tag
                 SET tag_id = ?
                 WHERE note_id = ? AND tag_id = ?
                 """;
-        int updatedRows = template.update(sqlQuery, newTagId, noteId, oldTagId);
-        log.info("Updated {} rows for tag update in note", updatedRows);
-        return noteInTable;
+        int updatedRows;
+        try {
+            updatedRows = template.update(sqlQuery, newTagId, noteId, oldTagId);
+        } catch (DuplicateKeyException e) {
+            throw alreadyLinked(noteId, newTagId);
+        } catch (DataIntegrityViolationException e) {
+            throw tagNotFound(newTagId);
+        }
+        if (updatedRows == 0) {
+            throw notFound(noteId, oldTagId);
+        }
+        noteChangeRepository.record(noteId, NoteChange.Operation.UPDATED);
+        log.debug("Updated {} rows for tag update in note", updatedRows);
+        return getNote(noteId);
     }
 
+    /**
+     * Unlinks the tag from the note and records the change.
+     *
+     * @return the version of the change
+     */
     @Transactional
-    public Map<String, Boolean> deleteTagFromNote(Long noteId, Long tagId) {
-        log.info("Deleting tag id: {} from note id: {}", tagId, noteId);
-        checkNoteTagInTable(noteId, tagId);
+    public long deleteTagFromNote(Long noteId, Long tagId) {
+        log.debug("Deleting tag id: {} from note id: {}", tagId, noteId);
         String sqlQuery = """
                 DELETE FROM note_tag
                 WHERE note_id = ? AND tag_id = ?
                 """;
         int countOfUpdate = template.update(sqlQuery, noteId, tagId);
-        log.info("Tag deletion from note result: {}", countOfUpdate > 0);
-        return Map.of("deleted", countOfUpdate > 0);
+        if (countOfUpdate == 0) {
+            log.error("No note-tag relation found: noteId={}, tagId={}", noteId, tagId);
+            throw new NoDataFoundException("No relation found: note_id=" + noteId + ", tag_id=" + tagId);
+        }
+        long version = noteChangeRepository.record(noteId, NoteChange.Operation.UPDATED);
+        log.debug("Tag deletion from note result: {}", countOfUpdate > 0);
+        return version;
     }
 
-    private Note checkNoteInTable(Long noteId) {
-        log.info("Checking note exists with id: {}", noteId);
+    /**
+     * Links the tag to those of the notes that do not have it yet.
+     *
+     * @return the ids of the notes the tag was linked to
+     */
+    @Transactional
+    public List<Long> addTagToNotes(List<Long> noteIds, Long tagId) {
+        log.debug("Adding tag id: {} to {} notes", tagId, noteIds.size());
+        checkTagInTable(tagId);
+        List<Long> changed = merge(noteIds, tagId);
+        noteChangeRepository.recordAll(changed, NoteChange.Operation.UPDATED);
+        log.debug("Added tag id: {} to {} of {} notes", tagId, changed.size(), noteIds.size());
+        return changed;
+    }
+
+    /**
+     * Replaces the tag with the new one in those of the notes that have it. Notes that already have
+     * the new tag just lose the old one.
+     *
+     * @return the ids of the notes that had the old tag
+     */
+    @Transactional
+    public List<Long> updateTagInNotes(List<Long> noteIds, Long oldTagId, Long newTagId) {
+        log.debug("Updating tag in {} notes: oldTagId={}, newTagId={}", noteIds.size(), oldTagId, newTagId);
+        checkTagInTable(newTagId);
+        if (oldTagId.equals(newTagId)) {
+            return List.of();
+        }
+        List<Long> changed = unlink(noteIds, oldTagId);
+        merge(changed, newTagId);
+        noteChangeRepository.recordAll(changed, NoteChange.Operation.UPDATED);
+        log.debug("Updated tag in {} of {} notes", changed.size(), noteIds.size());
+        return changed;
+    }
+
+    /**
+     * Unlinks the tag from those of the notes that have it.
+     *
+     * @return the ids of the notes the tag was unlinked from
+     */
+    @Transactional
+    public List<Long> deleteTagFromNotes(List<Long> noteIds, Long tagId) {
+        log.debug("Deleting tag id: {} from {} notes", tagId, noteIds.size());
+        List<Long> changed = unlink(noteIds, tagId);
+        noteChangeRepository.recordAll(changed, NoteChange.Operation.UPDATED);
+        log.debug("Deleted tag id: {} from {} of {} notes", tagId, changed.size(), noteIds.size());
+        return changed;
+    }
+
+    /**
+     * Inserts only the links that do not exist yet, so links added concurrently are skipped instead
+     * of failing the transaction, see {@link SqlDialect#insertMissing}.
+     */
+    private List<Long> merge(List<Long> noteIds, Long tagId) {
+        String h2Merge = """
+                MERGE INTO note_tag nt
+                USING (VALUES (CAST(? AS BIGINT), CAST(? AS BIGINT))) AS s(note_id, tag_id)
+                ON nt.note_id = s.note_id AND nt.tag_id = s.tag_id
+                WHEN NOT MATCHED THEN INSERT (note_id, tag_id) VALUES (s.note_id, s.tag_id)
+                """;
+        String postgresInsert = """
+                INSERT INTO note_tag (note_id, tag_id)
+                VALUES (?, ?)
+                ON CONFLICT (note_id, tag_id) DO NOTHING
+                """;
+        List<Object[]> args = noteIds.stream().map(noteId -> new Object[]{noteId, tagId}).toList();
+        try {
+            return changed(noteIds, dialect.insertMissing(template, h2Merge, postgresInsert, args));
+        } catch (DataIntegrityViolationException e) {
+            if (SqlDialect.isForeignKeyViolation(e, "tag_id")) {
+                throw tagNotFound(tagId);
+            }
+            log.error("Notes were deleted concurrently while adding tag id: {}", tagId);
+            throw new NoDataFoundException("Some of the notes were deleted while adding tag id " + tagId);
+        }
+    }
+
+    private List<Long> unlink(List<Long> noteIds, Long tagId) {
+        String sqlQuery = """
+                DELETE FROM note_tag
+                WHERE note_id = ? AND tag_id = ?
+                """;
+        return changed(noteIds, template.batchUpdate(sqlQuery,
+                noteIds.stream().map(noteId -> new Object[]{noteId, tagId}).toList()));
+    }
+
+    private static List<Long> changed(List<Long> noteIds, int[] counts) {
+        List<Long> changed = new ArrayList<>();
+        for (int i = 0; i < counts.length; i++) {
+            // drivers that do not report counts of batched statements return SUCCESS_NO_INFO
+            if (counts[i] != 0) {
+                changed.add(noteIds.get(i));
+            }
+        }
+        return changed;
+    }
+
+    private void checkTagInTable(Long tagId) {
+        Integer count = template.queryForObject("SELECT COUNT(*) FROM tags WHERE id = ?", Integer.class, tagId);
+        if (count == null || count == 0) {
+            throw tagNotFound(tagId);
+        }
+    }
+
+    private Note getNote(Long noteId) {
         try {
             return template.queryForObject(
-                    "SELECT * FROM notes WHERE id = ?",
+                    """
+                    SELECT id, name, date_of_creation, date_of_update, is_done, version, updated_at
+                    FROM notes
+                    WHERE id = ?
+                    """,
                     (rs, rowNum) -> {
                         Note note = new Note();
                         note.setId(rs.getLong("id"));
                         note.setName(rs.getString("name"));
-                        note.setDateOfCreation(rs.getDate("date_of_creation").toLocalDate());
-                        note.setDateOfUpdate(rs.getDate("date_of_update").toLocalDate());
+                        note.setDateOfCreation(rs.getObject("date_of_creation", LocalDate.class));
+                        note.setDateOfUpdate(rs.getObject("date_of_update", LocalDate.class));
                         note.setIsDone(rs.getBoolean("is_done"));
+                        note.setVersion(rs.getLong("version"));
+                        note.setUpdatedAt(rs.getObject("updated_at", LocalDateTime.class));
                         return note;
                     },
                     noteId
@@ -88,28 +251,35 @@ public class NoteTagRepository {
         }
     }
 
-    private void checkTagInTable(Long tagId) {
-        log.info("Checking tag exists with id: {}", tagId);
-        Integer count = template.queryForObject(
-                "SELECT COUNT(*) FROM tags WHERE id = ?", Integer.class, tagId
-        );
-        if (count == null || count == 0) {
-            log.error("No tag found with id: {}", tagId);
-            throw new NoDataFoundException("No tag found by id = " + tagId);
-        }
-        log.info("Tag exists with id: {}", tagId);
+    /**
+     * Finds out why a statement on the link of the note and the tag affected no rows.
+     */
+    private NoDataFoundException notFound(Long noteId, Long tagId) {
+        String sqlQuery = """
+                SELECT EXISTS (SELECT 1 FROM notes WHERE id = ?) AS note_found,
+                       EXISTS (SELECT 1 FROM tags WHERE id = ?) AS tag_found
+                """;
+        return template.queryForObject(sqlQuery, (rs, rowNum) -> {
+            if (!rs.getBoolean("note_found")) {
+                log.error("No note found with id: {}", noteId);
+                return new NoDataFoundException("No note found by id " + noteId);
+            }
+            if (!rs.getBoolean("tag_found")) {
+                return tagNotFound(tagId);
+            }
+            log.error("No note-tag relation found: noteId={}, tagId={}", noteId, tagId);
+            return new NoDataFoundException("No relation found: note_id=" + noteId + ", tag_id=" + tagId);
+        }, noteId, tagId);
     }
 
-    private void checkNoteTagInTable(Long noteId, Long tagId) {
-        log.info("Checking note-tag relation: noteId={}, tagId={}", noteId, tagId);
-        Integer count = template.queryForObject(
-                "SELECT COUNT(*) FROM note_tag WHERE note_id = ? AND tag_id = ?",
-                Integer.class, noteId, tagId
-        );
-        if (count == null || count == 0) {
-            log.error("No note-tag relation found: noteId={}, tagId={}", noteId, tagId);
-            throw new NoDataFoundException("No relation found: note_id=" + noteId + ", tag_id=" + tagId);
-        }
-        log.info("Note-tag relation exists: noteId={}, tagId={}", noteId, tagId);
+    private NoDataFoundException tagNotFound(Long tagId) {
+        log.error("No tag found with id: {}", tagId);
+        return new NoDataFoundException("No tag found by id = " + tagId);
+    }
+
+    private ObjectAlreadyInTableException alreadyLinked(Long noteId, Long tagId) {
+        log.error("Tag id: {} is already linked to note id: {}", tagId, noteId);
+        return new ObjectAlreadyInTableException(String.format("Tag with id %d already linked to note with id %d",
+                tagId, noteId));
     }
 }
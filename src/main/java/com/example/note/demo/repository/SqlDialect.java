@@ -0,0 +1,88 @@
+package com.example.note.demo.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.ArgumentPreparedStatementSetter;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.BatchUpdateException;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The databases the repositories run on, for the few statements that have to be written
+ * differently for each of them.
+ */
+@Slf4j
+enum SqlDialect {
+    H2,
+    POSTGRESQL;
+
+    static SqlDialect of(JdbcTemplate template) {
+        String product = template.execute((ConnectionCallback<String>) connection ->
+                connection.getMetaData().getDatabaseProductName());
+        return "PostgreSQL".equalsIgnoreCase(product) ? POSTGRESQL : H2;
+    }
+
+    /**
+     * Whether the violation is of a foreign key on {@code column}. JDBC does not tell which constraint
+     * failed, but both databases name the key column in the message: H2 as {@code FOREIGN KEY(TAG_ID)},
+     * PostgreSQL in the generated constraint name, such as {@code note_tag_tag_id_fkey}. H2 also
+     * appends the statement, which names every column, so only these forms are matched.
+     */
+    static boolean isForeignKeyViolation(DataIntegrityViolationException e, String column) {
+        String message = e.getMostSpecificCause().getMessage();
+        if (message == null) {
+            return false;
+        }
+        String normalized = message.toLowerCase(Locale.ROOT);
+        String key = column.toLowerCase(Locale.ROOT);
+        return normalized.contains("foreign key(" + key + ")") || normalized.contains("_" + key + "_fkey");
+    }
+
+    /**
+     * Inserts the rows of {@code args} unless a row with the same unique key exists, and returns
+     * the number of rows inserted for each of them.
+     * <p>
+     * On PostgreSQL {@code postgresInsert} is an {@code INSERT ... ON CONFLICT DO NOTHING}, which
+     * also skips rows inserted by concurrent transactions, so it never fails on a duplicate and
+     * never aborts the transaction. H2 supports that clause only in its PostgreSQL mode, so there
+     * {@code h2Merge} is a {@code MERGE ... WHEN NOT MATCHED}, which fails if a concurrent
+     * transaction inserted the same key first. H2 rolls back only the failed statement, so the
+     * rows that failed are merged once more, one by one; a row that fails again fails the call.
+     */
+    int[] insertMissing(JdbcTemplate template, String h2Merge, String postgresInsert, List<Object[]> args) {
+        if (this == POSTGRESQL) {
+            return template.batchUpdate(postgresInsert, args);
+        }
+        return template.execute((ConnectionCallback<int[]>) connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(h2Merge)) {
+                for (Object[] row : args) {
+                    new ArgumentPreparedStatementSetter(row).setValues(statement);
+                    statement.addBatch();
+                }
+                try {
+                    return statement.executeBatch();
+                } catch (BatchUpdateException e) {
+                    int[] counts = e.getUpdateCounts();
+                    if (counts == null || counts.length != args.size()) {
+                        throw e;
+                    }
+                    log.info("Merge of {} rows failed, most likely on rows inserted concurrently, retrying failed rows",
+                            args.size());
+                    statement.clearBatch();
+                    for (int i = 0; i < counts.length; i++) {
+                        if (counts[i] == Statement.EXECUTE_FAILED) {
+                            new ArgumentPreparedStatementSetter(args.get(i)).setValues(statement);
+                            counts[i] = statement.executeUpdate();
+                        }
+                    }
+                    return counts;
+                }
+            }
+        });
+    }
+}
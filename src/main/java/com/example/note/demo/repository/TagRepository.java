@@ -3,11 +3,13 @@ package com.example.note.demo.repository;
 import com.example.note.demo.model.Tag;
 import com.example.note.demo.util.exception.NoDataFoundException;
 import com.example.note.demo.util.exception.ObjectAlreadyInTableException;
+import io.micrometer.core.annotation.Timed;
 import jakarta.transaction.Transactional;
 import lombok.AccessLevel;
 import lombok.experimental.FieldDefaults;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.simple.SimpleJdbcInsert;
@@ -21,14 +23,17 @@ import java.util.Map;
 
 @Slf4j
 @Repository
+@Timed("repository")
 @FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
 public class TagRepository {
     JdbcTemplate template;
+    NoteChangeRepository noteChangeRepository;
     SimpleJdbcInsert insert;
 
     @Autowired
-    public TagRepository(JdbcTemplate template) {
+    public TagRepository(JdbcTemplate template, NoteChangeRepository noteChangeRepository) {
         this.template = template;
+        this.noteChangeRepository = noteChangeRepository;
         this.insert = new SimpleJdbcInsert(template)
                 .withTableName("tags")
                 .usingGeneratedKeyColumns("id");
@@ -36,7 +41,7 @@ public class TagRepository {
 
     @Transactional
     public Tag save(Tag tag) {
-        log.info("Attempting to save tag with name: {} and colour: {}", tag.getName(), tag.getColour());
+        log.debug("Attempting to save tag with name: {} and colour: {}", tag.getName(), tag.getColour());
         if (findTagByName(tag.getName()) != null) {
             log.error("Tag with name '{}' already exists in the table", tag.getName());
             throw new ObjectAlreadyInTableException(String.format("Category with name %s already in table",
@@ -48,13 +53,13 @@ public class TagRepository {
 
         Number id = insert.executeAndReturnKey(values);
         tag.setId(id.longValue());
-        log.info("Successfully saved tag with id: {}, name: {}, colour: {}",
+        log.debug("Successfully saved tag with id: {}, name: {}, colour: {}",
                 tag.getId(), tag.getName(), tag.getColour());
         return tag;
     }
 
     public Tag getById(Long id) {
-        log.info("Getting tag by id: {}", id);
+        log.debug("Getting tag by id: {}", id);
         String sqlQuery = """
                 SELECT * 
                 FROM tags
@@ -69,43 +74,51 @@ public class TagRepository {
     }
 
     public List<Tag> getAll() {
-        log.info("Getting all tags");
+        log.debug("Getting all tags");
         String sqlQuery = """
                 SELECT *
                 FROM tags
                 """;
-        log.info("Found tags");
+        log.debug("Found tags");
         return template.query(sqlQuery, (rs, rowNum) -> mapTag(rs));
     }
 
     @Transactional
     public Tag update(Tag tag, Long id) {
-        log.info("Updating tag with id: {} to name: {}, colour: {}", id, tag.getName(), tag.getColour());
+        log.debug("Updating tag with id: {} to name: {}, colour: {}", id, tag.getName(), tag.getColour());
         String sqlQuery = """
                 UPDATE tags
                 SET name = ?, colour = ?
                 WHERE id = ?
                 """;
-        int updatedRows = template.update(sqlQuery, tag.getName(), tag.getColour(), id);
+        int updatedRows;
+        try {
+            updatedRows = template.update(sqlQuery, tag.getName(), tag.getColour(), id);
+        } catch (DuplicateKeyException e) {
+            log.error("Tag with name '{}' already exists in the table", tag.getName());
+            throw new ObjectAlreadyInTableException(String.format("Tag with name %s already in table",
+                    tag.getName()));
+        }
+        noteChangeRepository.recordNotesWithTag(id);
         tag.setId(id);
-        log.info("Updated {} rows for tag id: {}", updatedRows, id);
+        log.debug("Updated {} rows for tag id: {}", updatedRows, id);
         return tag;
     }
 
     @Transactional
     public Map<String, Boolean> delete(Long id) {
-        log.info("Deleting tag with id: {}", id);
+        log.debug("Deleting tag with id: {}", id);
         String sqlQuery = """
                 DELETE FROM tags
                 WHERE id = ?
                 """;
         int countOfUpdate = template.update(sqlQuery, id);
-        log.info("Tag deletion result for id {}: {}", id, countOfUpdate > 0);
+        log.debug("Tag deletion result for id {}: {}", id, countOfUpdate > 0);
         return Map.of("deleted", countOfUpdate > 0);
     }
 
     private Long findTagByName(String name) {
-        log.info("Searching for tag by name: {}", name);
+        log.debug("Searching for tag by name: {}", name);
         String sqlQuery = """
                 SELECT id
                 FROM tags
@@ -114,7 +127,7 @@ public class TagRepository {
         try {
             return template.queryForObject(sqlQuery, Long.class, name);
         } catch (EmptyResultDataAccessException e) {
-            log.info("No tag found with name: {}", name);
+            log.debug("No tag found with name: {}", name);
             return null;
         }
     }
@@ -0,0 +1,178 @@
+package com.example.note.demo.service;
+
+import com.example.note.demo.configuration.cache.CacheWarmer;
+import com.example.note.demo.dto.NoteDto;
+import com.example.note.demo.repository.CategoryRepository;
+import com.example.note.demo.repository.NoteRepository;
+import com.example.note.demo.repository.TagRepository;
+import com.example.note.demo.util.mapper.CategoryMapper;
+import com.example.note.demo.util.mapper.NoteMapper;
+import com.example.note.demo.util.mapper.TagMapper;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Preloads Redis with the most read notes, the note list view and the tag and category lists, so
+ * that after a deploy or a Redis restart the first requests do not all go to the database.
+ * <p>
+ * The startup warm-up runs in an {@link ApplicationReadyEvent} listener, before the application
+ * reports readiness. Afterwards the cache is checked every {@code note.warmup.check-interval} and
+ * warmed up again if Redis lost the marker written by the previous warm-up; the node stays ready
+ * meanwhile. The most read notes are taken from the {@link NoteAccessSketch} of this node and from
+ * the hot notes saved in Redis by all nodes, which is what a freshly started node relies on.
+ * <p>
+ * A note changed between the read and the write may already have had its cache entry updated or
+ * evicted, which the warm-up write would then undo. Written notes whose version changed since the
+ * read are therefore evicted again, and all warm-up entries expire after {@code note.warmup.ttl},
+ * which bounds changes that do not bump a note version, such as tag and category renames.
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "note.warmup.enabled", havingValue = "true")
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class CacheWarmupService {
+    private static final String NOTES_CACHE = "notes";
+    private static final String ALL_KEY = "all";
+
+    CacheWarmer cacheWarmer;
+    NoteAccessSketch noteAccessSketch;
+    NoteListCache noteListCache;
+    NoteRepository noteRepository;
+    NoteMapper noteMapper;
+    TagRepository tagRepository;
+    TagMapper tagMapper;
+    CategoryRepository categoryRepository;
+    CategoryMapper categoryMapper;
+    CacheManager cacheManager;
+    int topK;
+    Duration ttl;
+    Lock lock = new ReentrantLock();
+
+    @Autowired
+    public CacheWarmupService(CacheWarmer cacheWarmer, NoteAccessSketch noteAccessSketch, NoteListCache noteListCache,
+                              NoteRepository noteRepository, NoteMapper noteMapper,
+                              TagRepository tagRepository, TagMapper tagMapper,
+                              CategoryRepository categoryRepository, CategoryMapper categoryMapper,
+                              CacheManager cacheManager,
+                              @Value("${note.warmup.top-k:1000}") int topK,
+                              @Value("${note.warmup.ttl:2m}") Duration ttl) {
+        this.cacheWarmer = cacheWarmer;
+        this.noteAccessSketch = noteAccessSketch;
+        this.noteListCache = noteListCache;
+        this.noteRepository = noteRepository;
+        this.noteMapper = noteMapper;
+        this.tagRepository = tagRepository;
+        this.tagMapper = tagMapper;
+        this.categoryRepository = categoryRepository;
+        this.categoryMapper = categoryMapper;
+        this.cacheManager = cacheManager;
+        this.topK = topK;
+        this.ttl = ttl;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUpOnStartup() {
+        warmUp("startup");
+    }
+
+    @Scheduled(initialDelayString = "${note.warmup.check-interval:10s}",
+            fixedDelayString = "${note.warmup.check-interval:10s}")
+    public void warmUpIfEmpty() {
+        boolean warm;
+        try {
+            warm = cacheWarmer.isWarm();
+        } catch (RuntimeException e) {
+            log.debug("Failed to check the cache warm-up marker: {}", e.getMessage());
+            return;
+        }
+        if (!warm) {
+            warmUp("empty cache");
+        }
+    }
+
+    /**
+     * Also runs when the context is closing, before the Redis connection factory is stopped.
+     */
+    @EventListener(ContextClosedEvent.class)
+    @Scheduled(initialDelayString = "${note.warmup.hot-notes-interval:1m}",
+            fixedDelayString = "${note.warmup.hot-notes-interval:1m}")
+    public void saveHotNotes() {
+        try {
+            Map<String, Long> counts = noteAccessSketch.top(topK).entrySet().stream()
+                    .collect(Collectors.toMap(entry -> String.valueOf(entry.getKey()), Map.Entry::getValue));
+            cacheWarmer.saveHotKeys(NOTES_CACHE, counts, topK);
+        } catch (RuntimeException e) {
+            log.debug("Failed to save hot notes: {}", e.getMessage());
+        }
+    }
+
+    private void warmUp(String reason) {
+        if (!lock.tryLock()) {
+            return;
+        }
+        try {
+            long start = System.nanoTime();
+            Set<Long> ids = new LinkedHashSet<>(noteAccessSketch.top(topK).keySet());
+            cacheWarmer.loadHotKeys(NOTES_CACHE, topK).stream()
+                    .map(Long::valueOf)
+                    .forEach(ids::add);
+            Map<Long, NoteDto> notes = noteMapper.toDto(noteRepository.getByIds(List.copyOf(ids))).stream()
+                    .collect(Collectors.toMap(NoteDto::getId, Function.identity()));
+            int written = cacheWarmer.putAllIfAbsent(NOTES_CACHE, notes, ttl);
+            evictChanged(notes);
+            cacheWarmer.putAllIfAbsent("tags", Map.of(ALL_KEY, tagMapper.toDto(tagRepository.getAll())), ttl);
+            cacheWarmer.putAllIfAbsent("categories",
+                    Map.of(ALL_KEY, categoryMapper.toDto(categoryRepository.getAll())), ttl);
+            noteListCache.getAll();
+            cacheWarmer.markWarm();
+            log.info("Cache warmed up on {} in {} ms: {} of {} hot notes written", reason,
+                    (System.nanoTime() - start) / 1_000_000, written, notes.size());
+        } catch (RuntimeException e) {
+            log.warn("Cache warm-up on {} failed: {}", reason, e.getMessage());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Evicts the notes that were changed or deleted after they were read for the warm-up. A change
+     * committed after this check updates the cache entry the warm-up wrote.
+     */
+    private void evictChanged(Map<Long, NoteDto> notes) {
+        Map<Long, Long> versions = noteRepository.getVersions(List.copyOf(notes.keySet()));
+        List<Long> changed = notes.values().stream()
+                .filter(note -> !Objects.equals(versions.get(note.getId()), note.getVersion()))
+                .map(NoteDto::getId)
+                .toList();
+        if (changed.isEmpty()) {
+            return;
+        }
+        log.debug("Evicting {} notes changed during the cache warm-up", changed.size());
+        Cache cache = cacheManager.getCache(NOTES_CACHE);
+        if (cache != null) {
+            changed.forEach(cache::evict);
+        }
+    }
+}
@@ -1,40 +1,62 @@
 package com.example.note.demo.service;
 
+import com.example.note.demo.configuration.cache.NoteCacheIndex;
 import com.example.note.demo.dto.CategoryDto;
 import com.example.note.demo.dto.NoteDto;
+import com.example.note.demo.dto.NoteLinksResultDto;
+import com.example.note.demo.dto.NoteSelectionDto;
 import com.example.note.demo.model.Category;
 import com.example.note.demo.model.Note;
 import com.example.note.demo.repository.CategoryRepository;
 import com.example.note.demo.repository.NoteCategoryRepository;
+import com.example.note.demo.repository.NoteRepository;
 import com.example.note.demo.util.mapper.CategoryMapper;
 import com.example.note.demo.util.mapper.NoteMapper;
+import io.micrometer.core.annotation.Timed;
 import lombok.AccessLevel;
 import lombok.experimental.FieldDefaults;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.*;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 @Slf4j
 @Service
+@Timed("service")
 @FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
 @CacheConfig(cacheNames = "categories")
 public class CategoryService {
     CategoryRepository categoryRepository;
     CategoryMapper categoryMapper;
     NoteCategoryRepository noteCategoryRepository;
+    NoteRepository noteRepository;
     NoteMapper noteMapper;
+    NoteCacheIndex noteCacheIndex;
+    NoteSearchIndex noteSearchIndex;
+    NoteCacheUpdater noteCacheUpdater;
+    CacheManager cacheManager;
 
     @Autowired
     public CategoryService(CategoryRepository categoryRepository, CategoryMapper categoryMapper,
-                           NoteCategoryRepository noteCategoryRepository, NoteMapper noteMapper) {
+                           NoteCategoryRepository noteCategoryRepository, NoteRepository noteRepository,
+                           NoteMapper noteMapper, NoteCacheIndex noteCacheIndex,
+                           NoteSearchIndex noteSearchIndex, NoteCacheUpdater noteCacheUpdater,
+                           CacheManager cacheManager) {
         this.categoryRepository = categoryRepository;
         this.categoryMapper = categoryMapper;
         this.noteCategoryRepository = noteCategoryRepository;
+        this.noteRepository = noteRepository;
         this.noteMapper = noteMapper;
+        this.noteCacheIndex = noteCacheIndex;
+        this.noteSearchIndex = noteSearchIndex;
+        this.noteCacheUpdater = noteCacheUpdater;
+        this.cacheManager = cacheManager;
     }
 
     @Caching(
@@ -46,25 +68,25 @@ public class CategoryService {
             }
     )
     public CategoryDto save(CategoryDto categoryDto) {
-        log.info("Service: Saving category with name: {}", categoryDto.getName());
+        log.debug("Service: Saving category with name: {}", categoryDto.getName());
         Category savedCategory = categoryRepository.save(categoryMapper.toEntity(categoryDto));
-        log.info("Service: Successfully saved category with id: {}", savedCategory.getId());
+        log.debug("Service: Successfully saved category with id: {}", savedCategory.getId());
         return categoryMapper.toDto(savedCategory);
     }
 
     @Cacheable(key = "#id")
     public CategoryDto getById(Long id) {
-        log.info("Service: Getting category by id: {}", id);
+        log.debug("Service: Getting category by id: {}", id);
         Category category = categoryRepository.getById(id);
-        log.info("Service: Successfully get category: {}", category);
+        log.debug("Service: Successfully get category: {}", category);
         return categoryMapper.toDto(category);
     }
 
     @Cacheable(key = "'all'")
     public List<CategoryDto> getAll() {
-        log.info("Service: Getting all categories");
+        log.debug("Service: Getting all categories");
         List<Category> categories = categoryRepository.getAll();
-        log.info("Service: get {} categories", categories.size());
+        log.debug("Service: get {} categories", categories.size());
         return categoryMapper.toDto(categories);
     }
 
@@ -73,46 +95,131 @@ public class CategoryService {
                     @CachePut(key = "#id")
             },
             evict = {
-                    @CacheEvict(key = "'all'")
+                    @CacheEvict(key = "'all'"),
+                    @CacheEvict(value = "notes", key = "'all'")
             }
     )
     public CategoryDto update(CategoryDto categoryDto, Long id) {
-        log.info("Service: Updating category with id: {} to name: {}", id, categoryDto.getName());
+        log.debug("Service: Updating category with id: {} to name: {}", id, categoryDto.getName());
         Category updatedCategory = categoryRepository.update(categoryMapper.toEntity(categoryDto), id);
-        log.info("Service: Successfully updated category with id: {}", id);
+        evictCachedNotesWithCategory(id);
+        log.debug("Service: Successfully updated category with id: {}", id);
         return categoryMapper.toDto(updatedCategory);
     }
 
     @Caching(evict = {
             @CacheEvict(key = "#id"),
             @CacheEvict(key = "'all'"),
+            @CacheEvict(value = "notes", key = "'all'")
     })
     public Map<String, Boolean> delete(Long id) {
-        log.info("Service: Deleting category with id: {}", id);
+        log.debug("Service: Deleting category with id: {}", id);
         Map<String, Boolean> result = categoryRepository.delete(id);
-        log.info("Service: Category deletion completed for id: {}, result: {}", id, result);
+        evictCachedNotesWithCategory(id);
+        noteSearchIndex.removeCategory(id);
+        log.debug("Service: Category deletion completed for id: {}, result: {}", id, result);
         return result;
     }
 
     public NoteDto addCategoryToNote(Long noteId, Long categoryId) {
-        log.info("Service: Adding category id: {} to note id: {}", categoryId, noteId);
+        log.debug("Service: Adding category id: {} to note id: {}", categoryId, noteId);
         Note note = noteCategoryRepository.addCategoryToNote(noteId, categoryId);
-        log.info("Service: Successfully added category to note");
-        return noteMapper.toDto(note);
+        log.debug("Service: Successfully added category to note");
+        NoteDto noteDto = noteMapper.toDto(note);
+        noteSearchIndex.linkCategory(List.of(noteId), categoryId);
+        noteCacheUpdater.replaceCategory(noteId, null, cachedCategory(categoryId), note.getVersion());
+        return noteDto;
     }
 
     public NoteDto updateCategoryInNote(Long noteId, Long categoryId, Long newCategoryId) {
-        log.info("Service: Updating category in note: noteId={}, oldCategoryId={}, newCategoryId={}",
+        log.debug("Service: Updating category in note: noteId={}, oldCategoryId={}, newCategoryId={}",
                 noteId, categoryId, newCategoryId);
         Note note = noteCategoryRepository.updateCategoryInNote(noteId, categoryId, newCategoryId);
-        log.info("Service: Successfully updated category in note");
-        return noteMapper.toDto(note);
+        log.debug("Service: Successfully updated category in note");
+        NoteDto noteDto = noteMapper.toDto(note);
+        noteSearchIndex.unlinkCategory(noteId, categoryId);
+        noteSearchIndex.linkCategory(List.of(noteId), newCategoryId);
+        noteCacheUpdater.replaceCategory(noteId, categoryId, cachedCategory(newCategoryId), note.getVersion());
+        return noteDto;
     }
 
     public Map<String, Boolean> deleteCategoryFromNote(Long noteId, Long categoryId) {
-        log.info("Service: Deleting category id: {} from note id: {}", categoryId, noteId);
-        Map<String, Boolean> result = noteCategoryRepository.deleteCategoryFromNote(noteId, categoryId);
-        log.info("Service: Category deletion from note completed, result: {}", result);
+        log.debug("Service: Deleting category id: {} from note id: {}", categoryId, noteId);
+        long version = noteCategoryRepository.deleteCategoryFromNote(noteId, categoryId);
+        noteSearchIndex.unlinkCategory(noteId, categoryId);
+        noteCacheUpdater.replaceCategory(noteId, categoryId, null, version);
+        Map<String, Boolean> result = Map.of("deleted", true);
+        log.debug("Service: Category deletion from note completed, result: {}", result);
         return result;
     }
+
+    @CacheEvict(value = "notes", key = "'all'")
+    public NoteLinksResultDto addCategoryToNotes(NoteSelectionDto selection, Long categoryId) {
+        log.debug("Service: Adding category id: {} to selected notes", categoryId);
+        List<Long> noteIds = noteRepository.findIds(selection);
+        List<Long> changed = noteCategoryRepository.addCategoryToNotes(noteIds, categoryId);
+        noteSearchIndex.linkCategory(changed, categoryId);
+        evictCachedNotes(changed);
+        log.debug("Service: Added category id: {} to {} of {} notes", categoryId, changed.size(), noteIds.size());
+        return linksResult(noteIds, changed);
+    }
+
+    @CacheEvict(value = "notes", key = "'all'")
+    public NoteLinksResultDto updateCategoryInNotes(NoteSelectionDto selection, Long categoryId, Long newCategoryId) {
+        log.debug("Service: Updating category in selected notes: oldCategoryId={}, newCategoryId={}",
+                categoryId, newCategoryId);
+        List<Long> noteIds = noteRepository.findIds(selection);
+        List<Long> changed = noteCategoryRepository.updateCategoryInNotes(noteIds, categoryId, newCategoryId);
+        noteSearchIndex.unlinkCategory(changed, categoryId);
+        noteSearchIndex.linkCategory(changed, newCategoryId);
+        evictCachedNotes(changed);
+        log.debug("Service: Updated category in {} of {} notes", changed.size(), noteIds.size());
+        return linksResult(noteIds, changed);
+    }
+
+    @CacheEvict(value = "notes", key = "'all'")
+    public NoteLinksResultDto deleteCategoryFromNotes(NoteSelectionDto selection, Long categoryId) {
+        log.debug("Service: Deleting category id: {} from selected notes", categoryId);
+        List<Long> noteIds = noteRepository.findIds(selection);
+        List<Long> changed = noteCategoryRepository.deleteCategoryFromNotes(noteIds, categoryId);
+        noteSearchIndex.unlinkCategory(changed, categoryId);
+        evictCachedNotes(changed);
+        log.debug("Service: Deleted category id: {} from {} of {} notes", categoryId, changed.size(), noteIds.size());
+        return linksResult(noteIds, changed);
+    }
+
+    /**
+     * Returns the category from the categories cache, loading it on a miss. {@link #getById} is not
+     * cached when called from this class.
+     */
+    private CategoryDto cachedCategory(Long id) {
+        Cache categories = cacheManager.getCache("categories");
+        if (categories == null) {
+            return categoryMapper.toDto(categoryRepository.getById(id));
+        }
+        return categories.get(id, () -> categoryMapper.toDto(categoryRepository.getById(id)));
+    }
+
+    private void evictCachedNotes(List<Long> noteIds) {
+        Cache notes = cacheManager.getCache("notes");
+        if (notes != null) {
+            noteIds.forEach(notes::evict);
+        }
+    }
+
+    private static NoteLinksResultDto linksResult(List<Long> noteIds, List<Long> changed) {
+        return NoteLinksResultDto.builder()
+                .selected(noteIds.size())
+                .affected(changed.size())
+                .build();
+    }
+
+    private void evictCachedNotesWithCategory(Long categoryId) {
+        Set<Long> noteIds = noteCacheIndex.removeNotesWithCategory(categoryId);
+        Cache notes = cacheManager.getCache("notes");
+        if (notes != null) {
+            noteIds.forEach(notes::evict);
+        }
+        log.debug("Service: Evicted {} cached notes with category id: {}", noteIds.size(), categoryId);
+    }
 }
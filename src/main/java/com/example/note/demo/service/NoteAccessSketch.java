@@ -0,0 +1,128 @@
+package com.example.note.demo.service;
+
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Approximate top-K of the notes read by id on this node. Counts are estimated by a count-min
+ * sketch with conservative update, which never under-counts and takes a fixed 512 KiB however many
+ * notes are read. The notes with the highest estimates are kept as candidates, at most twice
+ * {@code note.warmup.top-k}; a note is admitted only if its estimate reaches the lowest kept one.
+ * <p>
+ * All counts are halved after every ten reads per counter, so that notes popular in the past give
+ * way to the ones read now.
+ */
+@Component
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class NoteAccessSketch {
+    private static final int DEPTH = 4;
+    private static final int WIDTH = 1 << 14;
+    private static final long[] SEEDS = {0x9E3779B97F4A7C15L, 0xC2B2AE3D27D4EB4FL, 0x165667B19E3779F9L,
+            0xD6E8FEB86659FD93L};
+    private static final long AGING_PERIOD = 10L * WIDTH;
+
+    AtomicLongArray counters = new AtomicLongArray(DEPTH * WIDTH);
+    Map<Long, Long> candidates = new ConcurrentHashMap<>();
+    AtomicLong reads = new AtomicLong();
+    AtomicLong admissionThreshold = new AtomicLong();
+    Lock lock = new ReentrantLock();
+    int capacity;
+
+    @Autowired
+    public NoteAccessSketch(@Value("${note.warmup.top-k:1000}") int capacity) {
+        this.capacity = capacity;
+    }
+
+    public void record(long noteId) {
+        long estimate = increment(noteId);
+        if (estimate >= admissionThreshold.get()) {
+            candidates.put(noteId, estimate);
+            if (candidates.size() > 2 * capacity) {
+                trim();
+            }
+        }
+        if (reads.incrementAndGet() % AGING_PERIOD == 0) {
+            age();
+        }
+    }
+
+    /**
+     * Returns the ids of at most {@code k} most read notes with their estimated read counts,
+     * most read first.
+     */
+    public Map<Long, Long> top(int k) {
+        Map<Long, Long> top = new LinkedHashMap<>();
+        candidates.entrySet().stream()
+                .sorted(Map.Entry.<Long, Long>comparingByValue(Comparator.reverseOrder()))
+                .limit(k)
+                .forEach(entry -> top.put(entry.getKey(), entry.getValue()));
+        return top;
+    }
+
+    private long increment(long noteId) {
+        int[] indexes = new int[DEPTH];
+        long min = Long.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            indexes[row] = row * WIDTH + index(noteId, row);
+            min = Math.min(min, counters.get(indexes[row]));
+        }
+        // conservative update: raise only the counters that hold the current estimate
+        long estimate = min + 1;
+        for (int index : indexes) {
+            counters.accumulateAndGet(index, estimate, Math::max);
+        }
+        return estimate;
+    }
+
+    private static int index(long noteId, int row) {
+        long hash = (noteId ^ SEEDS[row]) * 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        hash ^= hash >>> 33;
+        return (int) (hash & (WIDTH - 1));
+    }
+
+    private void trim() {
+        if (!lock.tryLock()) {
+            return;
+        }
+        try {
+            List<Map.Entry<Long, Long>> sorted = candidates.entrySet().stream()
+                    .sorted(Map.Entry.<Long, Long>comparingByValue(Comparator.reverseOrder()))
+                    .toList();
+            if (sorted.size() <= capacity) {
+                return;
+            }
+            admissionThreshold.set(sorted.get(capacity - 1).getValue());
+            sorted.subList(capacity, sorted.size()).forEach(entry -> candidates.remove(entry.getKey()));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void age() {
+        lock.lock();
+        try {
+            for (int i = 0; i < counters.length(); i++) {
+                counters.getAndUpdate(i, count -> count >> 1);
+            }
+            candidates.replaceAll((noteId, count) -> count >> 1);
+            admissionThreshold.getAndUpdate(threshold -> threshold >> 1);
+        } finally {
+            lock.unlock();
+        }
+    }
+}
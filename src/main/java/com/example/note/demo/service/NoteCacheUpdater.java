@@ -0,0 +1,106 @@
+package com.example.note.demo.service;
+
+import com.example.note.demo.configuration.cache.CacheEntryPatcher;
+import com.example.note.demo.dto.CategoryDto;
+import com.example.note.demo.dto.NoteDto;
+import com.example.note.demo.dto.TagDto;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+/**
+ * Applies tag and category link changes to the cached note and to the note in the cached note list
+ * view, so that both stay correct without being evicted. A cached note already at the version of
+ * the change is left as it is. One at a newer version was patched or loaded after a later change, so
+ * it may lack this one, which arrived out of order, and is evicted to be reloaded; the list view is
+ * invalidated in that case.
+ */
+@Slf4j
+@Component
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class NoteCacheUpdater {
+    private static final String CACHE_NAME = "notes";
+
+    CacheEntryPatcher cacheEntryPatcher;
+    NoteListCache noteListCache;
+    CacheManager cacheManager;
+
+    @Autowired
+    public NoteCacheUpdater(CacheEntryPatcher cacheEntryPatcher, NoteListCache noteListCache,
+                            CacheManager cacheManager) {
+        this.cacheEntryPatcher = cacheEntryPatcher;
+        this.noteListCache = noteListCache;
+        this.cacheManager = cacheManager;
+    }
+
+    /**
+     * Removes the tag {@code oldTagId} if it is not {@code null} and adds {@code newTag} if it is not
+     * {@code null}, then sets the note version to {@code version}.
+     */
+    public void replaceTag(Long noteId, Long oldTagId, TagDto newTag, long version) {
+        update(noteId, version, note -> note.setTags(replace(note.getTags(), TagDto::getId, oldTagId, newTag)));
+    }
+
+    public void replaceCategory(Long noteId, Long oldCategoryId, CategoryDto newCategory, long version) {
+        update(noteId, version, note -> note.setCategories(
+                replace(note.getCategories(), CategoryDto::getId, oldCategoryId, newCategory)));
+    }
+
+    private void update(Long noteId, long version, Consumer<NoteDto> change) {
+        AtomicBoolean newer = new AtomicBoolean();
+        UnaryOperator<NoteDto> versioned = note -> {
+            // the patcher applies the change again after a lost race, to whatever is cached then
+            newer.set(note.getVersion() != null && note.getVersion() > version);
+            if (newer.get() || Objects.equals(note.getVersion(), version)) {
+                return null;
+            }
+            change.accept(note);
+            note.setVersion(version);
+            return note;
+        };
+        NoteDto patched = cacheEntryPatcher.patch(CACHE_NAME, noteId, NoteDto.class, versioned);
+        if (newer.get()) {
+            log.debug("Cached note id: {} is newer than version {}, evicting it", noteId, version);
+            try {
+                Cache notes = cacheManager.getCache(CACHE_NAME);
+                if (notes != null) {
+                    notes.evict(noteId);
+                }
+            } catch (RuntimeException e) {
+                log.warn("Failed to evict cached note id: {}: {}", noteId, e.getMessage());
+            }
+        } else {
+            log.debug("Cached note id: {} {}", noteId, patched != null ? "patched to version " + version : "not patched");
+        }
+        newer.set(false);
+        noteListCache.update(noteId, versioned);
+        if (newer.get()) {
+            log.debug("Note id: {} in the note list view is newer than version {}, invalidating the view",
+                    noteId, version);
+            noteListCache.invalidate();
+        }
+    }
+
+    private static <T> List<T> replace(List<T> links, Function<T, Long> id, Long oldId, T newLink) {
+        List<T> result = links == null ? new ArrayList<>() : new ArrayList<>(links);
+        if (oldId != null) {
+            result.removeIf(link -> oldId.equals(id.apply(link)));
+        }
+        if (newLink != null && result.stream().noneMatch(link -> Objects.equals(id.apply(link), id.apply(newLink)))) {
+            result.add(newLink);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,270 @@
+package com.example.note.demo.service;
+
+import com.example.note.demo.dto.NoteChangeDto;
+import com.example.note.demo.model.Note;
+import com.example.note.demo.model.NoteChange;
+import com.example.note.demo.repository.NoteChangeRepository;
+import com.example.note.demo.repository.NoteRepository;
+import com.example.note.demo.util.mapper.NoteMapper;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.concurrent.Queues;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Delivers the note change log to subscribers. One poller per node reads new changes every
+ * {@code note.changes.poll-interval} and loads the changed notes once for all subscribers, so the
+ * database load does not grow with the number of clients.
+ * <p>
+ * Versions are assigned when a change is inserted but become visible when its transaction commits,
+ * so a missing version may still appear. The poller stops at such a gap and waits up to
+ * {@code note.changes.gap-timeout} before treating the version as rolled back. A skipped version
+ * may still commit later, so instead of the batch past the gap subscribers get a {@code reset}
+ * change and reload the notes.
+ * <p>
+ * A subscriber resuming from a version first reads the changes up to the last published one from
+ * the database and then receives the published ones. Subscribers that do not keep up with
+ * {@code note.changes.subscriber-buffer} changes are disconnected and can resume from their last
+ * version; if the log no longer reaches back that far they get a {@code reset} change.
+ * <p>
+ * The poller also hands the changed notes to the {@link NoteSearchIndex} of its node, which is how
+ * writes made on other nodes reach it. A batch is published only after the index took it, so a
+ * failed load is retried by the next poll.
+ */
+@Slf4j
+@Service
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class NoteChangeFeed {
+    NoteChangeRepository noteChangeRepository;
+    NoteRepository noteRepository;
+    NoteMapper noteMapper;
+    NoteSearchIndex noteSearchIndex;
+    int batchSize;
+    int subscriberBuffer;
+    long retained;
+    Duration gapTimeout;
+    Set<Sinks.Many<NoteChangeDto>> subscribers = ConcurrentHashMap.newKeySet();
+    AtomicLong published = new AtomicLong(-1);
+    AtomicReference<Gap> gap = new AtomicReference<>();
+
+    @Autowired
+    public NoteChangeFeed(NoteChangeRepository noteChangeRepository, NoteRepository noteRepository,
+                          NoteMapper noteMapper, NoteSearchIndex noteSearchIndex, MeterRegistry meterRegistry,
+                          @Value("${note.changes.batch-size:500}") int batchSize,
+                          @Value("${note.changes.subscriber-buffer:10000}") int subscriberBuffer,
+                          @Value("${note.changes.retained:100000}") long retained,
+                          @Value("${note.changes.gap-timeout:5s}") Duration gapTimeout) {
+        this.noteChangeRepository = noteChangeRepository;
+        this.noteRepository = noteRepository;
+        this.noteMapper = noteMapper;
+        this.noteSearchIndex = noteSearchIndex;
+        this.batchSize = batchSize;
+        this.subscriberBuffer = subscriberBuffer;
+        this.retained = retained;
+        this.gapTimeout = gapTimeout;
+        Gauge.builder("note.changes.subscribers", subscribers, Set::size)
+                .description("Clients subscribed to the note change feed on this node")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Runs before the search index is built, so that the changes committed while it is being built
+     * are polled and reindexed.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void start() {
+        published.set(noteChangeRepository.getLatestVersion());
+        log.info("Note change feed starts at version {}", published.get());
+    }
+
+    /**
+     * Returns the last version up to which every change is published. Changes up to it are
+     * committed, so reading up to it never skips a version that commits later.
+     */
+    public long getPublishedVersion() {
+        return Math.max(published.get(), 0);
+    }
+
+    /**
+     * Changes after {@code since}, or only new changes if it is {@code null}.
+     */
+    public Flux<NoteChangeDto> changes(Long since) {
+        return Flux.defer(() -> {
+            Sinks.Many<NoteChangeDto> sink = Sinks.many().unicast()
+                    .onBackpressureBuffer(Queues.<NoteChangeDto>get(subscriberBuffer).get());
+            subscribers.add(sink);
+            // read after subscribing, so that every later version reaches the sink
+            long upTo = getPublishedVersion();
+            long from = since == null ? upTo : since;
+            Flux<NoteChangeDto> missed;
+            if (from >= upTo) {
+                missed = Flux.empty();
+            } else if (from < noteChangeRepository.getOldestVersion() - 1) {
+                missed = Flux.just(reset(upTo));
+            } else {
+                missed = read(from, upTo);
+            }
+            long liveFrom = Math.max(from, upTo);
+            return missed
+                    .concatWith(sink.asFlux().filter(change -> change.getVersion() > liveFrom))
+                    .doFinally(signal -> subscribers.remove(sink));
+        }).publishOn(Schedulers.boundedElastic());
+    }
+
+    @Scheduled(fixedDelayString = "${note.changes.poll-interval:500ms}")
+    public void poll() {
+        long last = published.get();
+        if (last < 0) {
+            return;
+        }
+        try {
+            List<NoteChange> changes;
+            do {
+                changes = contiguous(noteChangeRepository.findAfter(last, Long.MAX_VALUE, batchSize), last);
+                if (changes.isEmpty()) {
+                    return;
+                }
+                Map<Long, Note> notes = loadNotes(changes);
+                noteSearchIndex.refresh(changes.stream().map(NoteChange::getNoteId).distinct().toList(),
+                        notes.values());
+                boolean skippedGap = changes.get(changes.size() - 1).getVersion() - last != changes.size();
+                last = changes.get(changes.size() - 1).getVersion();
+                published.set(last);
+                if (!subscribers.isEmpty()) {
+                    publish(skippedGap ? List.of(reset(last)) : toDto(changes, notes));
+                }
+            } while (changes.size() == batchSize);
+        } catch (RuntimeException e) {
+            log.warn("Failed to poll note changes after version {}: {}", last, e.getMessage());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${note.changes.prune-interval:10m}")
+    public void prune() {
+        long upTo = published.get() - retained;
+        if (upTo <= 0) {
+            return;
+        }
+        try {
+            int deleted = noteChangeRepository.deleteUpTo(upTo);
+            log.debug("Pruned {} note changes up to version {}", deleted, upTo);
+        } catch (RuntimeException e) {
+            log.warn("Failed to prune note changes: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Returns the changes up to the first missing version, or all of them once that version has been
+     * missing for longer than the gap timeout. The timeout starts over whenever the first missing
+     * version changes, so a gap that just opened behind a new transaction is not skipped because an
+     * earlier one was waited for.
+     */
+    private List<NoteChange> contiguous(List<NoteChange> changes, long after) {
+        long expected = after + 1;
+        for (int i = 0; i < changes.size(); i++) {
+            if (changes.get(i).getVersion() != expected) {
+                long now = System.nanoTime();
+                Gap current = gap.get();
+                if (current == null || current.version() != expected) {
+                    current = new Gap(expected, now);
+                    gap.set(current);
+                }
+                if (now - current.since() < gapTimeout.toNanos()) {
+                    return changes.subList(0, i);
+                }
+                log.debug("Skipping note change versions {} to {}", expected, changes.get(i).getVersion() - 1);
+                gap.set(null);
+            }
+            expected = changes.get(i).getVersion() + 1;
+        }
+        gap.set(null);
+        return changes;
+    }
+
+    private void publish(List<NoteChangeDto> changes) {
+        for (Sinks.Many<NoteChangeDto> sink : subscribers) {
+            for (NoteChangeDto change : changes) {
+                if (sink.tryEmitNext(change).isFailure()) {
+                    subscribers.remove(sink);
+                    sink.tryEmitError(new IllegalStateException("Note change subscriber fell behind"));
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * The first missing version and when the poller first saw it missing.
+     */
+    private record Gap(long version, long since) {
+    }
+
+    private static NoteChangeDto reset(long version) {
+        return NoteChangeDto.builder().version(version).type(NoteChangeDto.RESET).build();
+    }
+
+    private Flux<NoteChangeDto> read(long from, long upTo) {
+        return Flux.<List<NoteChangeDto>, Long>generate(() -> from, (after, sink) -> {
+            List<NoteChange> changes = noteChangeRepository.findAfter(after, upTo, batchSize);
+            if (changes.isEmpty()) {
+                sink.complete();
+                return after;
+            }
+            sink.next(toDto(changes, loadNotes(changes)));
+            return changes.get(changes.size() - 1).getVersion();
+        }).flatMapIterable(Function.identity());
+    }
+
+    /**
+     * Loads the notes of the changes that were not deletions, by id.
+     */
+    private Map<Long, Note> loadNotes(List<NoteChange> changes) {
+        List<Long> ids = changes.stream()
+                .filter(change -> change.getOperation() != NoteChange.Operation.DELETED)
+                .map(NoteChange::getNoteId)
+                .distinct()
+                .toList();
+        return noteRepository.getByIds(ids).stream()
+                .collect(Collectors.toMap(Note::getId, Function.identity()));
+    }
+
+    private List<NoteChangeDto> toDto(List<NoteChange> changes, Map<Long, Note> notes) {
+        List<NoteChangeDto> result = new ArrayList<>(changes.size());
+        for (NoteChange change : changes) {
+            Note note = change.getOperation() == NoteChange.Operation.DELETED ? null : notes.get(change.getNoteId());
+            result.add(NoteChangeDto.builder()
+                    .version(change.getVersion())
+                    .type(change.getOperation().name().toLowerCase(Locale.ROOT))
+                    .noteId(change.getNoteId())
+                    .note(note == null ? null : noteMapper.toDto(note))
+                    .build());
+        }
+        return result;
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.note.demo.service;
+
+import com.example.note.demo.dto.CategoryDto;
+import com.example.note.demo.dto.NoteDto;
+import com.example.note.demo.dto.TagDto;
+import com.example.note.demo.repository.NoteExportRepository;
+import com.example.note.demo.util.mapper.NoteMapper;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.stream.Collectors;
+
+@Slf4j
+@Service
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class NoteExportService {
+    private static final byte[] NEW_LINE = "\n".getBytes(StandardCharsets.UTF_8);
+    private static final String CSV_HEADER = "id,name,dateOfCreation,dateOfUpdate,isDone,categories,tags\n";
+
+    NoteExportRepository noteExportRepository;
+    NoteMapper noteMapper;
+    ObjectMapper objectMapper;
+
+    @Autowired
+    public NoteExportService(NoteExportRepository noteExportRepository, NoteMapper noteMapper,
+                             ObjectMapper objectMapper) {
+        this.noteExportRepository = noteExportRepository;
+        this.noteMapper = noteMapper;
+        this.objectMapper = objectMapper;
+    }
+
+    public void exportNdjson(OutputStream out) {
+        log.debug("Service: Exporting notes as NDJSON");
+        long count = noteExportRepository.streamAll(note -> {
+            try {
+                out.write(objectMapper.writeValueAsBytes(noteMapper.toDto(note)));
+                out.write(NEW_LINE);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        log.debug("Service: Exported {} notes as NDJSON", count);
+    }
+
+    public void exportCsv(OutputStream out) {
+        log.debug("Service: Exporting notes as CSV");
+        try {
+            out.write(CSV_HEADER.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        long count = noteExportRepository.streamAll(note -> {
+            try {
+                out.write(toCsvLine(noteMapper.toDto(note)).getBytes(StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        log.debug("Service: Exported {} notes as CSV", count);
+    }
+
+    private String toCsvLine(NoteDto note) {
+        return note.getId() + ","
+                + escapeCsv(note.getName()) + ","
+                + note.getDateOfCreation() + ","
+                + note.getDateOfUpdate() + ","
+                + note.getIsDone() + ","
+                + escapeCsv(note.getCategories().stream()
+                .map(CategoryDto::getName)
+                .collect(Collectors.joining(";"))) + ","
+                + escapeCsv(note.getTags().stream()
+                .map(TagDto::getName)
+                .collect(Collectors.joining(";"))) + "\n";
+    }
+
+    private String escapeCsv(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.contains(",") || value.contains("\"") || value.contains("\n") || value.contains("\r")) {
+            return "\"" + value.replace("\"", "\"\"") + "\"";
+        }
+        return value;
+    }
+}
@@ -0,0 +1,235 @@
+package com.example.note.demo.service;
+
+import com.example.note.demo.dto.NoteDto;
+import com.example.note.demo.dto.NoteImportItemDto;
+import com.example.note.demo.dto.NoteImportResultDto;
+import com.example.note.demo.model.*;
+import com.example.note.demo.repository.NoteRepository;
+import com.example.note.demo.util.mapper.NoteMapper;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+@Slf4j
+@Service
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class NoteImportService {
+    NoteRepository noteRepository;
+    NoteMapper noteMapper;
+    NoteSearchIndex noteSearchIndex;
+    ObjectMapper objectMapper;
+    Validator validator;
+    int batchSize;
+
+    @Autowired
+    public NoteImportService(NoteRepository noteRepository, NoteMapper noteMapper, NoteSearchIndex noteSearchIndex,
+                             ObjectMapper objectMapper, Validator validator,
+                             @Value("${note.import.batch-size:1000}") int batchSize) {
+        this.noteRepository = noteRepository;
+        this.noteMapper = noteMapper;
+        this.noteSearchIndex = noteSearchIndex;
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+        this.batchSize = batchSize;
+    }
+
+    @CacheEvict(cacheNames = "notes", key = "'all'")
+    public NoteImportResultDto importNotes(List<NoteDto> notes) {
+        log.debug("Service: Importing batch of {} notes", notes.size());
+        long start = System.nanoTime();
+        List<NoteImportItemDto> items = new ArrayList<>(notes.size());
+        Batch batch = new Batch();
+        for (int index = 0; index < notes.size(); index++) {
+            NoteImportItemDto item = batch.add(index, notes.get(index));
+            items.add(item);
+            if (batch.size() == batchSize) {
+                batch.flush();
+            }
+        }
+        batch.flush();
+        NoteImportResultDto result = result(notes.size(), items, start);
+        log.debug("Service: Imported {} of {} notes", result.getImported(), result.getTotal());
+        return result;
+    }
+
+    /**
+     * Imports notes from newline-delimited JSON, one note per line, saving them in batches while
+     * reading. Only failed lines are listed in the result to keep it small for large files.
+     */
+    @CacheEvict(cacheNames = "notes", key = "'all'")
+    public NoteImportResultDto importNdjson(InputStream in) {
+        log.debug("Service: Importing notes from NDJSON stream");
+        long start = System.nanoTime();
+        List<NoteImportItemDto> items = new ArrayList<>();
+        List<NoteImportItemDto> failed = new ArrayList<>();
+        Batch batch = new Batch();
+        int index = 0;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                NoteImportItemDto item;
+                try {
+                    item = batch.add(index, objectMapper.readValue(line, NoteDto.class));
+                } catch (JsonProcessingException e) {
+                    item = failure(index, "Invalid JSON: " + e.getOriginalMessage());
+                }
+                items.add(item);
+                index++;
+                if (batch.size() == batchSize) {
+                    batch.flush();
+                    collectFailures(items, failed);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        batch.flush();
+        collectFailures(items, failed);
+        NoteImportResultDto result = result(index, failed, start);
+        log.debug("Service: Imported {} of {} notes from NDJSON stream", result.getImported(), result.getTotal());
+        return result;
+    }
+
+    private void collectFailures(List<NoteImportItemDto> items, List<NoteImportItemDto> failed) {
+        items.stream().filter(item -> !item.isImported()).forEach(failed::add);
+        items.clear();
+    }
+
+    private NoteImportResultDto result(long total, List<NoteImportItemDto> items, long start) {
+        long failed = items.stream().filter(item -> !item.isImported()).count();
+        long elapsedNanos = System.nanoTime() - start;
+        return NoteImportResultDto.builder()
+                .total(total)
+                .imported(total - failed)
+                .failed(failed)
+                .elapsedMillis(elapsedNanos / 1_000_000)
+                .notesPerSecond(elapsedNanos == 0 ? 0 : (total - failed) * 1_000_000_000d / elapsedNanos)
+                .items(items)
+                .build();
+    }
+
+    private static NoteImportItemDto failure(int index, String error) {
+        return NoteImportItemDto.builder()
+                .index(index)
+                .imported(false)
+                .error(error)
+                .build();
+    }
+
+    private Note toEntity(NoteDto dto) {
+        Note note = noteMapper.toEntity(dto);
+        note.setDateOfCreation(dto.getDateOfCreation());
+        note.setDateOfUpdate(dto.getDateOfUpdate());
+        if (note.getIsDone() == null) {
+            note.setIsDone(false);
+        }
+        note.setNoteCategories(dto.getCategories().stream()
+                .map(categoryDto -> NoteCategory.builder()
+                        .note(note)
+                        .category(Category.builder().name(categoryDto.getName()).build())
+                        .build())
+                .collect(Collectors.toList()));
+        note.setNoteTags(dto.getTags().stream()
+                .map(tagDto -> NoteTag.builder()
+                        .note(note)
+                        .tag(Tag.builder().name(tagDto.getName()).colour(tagDto.getColour()).build())
+                        .build())
+                .collect(Collectors.toList()));
+        return note;
+    }
+
+    private String validate(NoteDto dto) {
+        if (dto.getDateOfCreation() == null) {
+            dto.setDateOfCreation(LocalDate.now());
+        }
+        if (dto.getDateOfUpdate() == null) {
+            dto.setDateOfUpdate(dto.getDateOfCreation());
+        }
+        String violations = validator.validate(dto).stream()
+                .map(ConstraintViolation::getMessage)
+                .collect(Collectors.joining("; "));
+        if (!violations.isEmpty()) {
+            return violations;
+        }
+        if (dto.getCategories().stream().anyMatch(c -> c == null || c.getName() == null || c.getName().isBlank())) {
+            return "Имя категории не может быть пустым";
+        }
+        if (dto.getTags().stream().anyMatch(t -> t == null || t.getName() == null || t.getName().isBlank())) {
+            return "Название тега не может быть пустым";
+        }
+        return null;
+    }
+
+    /**
+     * Collects valid notes until the batch is flushed and fills in the ids of the pending items
+     * once the notes are saved.
+     */
+    private class Batch {
+        final List<Note> notes = new ArrayList<>();
+        final List<NoteImportItemDto> items = new ArrayList<>();
+
+        NoteImportItemDto add(int index, NoteDto dto) {
+            if (dto == null) {
+                return failure(index, "Empty note");
+            }
+            String error = validate(dto);
+            if (error != null) {
+                return failure(index, error);
+            }
+            NoteImportItemDto item = NoteImportItemDto.builder()
+                    .index(index)
+                    .imported(true)
+                    .build();
+            notes.add(toEntity(dto));
+            items.add(item);
+            return item;
+        }
+
+        int size() {
+            return notes.size();
+        }
+
+        void flush() {
+            if (notes.isEmpty()) {
+                return;
+            }
+            try {
+                noteRepository.saveAll(notes);
+                for (int i = 0; i < notes.size(); i++) {
+                    items.get(i).setId(notes.get(i).getId());
+                }
+                noteSearchIndex.index(notes);
+            } catch (RuntimeException e) {
+                log.error("Service: Failed to save batch of {} notes", notes.size(), e);
+                items.forEach(item -> {
+                    item.setImported(false);
+                    item.setError("Batch failed: " + e.getMessage());
+                });
+            }
+            notes.clear();
+            items.clear();
+        }
+    }
+}
@@ -0,0 +1,362 @@
+package com.example.note.demo.service;
+
+import com.example.note.demo.configuration.cache.CacheEntryPatcher;
+import com.example.note.demo.dto.NoteDto;
+import com.example.note.demo.dto.NoteFilter;
+import com.example.note.demo.dto.NoteListView;
+import com.example.note.demo.repository.NoteRepository;
+import com.example.note.demo.util.mapper.NoteMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.UnaryOperator;
+
+/**
+ * Keeps the first notes ordered by id as a {@link NoteListView} under the {@code 'all'} key of the
+ * notes cache. Note writes are applied to the cached view by id with the {@link CacheEntryPatcher},
+ * so a concurrent write on another node is not overwritten; a note already in the view at a newer
+ * version is kept. Only a patch that fails evicts the view. A view older than
+ * {@code note.list-cache.fresh-for} is still served while it is reloaded in the background; a reload
+ * is dropped if the view was patched, invalidated or replaced while it was running. A reload that
+ * raced with a write on another node is repaired by the next periodic reload.
+ * <p>
+ * Only the first {@code note.list-cache.max-size} notes can be in the view, so a page after a
+ * cursor beyond them is read from the repository without touching the view. If the cache cannot be
+ * read, requests are answered from the repository.
+ * <p>
+ * Loads and patches are serialized with a {@link ReentrantLock} rather than {@code synchronized},
+ * since they do Redis and JDBC calls that would otherwise pin a virtual thread to its carrier.
+ * Patching under the lock keeps a load that read the notes before a write from being stored after
+ * the write was applied.
+ */
+@Slf4j
+@Component
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class NoteListCache {
+    private static final String CACHE_NAME = "notes";
+    private static final String KEY = "all";
+
+    NoteRepository noteRepository;
+    NoteMapper noteMapper;
+    CacheManager cacheManager;
+    CacheEntryPatcher cacheEntryPatcher;
+    TaskExecutor taskExecutor;
+    int maxSize;
+    Duration freshFor;
+    AtomicBoolean refreshing = new AtomicBoolean();
+    Lock lock = new ReentrantLock();
+    Counter hits;
+    Counter staleHits;
+    Counter misses;
+
+    @Autowired
+    public NoteListCache(NoteRepository noteRepository, NoteMapper noteMapper, CacheManager cacheManager,
+                         CacheEntryPatcher cacheEntryPatcher,
+                         @Qualifier("applicationTaskExecutor") TaskExecutor taskExecutor, MeterRegistry meterRegistry,
+                         @Value("${note.list-cache.max-size:1000}") int maxSize,
+                         @Value("${note.list-cache.fresh-for:30s}") Duration freshFor) {
+        this.noteRepository = noteRepository;
+        this.noteMapper = noteMapper;
+        this.cacheManager = cacheManager;
+        this.cacheEntryPatcher = cacheEntryPatcher;
+        this.taskExecutor = taskExecutor;
+        this.maxSize = maxSize;
+        this.freshFor = freshFor;
+        this.hits = requests(meterRegistry, "hit");
+        this.staleHits = requests(meterRegistry, "stale");
+        this.misses = requests(meterRegistry, "miss");
+        Gauge.builder("note.list.cache.hit.ratio", this, NoteListCache::hitRatio)
+                .description("Share of note list requests served from the cached view")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Returns all notes if the view holds all of them, otherwise {@code null}.
+     */
+    public List<NoteDto> getAll() {
+        Lookup lookup = view(true);
+        if (lookup.view() == null || !lookup.view().isComplete()) {
+            misses.increment();
+            return null;
+        }
+        lookup.result().increment();
+        return lookup.view().getNotes();
+    }
+
+    /**
+     * Returns up to {@code limit} notes with ids greater than {@code afterId}, or {@code null} if the
+     * view does not cover that range. Only the first page loads a missing view: a cursor is answered
+     * by a cached view up to its last note, and past it by the repository.
+     */
+    public List<NoteDto> getPage(long afterId, int limit) {
+        Lookup lookup = view(afterId == 0);
+        NoteListView view = lookup.view();
+        if (view == null) {
+            misses.increment();
+            return null;
+        }
+        List<NoteDto> notes = view.getNotes();
+        int from = firstAfter(notes, afterId);
+        if (!view.isComplete() && from + limit > notes.size()) {
+            misses.increment();
+            return null;
+        }
+        lookup.result().increment();
+        return notes.subList(from, Math.min(from + limit, notes.size()));
+    }
+
+    /**
+     * Inserts the saved note into the view or replaces it there, unless the view holds it at a newer
+     * version. A note past the end of a view that does not hold all notes is left out.
+     */
+    public void put(NoteDto note) {
+        patch(view -> {
+            List<NoteDto> notes = new ArrayList<>(view.getNotes());
+            int index = firstAfter(notes, note.getId() - 1);
+            boolean found = index < notes.size() && notes.get(index).getId().equals(note.getId());
+            if (found) {
+                if (isNewer(notes.get(index), note)) {
+                    return null;
+                }
+                notes.set(index, note);
+            } else if (index < notes.size() || view.isComplete()) {
+                notes.add(index, note);
+            } else {
+                return null;
+            }
+            boolean complete = view.isComplete();
+            if (notes.size() > maxSize) {
+                notes = new ArrayList<>(notes.subList(0, maxSize));
+                complete = false;
+            }
+            return withNotes(view, complete, notes);
+        });
+    }
+
+    /**
+     * Applies the change to the note in the view, if the view holds it. The change returns the new
+     * note, or {@code null} to keep the current one.
+     */
+    public void update(Long id, UnaryOperator<NoteDto> change) {
+        patch(view -> {
+            List<NoteDto> notes = new ArrayList<>(view.getNotes());
+            int index = firstAfter(notes, id - 1);
+            if (index == notes.size() || !notes.get(index).getId().equals(id)) {
+                return null;
+            }
+            NoteDto note = change.apply(notes.get(index));
+            if (note == null) {
+                return null;
+            }
+            notes.set(index, note);
+            return withNotes(view, view.isComplete(), notes);
+        });
+    }
+
+    public void remove(Long id) {
+        patch(view -> {
+            List<NoteDto> notes = new ArrayList<>(view.getNotes());
+            if (!notes.removeIf(note -> note.getId().equals(id))) {
+                return null;
+            }
+            return withNotes(view, view.isComplete(), notes);
+        });
+    }
+
+    /**
+     * Drops the view, for changes that cannot be applied to it note by note.
+     */
+    public void invalidate() {
+        lock.lock();
+        try {
+            cache().evict(KEY);
+        } catch (RuntimeException e) {
+            log.warn("Failed to invalidate note list view: {}", e.getMessage());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Applies the change to the cached view, if there is one, and invalidates the view if the change
+     * could not be written. The change returns the new view, or {@code null} to keep the current one.
+     */
+    private void patch(UnaryOperator<NoteListView> change) {
+        AtomicBoolean changed = new AtomicBoolean();
+        lock.lock();
+        try {
+            NoteListView patched = null;
+            try {
+                patched = cacheEntryPatcher.patch(CACHE_NAME, KEY, NoteListView.class, view -> {
+                    NoteListView next = change.apply(view);
+                    changed.set(next != null);
+                    return next;
+                });
+            } catch (RuntimeException e) {
+                log.warn("Failed to patch note list view: {}", e.getMessage());
+                changed.set(true);
+            }
+            if (patched == null && changed.get()) {
+                log.debug("Note list view could not be patched, invalidating it");
+                invalidate();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the cached view, loading it if there is none and {@code loadIfMissing} is set, with the
+     * counter to increment if the view answers the request. The view is {@code null} if there is none
+     * or the cache cannot be read.
+     */
+    private Lookup view(boolean loadIfMissing) {
+        NoteListView view;
+        try {
+            view = cachedView();
+        } catch (RuntimeException e) {
+            log.warn("Failed to read note list view, reading notes from the repository: {}", e.getMessage());
+            return new Lookup(null, misses);
+        }
+        if (view == null) {
+            return new Lookup(loadIfMissing ? load() : null, misses);
+        }
+        if (System.currentTimeMillis() - view.getLoadedAt() > freshFor.toMillis()) {
+            refreshInBackground(view);
+            return new Lookup(view, staleHits);
+        }
+        return new Lookup(view, hits);
+    }
+
+    private void refreshInBackground(NoteListView stale) {
+        if (!refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        taskExecutor.execute(() -> {
+            try {
+                List<NoteDto> notes = loadNotes();
+                lock.lock();
+                try {
+                    NoteListView current = cachedView();
+                    if (current == null || current.getVersion() != stale.getVersion()
+                            || current.getLoadedAt() != stale.getLoadedAt()) {
+                        log.debug("Note list view changed during reload, dropping the reload");
+                        return;
+                    }
+                    store(stale.getVersion() + 1, System.currentTimeMillis(), notes.size() <= maxSize, head(notes));
+                } finally {
+                    lock.unlock();
+                }
+            } catch (RuntimeException e) {
+                log.warn("Failed to reload note list view: {}", e.getMessage());
+            } finally {
+                refreshing.set(false);
+            }
+        });
+    }
+
+    private NoteListView load() {
+        lock.lock();
+        try {
+            NoteListView view = cachedView();
+            if (view != null) {
+                return view;
+            }
+            List<NoteDto> notes = loadNotes();
+            return store(1, System.currentTimeMillis(), notes.size() <= maxSize, head(notes));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private List<NoteDto> loadNotes() {
+        log.debug("Loading note list view of up to {} notes", maxSize);
+        return noteMapper.toDto(noteRepository.getPage(0L, maxSize + 1, new NoteFilter()));
+    }
+
+    private List<NoteDto> head(List<NoteDto> notes) {
+        return notes.size() > maxSize ? new ArrayList<>(notes.subList(0, maxSize)) : notes;
+    }
+
+    private NoteListView store(long version, long loadedAt, boolean complete, List<NoteDto> notes) {
+        NoteListView view = NoteListView.builder()
+                .version(version)
+                .loadedAt(loadedAt)
+                .complete(complete)
+                .notes(notes)
+                .build();
+        try {
+            cache().put(KEY, view);
+        } catch (RuntimeException e) {
+            log.warn("Failed to store note list view: {}", e.getMessage());
+        }
+        return view;
+    }
+
+    private static NoteListView withNotes(NoteListView view, boolean complete, List<NoteDto> notes) {
+        return NoteListView.builder()
+                .version(view.getVersion() + 1)
+                .loadedAt(view.getLoadedAt())
+                .complete(complete)
+                .notes(notes)
+                .build();
+    }
+
+    private static boolean isNewer(NoteDto cached, NoteDto note) {
+        return cached.getVersion() != null && note.getVersion() != null && cached.getVersion() > note.getVersion();
+    }
+
+    private NoteListView cachedView() {
+        return cache().get(KEY, NoteListView.class);
+    }
+
+    private Cache cache() {
+        return cacheManager.getCache(CACHE_NAME);
+    }
+
+    private double hitRatio() {
+        double total = hits.count() + staleHits.count() + misses.count();
+        return total == 0 ? 0 : (hits.count() + staleHits.count()) / total;
+    }
+
+    private static int firstAfter(List<NoteDto> notes, long afterId) {
+        int low = 0;
+        int high = notes.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (notes.get(middle).getId() <= afterId) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private record Lookup(NoteListView view, Counter result) {
+    }
+
+    private static Counter requests(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("note.list.cache.requests")
+                .description("Note list requests by cache result")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.note.demo.service;
+
+import com.example.note.demo.configuration.cache.TwoLevelCache;
+import com.example.note.demo.dto.NoteDto;
+import com.example.note.demo.dto.NoteFilter;
+import com.example.note.demo.repository.NoteRepository;
+import com.example.note.demo.util.mapper.NoteMapper;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+import java.util.List;
+
+/**
+ * Non-blocking reads of notes. Cached notes are served from heap or read from Redis with the
+ * reactive client; everything that needs JDBC runs on the bounded {@code noteDatabaseScheduler}.
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "note.reactive.enabled", havingValue = "true")
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class NoteReactiveService {
+    /**
+     * Redis key prefix of the notes cache, {@code CacheKeyPrefix.simple()} of the cache manager.
+     */
+    private static final String NOTES_KEY_PREFIX = "notes::";
+
+    NoteService noteService;
+    NoteRepository noteRepository;
+    NoteMapper noteMapper;
+    CacheManager cacheManager;
+    ReactiveRedisTemplate<String, Object> redisTemplate;
+    Scheduler databaseScheduler;
+    int pageSize;
+
+    @Autowired
+    public NoteReactiveService(NoteService noteService, NoteRepository noteRepository, NoteMapper noteMapper,
+                               CacheManager cacheManager, ReactiveRedisTemplate<String, Object> redisTemplate,
+                               Scheduler noteDatabaseScheduler,
+                               @Value("${note.reactive.stream-page-size:100}") int pageSize) {
+        this.noteService = noteService;
+        this.noteRepository = noteRepository;
+        this.noteMapper = noteMapper;
+        this.cacheManager = cacheManager;
+        this.redisTemplate = redisTemplate;
+        this.databaseScheduler = noteDatabaseScheduler;
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * Looks the note up in heap, then in Redis; on a miss loads it through {@link NoteService},
+     * which also fills both cache tiers.
+     */
+    public Mono<NoteDto> getById(Long id) {
+        if (cacheManager.getCache("notes") instanceof TwoLevelCache cache) {
+            Cache.ValueWrapper local = cache.getLocal(id);
+            if (local != null && local.get() instanceof NoteDto note) {
+                return Mono.just(note);
+            }
+        }
+        return redisTemplate.opsForValue().get(NOTES_KEY_PREFIX + id)
+                .ofType(NoteDto.class)
+                .onErrorResume(e -> {
+                    log.warn("Reading note {} from Redis failed: {}", id, e.getMessage());
+                    return Mono.empty();
+                })
+                .switchIfEmpty(Mono.fromCallable(() -> noteService.getById(id)).subscribeOn(databaseScheduler));
+    }
+
+    public Flux<NoteDto> getAll() {
+        return Mono.fromCallable(noteService::getAll)
+                .subscribeOn(databaseScheduler)
+                .flatMapIterable(notes -> notes);
+    }
+
+    /**
+     * Streams all notes ordered by id. Pages of {@code note.reactive.stream-page-size} notes are
+     * read only when the subscriber has requested the previous page, so a slow client holds
+     * neither a connection nor the whole table.
+     */
+    public Flux<NoteDto> stream() {
+        return page(0L)
+                .expand(notes -> notes.size() < pageSize ? Mono.empty() : page(notes.get(notes.size() - 1).getId()))
+                .flatMapIterable(notes -> notes);
+    }
+
+    private Mono<List<NoteDto>> page(long afterId) {
+        return Mono.fromCallable(() -> noteMapper.toDto(noteRepository.getPage(afterId, pageSize, new NoteFilter())))
+                .subscribeOn(databaseScheduler);
+    }
+}
@@ -0,0 +1,616 @@
+package com.example.note.demo.service;
+
+import com.example.note.demo.dto.CategoryDto;
+import com.example.note.demo.dto.NoteDto;
+import com.example.note.demo.dto.NoteFacetFilter;
+import com.example.note.demo.dto.NoteFacetsDto;
+import com.example.note.demo.dto.TagDto;
+import com.example.note.demo.model.Note;
+import com.example.note.demo.model.NoteCategory;
+import com.example.note.demo.model.NoteTag;
+import com.example.note.demo.repository.NoteExportRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.roaringbitmap.IntIterator;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory inverted index over note names. A name is split into lower-case terms on everything
+ * that is not a letter or digit, with {@code ё} folded to {@code е}. Every term, tag id and category
+ * id maps to a bitmap of note ids, so a query is a union of the bitmaps of the terms each query term
+ * is a prefix of, intersected with the others and with the tag and category filters.
+ * <p>
+ * The same tag and category bitmaps, together with the bitmaps of all notes and of done notes,
+ * answer facet queries: the number of notes per tag, per category and done among the notes matching
+ * a filter is one intersection cardinality each, without materializing the intersection.
+ * <p>
+ * Matches are ranked by the inverse document frequency of the matched terms, exact matches above
+ * prefix ones, shorter names above longer ones. Only the newest {@code note.search.max-candidates}
+ * matches are ranked, which bounds the query time for very common terms.
+ * <p>
+ * The index is built from the database once the application is ready; until the build has finished
+ * it holds only part of the notes and {@link #isReady()} is {@code false}. The note, tag and
+ * category services of this node update it right after their writes, and {@link NoteChangeFeed}
+ * reindexes every note in the change log as it is read from the database, so writes made on other
+ * nodes show up in search and facets within a poll interval.
+ */
+@Slf4j
+@Component
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class NoteSearchIndex {
+    private static final int MIN_PREFIX_LENGTH = 2;
+    private static final int MAX_PREFIX_TERMS = 1000;
+    private static final double PREFIX_WEIGHT = 0.6;
+    private static final int TALLY_RATIO = 16;
+
+    NoteExportRepository noteExportRepository;
+    int maxCandidates;
+    ReadWriteLock lock = new ReentrantReadWriteLock();
+    TreeMap<String, RoaringBitmap> postings = new TreeMap<>();
+    Map<Long, RoaringBitmap> notesByTag = new HashMap<>();
+    Map<Long, RoaringBitmap> notesByCategory = new HashMap<>();
+    RoaringBitmap allNotes = new RoaringBitmap();
+    RoaringBitmap doneNotes = new RoaringBitmap();
+    Map<Long, Entry> entries = new HashMap<>();
+    // ids written while the index is being built, which the build must not overwrite
+    Set<Long> changedDuringBuild = new HashSet<>();
+    AtomicBoolean building = new AtomicBoolean();
+    AtomicBoolean ready = new AtomicBoolean();
+
+    @Autowired
+    public NoteSearchIndex(NoteExportRepository noteExportRepository, MeterRegistry meterRegistry,
+                           @Value("${note.search.max-candidates:10000}") int maxCandidates) {
+        this.noteExportRepository = noteExportRepository;
+        this.maxCandidates = maxCandidates;
+        Gauge.builder("note.search.index.notes", this, NoteSearchIndex::size)
+                .description("Notes in the search index")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void build() {
+        log.info("Building note search index");
+        long start = System.nanoTime();
+        withWriteLock(() -> {
+            building.set(true);
+            changedDuringBuild.clear();
+        });
+        try {
+            noteExportRepository.streamAll(note -> withWriteLock(() -> {
+                if (!changedDuringBuild.contains(note.getId())) {
+                    add(note.getId(), note.getName(), note.getIsDone(), tagIds(note), categoryIds(note));
+                }
+            }));
+        } finally {
+            withWriteLock(() -> {
+                building.set(false);
+                changedDuringBuild.clear();
+            });
+        }
+        ready.set(true);
+        log.info("Built note search index of {} notes and {} terms in {} ms",
+                size(), terms(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Whether the index has been built and holds every note.
+     */
+    public boolean isReady() {
+        return ready.get();
+    }
+
+    public void index(NoteDto note) {
+        long[] tagIds = note.getTags() == null ? new long[0] : note.getTags().stream()
+                .map(TagDto::getId)
+                .filter(Objects::nonNull)
+                .mapToLong(Long::longValue)
+                .toArray();
+        long[] categoryIds = note.getCategories() == null ? new long[0] : note.getCategories().stream()
+                .map(CategoryDto::getId)
+                .filter(Objects::nonNull)
+                .mapToLong(Long::longValue)
+                .toArray();
+        withWriteLock(() -> {
+            markChanged(note.getId());
+            add(note.getId(), note.getName(), note.getIsDone(), tagIds, categoryIds);
+        });
+    }
+
+    public void index(Collection<Note> notes) {
+        withWriteLock(() -> notes.forEach(note -> {
+            markChanged(note.getId());
+            add(note.getId(), note.getName(), note.getIsDone(), tagIds(note), categoryIds(note));
+        }));
+    }
+
+    /**
+     * Reindexes the notes with the given ids from their state in the database: the {@code notes}
+     * found are indexed and the other ids, which were deleted, are removed.
+     */
+    public void refresh(Collection<Long> noteIds, Collection<Note> notes) {
+        withWriteLock(() -> {
+            Set<Long> found = new HashSet<>();
+            for (Note note : notes) {
+                markChanged(note.getId());
+                add(note.getId(), note.getName(), note.getIsDone(), tagIds(note), categoryIds(note));
+                found.add(note.getId());
+            }
+            for (Long noteId : noteIds) {
+                if (!found.contains(noteId)) {
+                    markChanged(noteId);
+                    removeEntry(noteId);
+                }
+            }
+        });
+    }
+
+    public void remove(Long noteId) {
+        withWriteLock(() -> {
+            markChanged(noteId);
+            removeEntry(noteId);
+        });
+    }
+
+    public void unlinkTag(Long noteId, Long tagId) {
+        withWriteLock(() -> {
+            markChanged(noteId);
+            unlink(notesByTag, tagId, noteId);
+            entries.computeIfPresent(noteId, (id, entry) -> entry.withoutTag(tagId));
+        });
+    }
+
+    public void unlinkCategory(Long noteId, Long categoryId) {
+        withWriteLock(() -> {
+            markChanged(noteId);
+            unlink(notesByCategory, categoryId, noteId);
+            entries.computeIfPresent(noteId, (id, entry) -> entry.withoutCategory(categoryId));
+        });
+    }
+
+    public void linkTag(Collection<Long> noteIds, Long tagId) {
+        withWriteLock(() -> noteIds.forEach(noteId -> {
+            markChanged(noteId);
+            if (entries.computeIfPresent(noteId, (id, entry) -> entry.withTag(tagId)) != null) {
+                notesByTag.computeIfAbsent(tagId, key -> new RoaringBitmap()).add(bit(noteId));
+            }
+        }));
+    }
+
+    public void unlinkTag(Collection<Long> noteIds, Long tagId) {
+        withWriteLock(() -> noteIds.forEach(noteId -> {
+            markChanged(noteId);
+            unlink(notesByTag, tagId, noteId);
+            entries.computeIfPresent(noteId, (id, entry) -> entry.withoutTag(tagId));
+        }));
+    }
+
+    public void linkCategory(Collection<Long> noteIds, Long categoryId) {
+        withWriteLock(() -> noteIds.forEach(noteId -> {
+            markChanged(noteId);
+            if (entries.computeIfPresent(noteId, (id, entry) -> entry.withCategory(categoryId)) != null) {
+                notesByCategory.computeIfAbsent(categoryId, key -> new RoaringBitmap()).add(bit(noteId));
+            }
+        }));
+    }
+
+    public void unlinkCategory(Collection<Long> noteIds, Long categoryId) {
+        withWriteLock(() -> noteIds.forEach(noteId -> {
+            markChanged(noteId);
+            unlink(notesByCategory, categoryId, noteId);
+            entries.computeIfPresent(noteId, (id, entry) -> entry.withoutCategory(categoryId));
+        }));
+    }
+
+    public void removeTag(Long tagId) {
+        withWriteLock(() -> {
+            RoaringBitmap notes = notesByTag.remove(tagId);
+            if (notes != null) {
+                notes.forEach((int bit) -> entries.computeIfPresent(Integer.toUnsignedLong(bit),
+                        (id, entry) -> entry.withoutTag(tagId)));
+            }
+        });
+    }
+
+    public void removeCategory(Long categoryId) {
+        withWriteLock(() -> {
+            RoaringBitmap notes = notesByCategory.remove(categoryId);
+            if (notes != null) {
+                notes.forEach((int bit) -> entries.computeIfPresent(Integer.toUnsignedLong(bit),
+                        (id, entry) -> entry.withoutCategory(categoryId)));
+            }
+        });
+    }
+
+    /**
+     * Returns the ids of up to {@code limit} notes whose names contain every term of the query,
+     * best match first. Tag and category ids are optional filters.
+     */
+    public List<Long> search(String query, Long tagId, Long categoryId, int limit) {
+        Set<String> queryTerms = new LinkedHashSet<>(tokenize(query));
+        if (queryTerms.isEmpty()) {
+            return List.of();
+        }
+        lock.readLock().lock();
+        try {
+            Map<String, Double> idf = new HashMap<>();
+            List<RoaringBitmap> matches = new ArrayList<>();
+            for (String queryTerm : queryTerms) {
+                RoaringBitmap match = match(queryTerm, idf);
+                if (match.isEmpty()) {
+                    return List.of();
+                }
+                matches.add(match);
+            }
+            if (tagId != null) {
+                matches.add(notesByTag.getOrDefault(tagId, new RoaringBitmap()));
+            }
+            if (categoryId != null) {
+                matches.add(notesByCategory.getOrDefault(categoryId, new RoaringBitmap()));
+            }
+            matches.sort(Comparator.comparingLong(RoaringBitmap::getLongCardinality));
+            RoaringBitmap candidates = matches.get(0).clone();
+            for (int i = 1; i < matches.size() && !candidates.isEmpty(); i++) {
+                candidates.and(matches.get(i));
+            }
+            return rank(candidates, queryTerms, idf, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Counts the notes matching the filter, the done ones among them and, for every tag and
+     * category linked to any of them, how many of them are linked to it.
+     * <p>
+     * Without a filter the counts are the bitmap cardinalities. A selection of less than
+     * 1/{@value #TALLY_RATIO} of all notes is counted by walking its notes' links, since
+     * intersecting it with every tag and category bitmap costs time proportional to their size.
+     */
+    public NoteFacetsDto facets(NoteFacetFilter filter) {
+        lock.readLock().lock();
+        try {
+            RoaringBitmap notes = select(filter);
+            long total = notes.getLongCardinality();
+            NoteFacetsDto.NoteFacetsDtoBuilder facets = NoteFacetsDto.builder()
+                    .total(total)
+                    .done(RoaringBitmap.andCardinality(notes, doneNotes));
+            if (notes == allNotes) {
+                return facets
+                        .tags(counts(notesByTag))
+                        .categories(counts(notesByCategory))
+                        .build();
+            }
+            if (total * TALLY_RATIO < allNotes.getLongCardinality()) {
+                Map<Long, Long> tags = new HashMap<>();
+                Map<Long, Long> categories = new HashMap<>();
+                notes.forEach((int bit) -> {
+                    Entry entry = entries.get(Integer.toUnsignedLong(bit));
+                    for (long tagId : entry.tagIds()) {
+                        tags.merge(tagId, 1L, Long::sum);
+                    }
+                    for (long categoryId : entry.categoryIds()) {
+                        categories.merge(categoryId, 1L, Long::sum);
+                    }
+                });
+                return facets
+                        .tags(new TreeMap<>(tags))
+                        .categories(new TreeMap<>(categories))
+                        .build();
+            }
+            return facets
+                    .tags(counts(notesByTag, notes))
+                    .categories(counts(notesByCategory, notes))
+                    .build();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    static List<String> tokenize(String text) {
+        List<String> terms = new ArrayList<>();
+        if (text == null) {
+            return terms;
+        }
+        String normalized = text.toLowerCase(Locale.ROOT).replace('ё', 'е');
+        int start = -1;
+        for (int i = 0; i <= normalized.length(); i++) {
+            boolean letterOrDigit = i < normalized.length() && Character.isLetterOrDigit(normalized.charAt(i));
+            if (letterOrDigit && start < 0) {
+                start = i;
+            } else if (!letterOrDigit && start >= 0) {
+                terms.add(normalized.substring(start, i));
+                start = -1;
+            }
+        }
+        return terms;
+    }
+
+    /**
+     * Returns the notes with a term equal to or, for query terms of at least two characters,
+     * starting with the query term, and records the idf of every matched term.
+     */
+    private RoaringBitmap match(String queryTerm, Map<String, Double> idf) {
+        Map<String, RoaringBitmap> terms = queryTerm.length() < MIN_PREFIX_LENGTH
+                ? postings.subMap(queryTerm, true, queryTerm, true)
+                : prefixed(queryTerm);
+        RoaringBitmap match = new RoaringBitmap();
+        int expanded = 0;
+        for (Map.Entry<String, RoaringBitmap> term : terms.entrySet()) {
+            if (expanded++ == MAX_PREFIX_TERMS) {
+                log.debug("Prefix {} matches more than {} terms, the rest are ignored", queryTerm, MAX_PREFIX_TERMS);
+                break;
+            }
+            match.or(term.getValue());
+            idf.put(term.getKey(), Math.log(1 + (double) entries.size() / term.getValue().getLongCardinality()));
+        }
+        return match;
+    }
+
+    private SortedMap<String, RoaringBitmap> prefixed(String prefix) {
+        char last = prefix.charAt(prefix.length() - 1);
+        if (last == Character.MAX_VALUE) {
+            return postings.tailMap(prefix, true);
+        }
+        return postings.subMap(prefix, true, prefix.substring(0, prefix.length() - 1) + (char) (last + 1), false);
+    }
+
+    private RoaringBitmap select(NoteFacetFilter filter) {
+        List<RoaringBitmap> links = new ArrayList<>();
+        if (filter.getTagId() != null) {
+            filter.getTagId().forEach(id -> links.add(notesByTag.getOrDefault(id, new RoaringBitmap())));
+        }
+        if (filter.getCategoryId() != null) {
+            filter.getCategoryId().forEach(id -> links.add(notesByCategory.getOrDefault(id, new RoaringBitmap())));
+        }
+        RoaringBitmap notes;
+        if (links.isEmpty()) {
+            notes = allNotes;
+        } else if (Boolean.TRUE.equals(filter.getAny())) {
+            notes = new RoaringBitmap();
+            links.forEach(notes::or);
+        } else {
+            links.sort(Comparator.comparingLong(RoaringBitmap::getLongCardinality));
+            notes = links.get(0).clone();
+            for (int i = 1; i < links.size() && !notes.isEmpty(); i++) {
+                notes.and(links.get(i));
+            }
+        }
+        if (filter.getIsDone() != null) {
+            notes = filter.getIsDone() ? RoaringBitmap.and(notes, doneNotes) : RoaringBitmap.andNot(notes, doneNotes);
+        }
+        return notes;
+    }
+
+    private static Map<Long, Long> counts(Map<Long, RoaringBitmap> notesById) {
+        Map<Long, Long> counts = new TreeMap<>();
+        notesById.forEach((id, linked) -> counts.put(id, linked.getLongCardinality()));
+        return counts;
+    }
+
+    private static Map<Long, Long> counts(Map<Long, RoaringBitmap> notesById, RoaringBitmap notes) {
+        Map<Long, Long> counts = new TreeMap<>();
+        notesById.forEach((id, linked) -> {
+            long count = RoaringBitmap.andCardinality(linked, notes);
+            if (count > 0) {
+                counts.put(id, count);
+            }
+        });
+        return counts;
+    }
+
+    private List<Long> rank(RoaringBitmap candidates, Set<String> queryTerms, Map<String, Double> idf, int limit) {
+        PriorityQueue<Scored> top = new PriorityQueue<>(limit + 1, Comparator.comparingDouble(Scored::score)
+                .thenComparingLong(Scored::id));
+        IntIterator ids = candidates.getReverseIntIterator();
+        for (int ranked = 0; ids.hasNext() && ranked < maxCandidates; ranked++) {
+            long id = Integer.toUnsignedLong(ids.next());
+            top.add(new Scored(id, score(entries.get(id), queryTerms, idf)));
+            if (top.size() > limit) {
+                top.poll();
+            }
+        }
+        Long[] result = new Long[top.size()];
+        for (int i = result.length - 1; i >= 0; i--) {
+            result[i] = top.poll().id();
+        }
+        return Arrays.asList(result);
+    }
+
+    private static double score(Entry entry, Set<String> queryTerms, Map<String, Double> idf) {
+        double score = 0;
+        for (String queryTerm : queryTerms) {
+            double best = 0;
+            for (String term : entry.terms()) {
+                Double weight = idf.get(term);
+                if (weight == null || !term.startsWith(queryTerm)) {
+                    continue;
+                }
+                best = Math.max(best, term.length() == queryTerm.length()
+                        ? weight
+                        : weight * PREFIX_WEIGHT * queryTerm.length() / term.length());
+            }
+            score += best;
+        }
+        return score / Math.sqrt(entry.terms().length);
+    }
+
+    private void add(Long noteId, String name, Boolean done, long[] tagIds, long[] categoryIds) {
+        removeEntry(noteId);
+        if (!fits(noteId)) {
+            log.warn("Note id {} does not fit the search index, the note is not indexed", noteId);
+            return;
+        }
+        allNotes.add(bit(noteId));
+        if (Boolean.TRUE.equals(done)) {
+            doneNotes.add(bit(noteId));
+        }
+        String[] terms = new LinkedHashSet<>(tokenize(name)).toArray(String[]::new);
+        for (String term : terms) {
+            postings.computeIfAbsent(term, key -> new RoaringBitmap()).add(bit(noteId));
+        }
+        for (long tagId : tagIds) {
+            notesByTag.computeIfAbsent(tagId, key -> new RoaringBitmap()).add(bit(noteId));
+        }
+        for (long categoryId : categoryIds) {
+            notesByCategory.computeIfAbsent(categoryId, key -> new RoaringBitmap()).add(bit(noteId));
+        }
+        entries.put(noteId, new Entry(terms, tagIds, categoryIds));
+    }
+
+    private void removeEntry(Long noteId) {
+        Entry entry = entries.remove(noteId);
+        if (entry == null) {
+            return;
+        }
+        allNotes.remove(bit(noteId));
+        doneNotes.remove(bit(noteId));
+        for (String term : entry.terms()) {
+            RoaringBitmap notes = postings.get(term);
+            if (notes != null) {
+                notes.remove(bit(noteId));
+                if (notes.isEmpty()) {
+                    postings.remove(term);
+                }
+            }
+        }
+        for (long tagId : entry.tagIds()) {
+            unlink(notesByTag, tagId, noteId);
+        }
+        for (long categoryId : entry.categoryIds()) {
+            unlink(notesByCategory, categoryId, noteId);
+        }
+    }
+
+    private static void unlink(Map<Long, RoaringBitmap> notesById, Long id, Long noteId) {
+        RoaringBitmap notes = notesById.get(id);
+        if (notes != null && fits(noteId)) {
+            notes.remove(bit(noteId));
+            if (notes.isEmpty()) {
+                notesById.remove(id);
+            }
+        }
+    }
+
+    /**
+     * Bitmaps hold unsigned 32-bit values, which is enough for the note ids of a single table and
+     * makes intersections several times faster than with 64-bit bitmaps. Notes with larger ids are
+     * left out of the index rather than failing the write that indexes them.
+     */
+    private static boolean fits(long noteId) {
+        return noteId >>> Integer.SIZE == 0;
+    }
+
+    private static int bit(long noteId) {
+        return (int) noteId;
+    }
+
+    private void markChanged(Long noteId) {
+        if (building.get()) {
+            changedDuringBuild.add(noteId);
+        }
+    }
+
+    private void withWriteLock(Runnable action) {
+        lock.writeLock().lock();
+        try {
+            action.run();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private int size() {
+        lock.readLock().lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private int terms() {
+        lock.readLock().lock();
+        try {
+            return postings.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static long[] tagIds(Note note) {
+        return note.getNoteTags().stream()
+                .map(NoteTag::getTag)
+                .filter(tag -> tag.getId() != null)
+                .mapToLong(tag -> tag.getId())
+                .toArray();
+    }
+
+    private static long[] categoryIds(Note note) {
+        return note.getNoteCategories().stream()
+                .map(NoteCategory::getCategory)
+                .filter(category -> category.getId() != null)
+                .mapToLong(category -> category.getId())
+                .toArray();
+    }
+
+    private record Entry(String[] terms, long[] tagIds, long[] categoryIds) {
+        Entry withTag(long tagId) {
+            return new Entry(terms, with(tagIds, tagId), categoryIds);
+        }
+
+        Entry withCategory(long categoryId) {
+            return new Entry(terms, tagIds, with(categoryIds, categoryId));
+        }
+
+        Entry withoutTag(long tagId) {
+            return new Entry(terms, without(tagIds, tagId), categoryIds);
+        }
+
+        Entry withoutCategory(long categoryId) {
+            return new Entry(terms, tagIds, without(categoryIds, categoryId));
+        }
+
+        private static long[] with(long[] ids, long added) {
+            if (Arrays.stream(ids).anyMatch(id -> id == added)) {
+                return ids;
+            }
+            long[] result = Arrays.copyOf(ids, ids.length + 1);
+            result[ids.length] = added;
+            return result;
+        }
+
+        private static long[] without(long[] ids, long removed) {
+            return Arrays.stream(ids).filter(id -> id != removed).toArray();
+        }
+    }
+
+    private record Scored(long id, double score) {
+    }
+}
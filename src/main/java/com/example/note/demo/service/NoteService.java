@@ -1,9 +1,18 @@
 package com.example.note.demo.service;
 
+import com.example.note.demo.dto.NoteDeltaDto;
 import com.example.note.demo.dto.NoteDto;
+import com.example.note.demo.dto.NoteFacetFilter;
+import com.example.note.demo.dto.NoteFacetsDto;
+import com.example.note.demo.dto.NoteFilter;
+import com.example.note.demo.dto.NotePageDto;
 import com.example.note.demo.model.Note;
+import com.example.note.demo.repository.NoteChangeRepository;
 import com.example.note.demo.repository.NoteRepository;
+import com.example.note.demo.util.exception.IndexNotReadyException;
+import com.example.note.demo.util.exception.InvalidCursorException;
 import com.example.note.demo.util.mapper.NoteMapper;
+import io.micrometer.core.annotation.Timed;
 import lombok.AccessLevel;
 import lombok.experimental.FieldDefaults;
 import lombok.extern.slf4j.Slf4j;
@@ -11,81 +20,217 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.cache.annotation.*;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
+import java.util.Base64;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Service
+@Timed("service")
 @FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
 @CacheConfig(cacheNames = "notes")
 public class NoteService {
+    private static final int DEFAULT_PAGE_SIZE = 20;
+    private static final int MAX_PAGE_SIZE = 100;
+
     NoteRepository noteRepository;
     NoteMapper noteMapper;
+    NoteListCache noteListCache;
+    NoteSearchIndex noteSearchIndex;
+    NoteChangeRepository noteChangeRepository;
+    NoteChangeFeed noteChangeFeed;
 
     @Autowired
-    public NoteService(NoteRepository noteRepository, NoteMapper noteMapper) {
+    public NoteService(NoteRepository noteRepository, NoteMapper noteMapper, NoteListCache noteListCache,
+                       NoteSearchIndex noteSearchIndex, NoteChangeRepository noteChangeRepository,
+                       NoteChangeFeed noteChangeFeed) {
         this.noteRepository = noteRepository;
         this.noteMapper = noteMapper;
+        this.noteListCache = noteListCache;
+        this.noteSearchIndex = noteSearchIndex;
+        this.noteChangeRepository = noteChangeRepository;
+        this.noteChangeFeed = noteChangeFeed;
     }
 
-    @Caching(
-            put = {
-                    @CachePut(key = "#result.id")
-            },
-            evict = {
-                    @CacheEvict(key = "'all'")
-            }
-    )
+    @CachePut(key = "#result.id")
     public NoteDto save(NoteDto noteDto) {
-        log.info("Service: Saving new note with name: {}", noteDto.getName());
+        log.debug("Service: Saving new note with name: {}", noteDto.getName());
         if (noteDto.getDateOfCreation() == null) {
             noteDto.setDateOfCreation(LocalDate.now());
             noteDto.setDateOfUpdate(LocalDate.now());
         }
         Note note = noteRepository.save(noteMapper.toEntity(noteDto), noteDto.getCategories(), noteDto.getTags());
-        log.info("Service: Successfully saved note with id: {}", note.getId());
-        return noteMapper.toDto(note);
+        log.debug("Service: Successfully saved note with id: {}", note.getId());
+        NoteDto savedNote = noteMapper.toDto(note);
+        noteListCache.put(savedNote);
+        noteSearchIndex.index(savedNote);
+        return savedNote;
     }
 
-    @Cacheable(key = "#id")
+    @Cacheable(key = "#id", sync = true)
     public NoteDto getById(Long id) {
-        log.info("Service: Getting note by id: {}", id);
+        log.debug("Service: Getting note by id: {}", id);
         Note note = noteRepository.getById(id);
-        log.info("Service: Successfully get note with id: {} and {} categories, {} tags",
-                id, note.getNoteCategories().size(), note.getNoteTags().size());
+        if (log.isDebugEnabled()) {
+            log.debug("Service: Successfully get note with id: {} and {} categories, {} tags",
+                    id, note.getNoteCategories().size(), note.getNoteTags().size());
+        }
         return noteMapper.toDto(note);
     }
 
     public List<NoteDto> getAll() {
         log.debug("Service: Getting all notes");
+        List<NoteDto> cachedNotes = noteListCache.getAll();
+        if (cachedNotes != null) {
+            return cachedNotes;
+        }
         List<Note> notes = noteRepository.getAll();
         log.debug("Service: Retrieved {} notes", notes.size());
         return noteMapper.toDto(notes);
     }
 
-    @Caching(put = {
-            @CachePut(key = "#id")
-    },
-            evict = {
-                    @CacheEvict(key = "'all'")
-            }
-    )
+    public NotePageDto getPage(String cursor, Integer limit, NoteFilter filter) {
+        int pageSize = limit == null ? DEFAULT_PAGE_SIZE : Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        Long afterId = decodeCursor(cursor);
+        log.debug("Service: Getting page of notes after id: {}, page size: {}", afterId, pageSize);
+        List<NoteDto> notes = isEmpty(filter) ? noteListCache.getPage(afterId, pageSize + 1) : null;
+        if (notes == null) {
+            notes = noteMapper.toDto(noteRepository.getPage(afterId, pageSize + 1, filter));
+        }
+        String nextCursor = null;
+        if (notes.size() > pageSize) {
+            notes = notes.subList(0, pageSize);
+            nextCursor = encodeCursor(notes.get(pageSize - 1).getId());
+        }
+        log.debug("Service: Retrieved {} notes, has next page: {}", notes.size(), nextCursor != null);
+        return NotePageDto.builder()
+                .notes(notes)
+                .nextCursor(nextCursor)
+                .build();
+    }
+
+    /**
+     * Returns the notes changed after version {@code since} and the ids of the notes deleted since
+     * then, up to the last published change version so that no later committed change is skipped.
+     * If there are more than {@code limit} changed notes, the delta ends at the version of the last
+     * returned one and {@code hasMore} is set. If the change log was pruned beyond {@code since}, the
+     * deleted notes are unknown and only {@code reset} is returned: the client has to reload all notes.
+     */
+    public NoteDeltaDto getChangedSince(long since, Integer limit) {
+        int size = limit == null ? DEFAULT_PAGE_SIZE : Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        long upTo = noteChangeFeed.getPublishedVersion();
+        log.debug("Service: Getting notes changed after version: {}, up to: {}", since, upTo);
+        if (since >= upTo) {
+            return NoteDeltaDto.builder()
+                    .version(since)
+                    .notes(List.of())
+                    .deleted(List.of())
+                    .build();
+        }
+        if (since < noteChangeRepository.getOldestVersion() - 1) {
+            log.debug("Service: Change log no longer reaches version: {}", since);
+            return NoteDeltaDto.builder()
+                    .version(upTo)
+                    .notes(List.of())
+                    .deleted(List.of())
+                    .reset(true)
+                    .build();
+        }
+        List<Note> notes = noteRepository.getChangedAfter(since, upTo, size + 1);
+        boolean hasMore = notes.size() > size;
+        if (hasMore) {
+            notes = notes.subList(0, size);
+            upTo = notes.get(size - 1).getVersion();
+        }
+        List<Long> deleted = noteChangeRepository.findDeletedAfter(since, upTo);
+        log.debug("Service: Retrieved {} changed and {} deleted notes", notes.size(), deleted.size());
+        return NoteDeltaDto.builder()
+                .version(upTo)
+                .notes(noteMapper.toDto(notes))
+                .deleted(deleted)
+                .hasMore(hasMore)
+                .build();
+    }
+
+    /**
+     * Finds notes by the words of their names, see {@link NoteSearchIndex} for matching and ranking.
+     */
+    public List<NoteDto> search(String query, Long tagId, Long categoryId, Integer limit) {
+        int size = limit == null ? DEFAULT_PAGE_SIZE : Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        log.debug("Service: Searching notes by query: {}, limit: {}", query, size);
+        requireSearchIndex();
+        List<Long> ids = noteSearchIndex.search(query, tagId, categoryId, size);
+        Map<Long, NoteDto> notes = noteMapper.toDto(noteRepository.getByIds(ids)).stream()
+                .collect(Collectors.toMap(NoteDto::getId, Function.identity()));
+        log.debug("Service: Found {} notes", notes.size());
+        return ids.stream()
+                .map(notes::get)
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    public NoteFacetsDto getFacets(NoteFacetFilter filter) {
+        log.debug("Service: Counting note facets");
+        requireSearchIndex();
+        NoteFacetsDto facets = noteSearchIndex.facets(filter);
+        log.debug("Service: Counted facets over {} notes", facets.getTotal());
+        return facets;
+    }
+
+    @CachePut(key = "#id")
     public NoteDto update(NoteDto noteDto, Long id) {
-        log.info("Service: Updating note with id: {}", id);
+        log.debug("Service: Updating note with id: {}", id);
         Note note = noteRepository.update(noteMapper.toEntity(noteDto), id);
-        log.info("Service: Successfully updated note with id: {}", id);
-        return noteMapper.toDto(note);
+        log.debug("Service: Successfully updated note with id: {}", id);
+        NoteDto updatedNote = noteMapper.toDto(note);
+        noteListCache.put(updatedNote);
+        noteSearchIndex.index(updatedNote);
+        return updatedNote;
     }
 
-    @Caching(evict = {
-            @CacheEvict(key = "#id"),
-            @CacheEvict(key = "'all'")
-    })
+    @CacheEvict(key = "#id")
     public Map<String, Boolean> delete(Long id) {
-        log.info("Service: Deleting note with id: {}", id);
+        log.debug("Service: Deleting note with id: {}", id);
         Map<String, Boolean> result = noteRepository.delete(id);
-        log.info("Service: Note delete completed for id: {}, result: {}", id, result);
+        noteListCache.remove(id);
+        noteSearchIndex.remove(id);
+        log.debug("Service: Note delete completed for id: {}, result: {}", id, result);
         return result;
     }
+
+    /**
+     * Search and facets over a partly built index would silently miss notes.
+     */
+    private void requireSearchIndex() {
+        if (!noteSearchIndex.isReady()) {
+            throw new IndexNotReadyException("Note search index is still being built");
+        }
+    }
+
+    private boolean isEmpty(NoteFilter filter) {
+        return filter.getIsDone() == null && filter.getDateFrom() == null && filter.getDateTo() == null
+                && filter.getCategoryId() == null && filter.getTagId() == null;
+    }
+
+    private String encodeCursor(Long id) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(String.valueOf(id).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Long decodeCursor(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return 0L;
+        }
+        try {
+            return Long.parseLong(new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8));
+        } catch (IllegalArgumentException e) {
+            log.error("Service: Invalid page cursor: {}", cursor);
+            throw new InvalidCursorException("Invalid page cursor " + cursor);
+        }
+    }
 }
@@ -1,40 +1,61 @@
 package com.example.note.demo.service;
 
+import com.example.note.demo.configuration.cache.NoteCacheIndex;
 import com.example.note.demo.dto.NoteDto;
+import com.example.note.demo.dto.NoteLinksResultDto;
+import com.example.note.demo.dto.NoteSelectionDto;
 import com.example.note.demo.dto.TagDto;
 import com.example.note.demo.model.Note;
 import com.example.note.demo.model.Tag;
 import com.example.note.demo.repository.NoteTagRepository;
+import com.example.note.demo.repository.NoteRepository;
 import com.example.note.demo.repository.TagRepository;
 import com.example.note.demo.util.mapper.NoteMapper;
 import com.example.note.demo.util.mapper.TagMapper;
+import io.micrometer.core.annotation.Timed;
 import lombok.AccessLevel;
 import lombok.experimental.FieldDefaults;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.*;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 @Slf4j
 @Service
+@Timed("service")
 @FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
 @CacheConfig(cacheNames = "tags")
 public class TagService {
     TagRepository tagRepository;
     TagMapper tagMapper;
     NoteTagRepository noteTagRepository;
+    NoteRepository noteRepository;
     NoteMapper noteMapper;
+    NoteCacheIndex noteCacheIndex;
+    NoteSearchIndex noteSearchIndex;
+    NoteCacheUpdater noteCacheUpdater;
+    CacheManager cacheManager;
 
     @Autowired
     public TagService(TagRepository tagRepository, TagMapper tagMapper, NoteTagRepository noteTagRepository,
-                      NoteMapper noteMapper) {
+                      NoteRepository noteRepository, NoteMapper noteMapper, NoteCacheIndex noteCacheIndex,
+                      NoteSearchIndex noteSearchIndex, NoteCacheUpdater noteCacheUpdater,
+                      CacheManager cacheManager) {
         this.tagRepository = tagRepository;
         this.tagMapper = tagMapper;
         this.noteTagRepository = noteTagRepository;
+        this.noteRepository = noteRepository;
         this.noteMapper = noteMapper;
+        this.noteCacheIndex = noteCacheIndex;
+        this.noteSearchIndex = noteSearchIndex;
+        this.noteCacheUpdater = noteCacheUpdater;
+        this.cacheManager = cacheManager;
     }
 
     @Caching(put = {
@@ -45,15 +66,15 @@ public class TagService {
             }
     )
     public TagDto save(TagDto tagDto) {
-        log.info("Service: Saving tag with name: {} and colour: {}", tagDto.getName(), tagDto.getColour());
+        log.debug("Service: Saving tag with name: {} and colour: {}", tagDto.getName(), tagDto.getColour());
         Tag savedTag = tagRepository.save(tagMapper.toEntity(tagDto));
-        log.info("Service: Successfully saved tag with id: {}", savedTag.getId());
+        log.debug("Service: Successfully saved tag with id: {}", savedTag.getId());
         return tagMapper.toDto(savedTag);
     }
 
     @Cacheable(key = "#id")
     public TagDto getById(Long id) {
-        log.info("Service: Fetching tag by id: {}", id);
+        log.debug("Service: Fetching tag by id: {}", id);
         Tag tag = tagRepository.getById(id);
         log.debug("Service: Successfully retrieved tag: {}", tag);
         return tagMapper.toDto(tag);
@@ -64,55 +85,138 @@ public class TagService {
     },
             evict = {
                     @CacheEvict(key = "'all'"),
-                    @CacheEvict(value = "notes", allEntries = true)
+                    @CacheEvict(value = "notes", key = "'all'")
             }
     )
     public TagDto update(TagDto tagDto, Long id) {
-        log.info("Service: Updating tag with id: {} to name: {}, colour: {}",
+        log.debug("Service: Updating tag with id: {} to name: {}, colour: {}",
                 id, tagDto.getName(), tagDto.getColour());
         Tag tag = tagMapper.toEntity(tagDto);
-        return tagMapper.toDto(tagRepository.update(tag, id));
+        TagDto updatedTag = tagMapper.toDto(tagRepository.update(tag, id));
+        evictCachedNotesWithTag(id);
+        return updatedTag;
     }
 
     @Cacheable(key = "'all'")
     public List<TagDto> getAll() {
-        log.info("Service: Fetching all tags");
+        log.debug("Service: Fetching all tags");
         List<Tag> tags = tagRepository.getAll();
-        log.info("Service: Retrieved {} tags", tags.size());
+        log.debug("Service: Retrieved {} tags", tags.size());
         return tagMapper.toDto(tags);
     }
 
     @Caching(evict = {
             @CacheEvict(key = "#id"),
             @CacheEvict(key = "'all'"),
-            @CacheEvict(value = "notes", allEntries = true)
+            @CacheEvict(value = "notes", key = "'all'")
     })
     public Map<String, Boolean> delete(Long id) {
-        log.info("Service: Deleting tag with id: {}", id);
+        log.debug("Service: Deleting tag with id: {}", id);
         Map<String, Boolean> result = tagRepository.delete(id);
-        log.info("Service: Tag deletion completed for id: {}, result: {}", id, result);
+        evictCachedNotesWithTag(id);
+        noteSearchIndex.removeTag(id);
+        log.debug("Service: Tag deletion completed for id: {}, result: {}", id, result);
         return result;
     }
 
     public NoteDto addTagToNote(Long noteId, Long tagId) {
-        log.info("Service: Adding tag id: {} to note id: {}", tagId, noteId);
+        log.debug("Service: Adding tag id: {} to note id: {}", tagId, noteId);
         Note note = noteTagRepository.addTagToNote(noteId, tagId);
-        log.info("Service: Successfully added tag to note");
-        return noteMapper.toDto(note);
+        log.debug("Service: Successfully added tag to note");
+        NoteDto noteDto = noteMapper.toDto(note);
+        noteSearchIndex.linkTag(List.of(noteId), tagId);
+        noteCacheUpdater.replaceTag(noteId, null, cachedTag(tagId), note.getVersion());
+        return noteDto;
     }
 
     public NoteDto updateTagInNote(Long noteId, Long oldTagId, Long newTagId) {
-        log.info("Service: Updating tag in note: noteId={}, oldTagId={}, newTagId={}",
-                noteId, newTagId, newTagId);
+        log.debug("Service: Updating tag in note: noteId={}, oldTagId={}, newTagId={}",
+                noteId, oldTagId, newTagId);
         Note note = noteTagRepository.updateTagInNote(noteId, oldTagId, newTagId);
-        log.info("Service: Successfully updated tag in note");
-        return noteMapper.toDto(note);
+        log.debug("Service: Successfully updated tag in note");
+        NoteDto noteDto = noteMapper.toDto(note);
+        noteSearchIndex.unlinkTag(noteId, oldTagId);
+        noteSearchIndex.linkTag(List.of(noteId), newTagId);
+        noteCacheUpdater.replaceTag(noteId, oldTagId, cachedTag(newTagId), note.getVersion());
+        return noteDto;
     }
 
     public Map<String, Boolean> deleteTagFromNote(Long noteId, Long tagId) {
-        log.info("Service: Deleting tag id: {} from note id: {}", tagId, noteId);
-        Map<String, Boolean> result = noteTagRepository.deleteTagFromNote(noteId, tagId);
-        log.info("Service: Tag deletion from note completed, result: {}", result);
+        log.debug("Service: Deleting tag id: {} from note id: {}", tagId, noteId);
+        long version = noteTagRepository.deleteTagFromNote(noteId, tagId);
+        noteSearchIndex.unlinkTag(noteId, tagId);
+        noteCacheUpdater.replaceTag(noteId, tagId, null, version);
+        Map<String, Boolean> result = Map.of("deleted", true);
+        log.debug("Service: Tag deletion from note completed, result: {}", result);
         return result;
     }
+
+    @CacheEvict(value = "notes", key = "'all'")
+    public NoteLinksResultDto addTagToNotes(NoteSelectionDto selection, Long tagId) {
+        log.debug("Service: Adding tag id: {} to selected notes", tagId);
+        List<Long> noteIds = noteRepository.findIds(selection);
+        List<Long> changed = noteTagRepository.addTagToNotes(noteIds, tagId);
+        noteSearchIndex.linkTag(changed, tagId);
+        evictCachedNotes(changed);
+        log.debug("Service: Added tag id: {} to {} of {} notes", tagId, changed.size(), noteIds.size());
+        return linksResult(noteIds, changed);
+    }
+
+    @CacheEvict(value = "notes", key = "'all'")
+    public NoteLinksResultDto updateTagInNotes(NoteSelectionDto selection, Long tagId, Long newTagId) {
+        log.debug("Service: Updating tag in selected notes: oldTagId={}, newTagId={}", tagId, newTagId);
+        List<Long> noteIds = noteRepository.findIds(selection);
+        List<Long> changed = noteTagRepository.updateTagInNotes(noteIds, tagId, newTagId);
+        noteSearchIndex.unlinkTag(changed, tagId);
+        noteSearchIndex.linkTag(changed, newTagId);
+        evictCachedNotes(changed);
+        log.debug("Service: Updated tag in {} of {} notes", changed.size(), noteIds.size());
+        return linksResult(noteIds, changed);
+    }
+
+    @CacheEvict(value = "notes", key = "'all'")
+    public NoteLinksResultDto deleteTagFromNotes(NoteSelectionDto selection, Long tagId) {
+        log.debug("Service: Deleting tag id: {} from selected notes", tagId);
+        List<Long> noteIds = noteRepository.findIds(selection);
+        List<Long> changed = noteTagRepository.deleteTagFromNotes(noteIds, tagId);
+        noteSearchIndex.unlinkTag(changed, tagId);
+        evictCachedNotes(changed);
+        log.debug("Service: Deleted tag id: {} from {} of {} notes", tagId, changed.size(), noteIds.size());
+        return linksResult(noteIds, changed);
+    }
+
+    /**
+     * Returns the tag from the tags cache, loading it on a miss. {@link #getById} is not
+     * cached when called from this class.
+     */
+    private TagDto cachedTag(Long id) {
+        Cache tags = cacheManager.getCache("tags");
+        if (tags == null) {
+            return tagMapper.toDto(tagRepository.getById(id));
+        }
+        return tags.get(id, () -> tagMapper.toDto(tagRepository.getById(id)));
+    }
+
+    private void evictCachedNotes(List<Long> noteIds) {
+        Cache notes = cacheManager.getCache("notes");
+        if (notes != null) {
+            noteIds.forEach(notes::evict);
+        }
+    }
+
+    private static NoteLinksResultDto linksResult(List<Long> noteIds, List<Long> changed) {
+        return NoteLinksResultDto.builder()
+                .selected(noteIds.size())
+                .affected(changed.size())
+                .build();
+    }
+
+    private void evictCachedNotesWithTag(Long tagId) {
+        Set<Long> noteIds = noteCacheIndex.removeNotesWithTag(tagId);
+        Cache notes = cacheManager.getCache("notes");
+        if (notes != null) {
+            noteIds.forEach(notes::evict);
+        }
+        log.debug("Service: Evicted {} cached notes with tag id: {}", noteIds.size(), tagId);
+    }
 }
@@ -0,0 +1,7 @@
+package com.example.note.demo.util.exception;
+
+public class IndexNotReadyException extends RuntimeException {
+    public IndexNotReadyException(String message) {
+        super(message);
+    }
+}
@@ -18,8 +18,8 @@ public class NoteMapper {
         return NoteDto.builder()
                 .id(note.getId())
                 .name(note.getName())
-                .dateOfCreation(LocalDate.now())
-                .dateOfUpdate(LocalDate.now())
+                .dateOfCreation(note.getDateOfCreation())
+                .dateOfUpdate(note.getDateOfUpdate())
                 .isDone(note.getIsDone())
                 .categories(note.getNoteCategories() != null ?
                         note.getNoteCategories().stream()
@@ -29,6 +29,7 @@ public class NoteMapper {
                         note.getNoteTags().stream()
                                 .map(nt -> toDto(nt.getTag()))
                                 .toList() : null)
+                .version(note.getVersion())
                 .build();
     }
 
@@ -55,7 +56,7 @@ public class NoteMapper {
         return Note.builder()
                 .id(dto.getId())
                 .name(dto.getName())
-                .dateOfCreation(LocalDate.now())
+                .dateOfCreation(dto.getDateOfCreation() != null ? dto.getDateOfCreation() : LocalDate.now())
                 .dateOfUpdate(LocalDate.now())
                 .isDone(dto.getIsDone())
                 .build();
@@ -0,0 +1,39 @@
+CREATE TABLE IF NOT EXISTS notes(
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    name VARCHAR(100) NOT NULL,
+    date_of_creation DATE NOT NULL,
+    date_of_update DATE NOT NULL,
+    is_done BOOLEAN NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS categories(
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    name VARCHAR(100),
+    CONSTRAINT uq_categories_name UNIQUE (name)
+);
+
+CREATE TABLE IF NOT EXISTS note_category(
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    note_id BIGINT NOT NULL REFERENCES notes(id) ON DELETE CASCADE,
+    category_id BIGINT NOT NULL REFERENCES categories(id),
+    CONSTRAINT uq_note_category UNIQUE (note_id, category_id)
+);
+
+CREATE INDEX IF NOT EXISTS idx_note_category_category_note ON note_category(category_id, note_id);
+
+CREATE TABLE IF NOT EXISTS tags(
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    name VARCHAR(100) NOT NULL,
+    colour VARCHAR(50) NOT NULL,
+    CONSTRAINT uq_tags_name UNIQUE (name)
+);
+
+CREATE TABLE IF NOT EXISTS note_tag(
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    note_id BIGINT NOT NULL REFERENCES notes(id) ON DELETE CASCADE,
+    tag_id BIGINT NOT NULL REFERENCES tags(id),
+    CONSTRAINT uq_note_tag UNIQUE (note_id, tag_id)
+);
+
+CREATE INDEX IF NOT EXISTS idx_note_tag_tag_note ON note_tag(tag_id, note_id);
+
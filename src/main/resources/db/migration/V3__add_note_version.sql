@@ -0,0 +1,9 @@
+ALTER TABLE notes ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE notes ADD COLUMN updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP;
+
+CREATE INDEX IF NOT EXISTS idx_note_changes_note_version ON note_changes(note_id, version);
+
+UPDATE notes
+SET version = COALESCE((SELECT MAX(c.version) FROM note_changes c WHERE c.note_id = notes.id), 0);
+
+CREATE INDEX IF NOT EXISTS idx_notes_version ON notes(version);
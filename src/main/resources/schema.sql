@@ -1,33 +0,0 @@
-DROP ALL OBJECTS;
-
-CREATE TABLE IF NOT EXISTS notes(
-    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
-    name VARCHAR(100) NOT NULL,
-    date_of_creation DATE NOT NULL,
-    date_of_update DATE NOT NULL,
-    is_done BOOLEAN NOT NULL
-);
-
-CREATE TABLE IF NOT EXISTS categories(
-    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
-    name VARCHAR(100)
-);
-
-CREATE TABLE IF NOT EXISTS note_category(
-    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
-    note_id INTEGER REFERENCES notes(id) ON DELETE CASCADE,
-    category_id INTEGER REFERENCES categories(id)
-);
-
-CREATE TABLE IF NOT EXISTS tags(
-    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
-    name VARCHAR(100) NOT NULL,
-    colour VARCHAR(50) NOT NULL
-);
-
-CREATE TABLE IF NOT EXISTS note_tag(
-    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
-    note_id INTEGER REFERENCES notes(id) ON DELETE CASCADE,
-    tag_id INTEGER REFERENCES tags(id)
-);
-
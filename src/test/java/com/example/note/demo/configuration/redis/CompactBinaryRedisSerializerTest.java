@@ -0,0 +1,164 @@
+package com.example.note.demo.configuration.redis;
+
+import com.example.note.demo.dto.CategoryDto;
+import com.example.note.demo.dto.NoteDto;
+import com.example.note.demo.dto.NoteListView;
+import com.example.note.demo.dto.TagDto;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CompactBinaryRedisSerializerTest {
+    private final GenericJackson2JsonRedisSerializer json = new GenericJackson2JsonRedisSerializer();
+    private final CompactBinaryRedisSerializer serializer = new CompactBinaryRedisSerializer(json, true);
+
+    @Test
+    void roundTripsNoteWithAllFields() {
+        NoteDto note = NoteDto.builder()
+                .id(Long.MAX_VALUE)
+                .name("Заметка 📝 über")
+                .dateOfCreation(LocalDate.of(1969, 7, 20))
+                .dateOfUpdate(LocalDate.of(2026, 10, 18))
+                .isDone(true)
+                .categories(List.of(CategoryDto.builder().id(1L).name("Работа").build()))
+                .tags(List.of(TagDto.builder().id(300L).name("срочно").colour("#ff0000").build(),
+                        TagDto.builder().id(2L).build()))
+                .version(1L << 40)
+                .build();
+
+        assertNote(note, roundTrip(note));
+    }
+
+    @Test
+    void roundTripsNoteWithNullAndEmptyFields() {
+        NoteDto empty = new NoteDto();
+        assertNote(empty, roundTrip(empty));
+
+        NoteDto note = NoteDto.builder()
+                .id(0L)
+                .name("")
+                .isDone(false)
+                .categories(List.of())
+                .tags(List.of())
+                .build();
+        assertNote(note, roundTrip(note));
+    }
+
+    @Test
+    void roundTripsNoteListView() {
+        NoteListView view = NoteListView.builder()
+                .version(42)
+                .loadedAt(1_760_000_000_000L)
+                .complete(true)
+                .notes(List.of(
+                        NoteDto.builder().id(1L).name("первая").tags(List.of()).version(3L).build(),
+                        new NoteDto()))
+                .build();
+
+        NoteListView read = assertInstanceOf(NoteListView.class, roundTrip(view));
+        assertEquals(42, read.getVersion());
+        assertEquals(1_760_000_000_000L, read.getLoadedAt());
+        assertTrue(read.isComplete());
+        assertEquals(2, read.getNotes().size());
+        assertNote(view.getNotes().get(0), read.getNotes().get(0));
+        assertNote(view.getNotes().get(1), read.getNotes().get(1));
+
+        NoteListView empty = NoteListView.builder().notes(List.of()).build();
+        NoteListView readEmpty = assertInstanceOf(NoteListView.class, roundTrip(empty));
+        assertTrue(readEmpty.getNotes().isEmpty());
+    }
+
+    @Test
+    void readsJsonWrittenBeforeTheBinaryFormat() {
+        TagDto tag = TagDto.builder().id(5L).name("тег").colour("blue").build();
+        byte[] bytes = new CompactBinaryRedisSerializer(json, false).serialize(tag);
+        assertNotEquals(CompactBinaryRedisSerializer.MAGIC, bytes[0]);
+
+        TagDto read = assertInstanceOf(TagDto.class, serializer.deserialize(bytes));
+        assertEquals("тег", read.getName());
+        assertEquals("blue", read.getColour());
+    }
+
+    @Test
+    void readsUnknownVersionAsMiss() {
+        byte[] bytes = serializer.serialize(NoteDto.builder().id(1L).name("note").build());
+        bytes[1] = CompactBinaryRedisSerializer.VERSION + 1;
+
+        assertNull(serializer.deserialize(bytes));
+    }
+
+    @Test
+    void readsUnknownFlagsAsMiss() {
+        byte[] bytes = serializer.serialize(TagDto.builder().id(1L).name("tag").build());
+        // magic, version, type, then the presence bitmask with a field the tag does not have
+        bytes[3] |= 1 << 5;
+
+        assertNull(serializer.deserialize(bytes));
+    }
+
+    @Test
+    void readsUnknownTypeAndTruncatedValuesAsMiss() {
+        byte[] bytes = serializer.serialize(NoteDto.builder().id(1L).name("note").build());
+        byte[] unknownType = bytes.clone();
+        unknownType[2] = 99;
+
+        assertNull(serializer.deserialize(unknownType));
+        assertNull(serializer.deserialize(Arrays.copyOf(bytes, bytes.length - 1)));
+        assertNull(serializer.deserialize(Arrays.copyOf(bytes, bytes.length + 1)));
+        assertNull(serializer.deserialize(new byte[]{CompactBinaryRedisSerializer.MAGIC}));
+    }
+
+    @Test
+    void readsForgedLengthAsMiss() {
+        byte[] hugeList = {CompactBinaryRedisSerializer.MAGIC, CompactBinaryRedisSerializer.VERSION, 4,
+                (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07};
+        byte[] view = serializer.serialize(NoteListView.builder().notes(List.of()).build());
+        // the count of notes is the last byte of an empty view
+        view[view.length - 1] = 0x7F;
+
+        assertNull(serializer.deserialize(hugeList));
+        assertNull(serializer.deserialize(view));
+    }
+
+    private Object roundTrip(Object value) {
+        byte[] bytes = serializer.serialize(value);
+        assertEquals(CompactBinaryRedisSerializer.MAGIC, bytes[0]);
+        return serializer.deserialize(bytes);
+    }
+
+    private static void assertNote(NoteDto expected, Object actual) {
+        NoteDto note = assertInstanceOf(NoteDto.class, actual);
+        assertEquals(expected.getId(), note.getId());
+        assertEquals(expected.getName(), note.getName());
+        assertEquals(expected.getDateOfCreation(), note.getDateOfCreation());
+        assertEquals(expected.getDateOfUpdate(), note.getDateOfUpdate());
+        assertEquals(expected.getIsDone(), note.getIsDone());
+        assertEquals(expected.getVersion(), note.getVersion());
+        assertEquals(expected.getCategories() == null, note.getCategories() == null);
+        if (expected.getCategories() != null) {
+            assertEquals(expected.getCategories().size(), note.getCategories().size());
+            for (int i = 0; i < expected.getCategories().size(); i++) {
+                assertEquals(expected.getCategories().get(i).getId(), note.getCategories().get(i).getId());
+                assertEquals(expected.getCategories().get(i).getName(), note.getCategories().get(i).getName());
+            }
+        }
+        assertEquals(expected.getTags() == null, note.getTags() == null);
+        if (expected.getTags() != null) {
+            assertEquals(expected.getTags().size(), note.getTags().size());
+            for (int i = 0; i < expected.getTags().size(); i++) {
+                assertEquals(expected.getTags().get(i).getId(), note.getTags().get(i).getId());
+                assertEquals(expected.getTags().get(i).getName(), note.getTags().get(i).getName());
+                assertEquals(expected.getTags().get(i).getColour(), note.getTags().get(i).getColour());
+            }
+        }
+    }
+}
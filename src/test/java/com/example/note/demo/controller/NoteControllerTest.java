@@ -0,0 +1,168 @@
+package com.example.note.demo.controller;
+
+import com.example.note.demo.dto.CategoryDto;
+import com.example.note.demo.dto.TagDto;
+import com.example.note.demo.model.Note;
+import com.example.note.demo.model.Tag;
+import com.example.note.demo.repository.NoteChangeRepository;
+import com.example.note.demo.repository.NoteRepository;
+import com.example.note.demo.repository.NoteTagRepository;
+import com.example.note.demo.repository.TagRepository;
+import com.example.note.demo.service.NoteAccessSketch;
+import com.example.note.demo.service.NoteChangeFeed;
+import com.example.note.demo.service.NoteExportService;
+import com.example.note.demo.service.NoteImportService;
+import com.example.note.demo.service.NoteListCache;
+import com.example.note.demo.service.NoteSearchIndex;
+import com.example.note.demo.service.NoteService;
+import com.example.note.demo.util.mapper.NoteMapper;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.mockito.Mockito.mock;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Runs the note endpoints over the repositories on H2, with the Redis backed caches left out.
+ */
+class NoteControllerTest {
+    private HikariDataSource dataSource;
+    private NoteRepository noteRepository;
+    private TagRepository tagRepository;
+    private NoteTagRepository noteTagRepository;
+    private NoteChangeFeed noteChangeFeed;
+    private MockMvc mvc;
+
+    @BeforeEach
+    void setUp() {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl("jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        Flyway.configure().dataSource(dataSource).load().migrate();
+        JdbcTemplate template = new JdbcTemplate(dataSource);
+        NoteChangeRepository noteChangeRepository = new NoteChangeRepository(template);
+        noteRepository = new NoteRepository(template, noteChangeRepository, new SimpleMeterRegistry());
+        tagRepository = new TagRepository(template, noteChangeRepository);
+        noteTagRepository = new NoteTagRepository(template, noteChangeRepository);
+        NoteMapper noteMapper = new NoteMapper();
+        NoteSearchIndex noteSearchIndex = new NoteSearchIndex(null, new SimpleMeterRegistry(), 10000);
+        noteChangeFeed = new NoteChangeFeed(noteChangeRepository, noteRepository, noteMapper, noteSearchIndex,
+                new SimpleMeterRegistry(), 500, 100, 100000, Duration.ofSeconds(5));
+        noteChangeFeed.start();
+        NoteService noteService = new NoteService(noteRepository, noteMapper, mock(NoteListCache.class),
+                noteSearchIndex, noteChangeRepository, noteChangeFeed);
+        mvc = MockMvcBuilders.standaloneSetup(new NoteController(noteService, mock(NoteExportService.class),
+                mock(NoteImportService.class), mock(NoteAccessSketch.class), noteChangeFeed))
+                .setControllerAdvice(new MyRestControllerAdvice())
+                .build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        dataSource.close();
+    }
+
+    @Test
+    void returnsNotModifiedForMatchingETag() throws Exception {
+        Note note = save("заметка", "тег");
+
+        String eTag = eTagOf(note.getId());
+        mvc.perform(get("/note/{id}", note.getId()).header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    void changesETagWhenTagIsRenamedOrLinked() throws Exception {
+        Note note = save("заметка", "тег");
+        Long tagId = noteRepository.getById(note.getId()).getNoteTags().get(0).getTag().getId();
+        String original = eTagOf(note.getId());
+
+        tagRepository.update(Tag.builder().name("новый тег").colour("#00ff00").build(), tagId);
+        String renamed = eTagOf(note.getId());
+        assertNotEquals(original, renamed);
+        mvc.perform(get("/note/{id}", note.getId()).header(HttpHeaders.IF_NONE_MATCH, original))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.tags[0].name").value("новый тег"));
+
+        Tag other = tagRepository.save(Tag.builder().name("другой").colour("#0000ff").build());
+        noteTagRepository.addTagToNote(note.getId(), other.getId());
+        assertNotEquals(renamed, eTagOf(note.getId()));
+    }
+
+    @Test
+    void returnsOnlyNotesChangedOrDeletedSince() throws Exception {
+        save("без изменений", "тег");
+        Note updated = save("изменится", "тег");
+        Note deleted = save("удалится", "тег");
+        noteChangeFeed.poll();
+        long since = noteChangeFeed.getPublishedVersion();
+
+        noteRepository.update(Note.builder()
+                .name("изменена")
+                .dateOfCreation(LocalDate.of(2024, 5, 1))
+                .dateOfUpdate(LocalDate.of(2024, 5, 2))
+                .isDone(true)
+                .build(), updated.getId());
+        noteRepository.delete(deleted.getId());
+        noteChangeFeed.poll();
+
+        mvc.perform(get("/note").param("since", String.valueOf(since)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.version").value(noteChangeFeed.getPublishedVersion()))
+                .andExpect(jsonPath("$.notes.length()").value(1))
+                .andExpect(jsonPath("$.notes[0].id").value(updated.getId()))
+                .andExpect(jsonPath("$.notes[0].name").value("изменена"))
+                .andExpect(jsonPath("$.deleted.length()").value(1))
+                .andExpect(jsonPath("$.deleted[0]").value(deleted.getId()))
+                .andExpect(jsonPath("$.reset").value(false));
+
+        mvc.perform(get("/note").param("since", String.valueOf(noteChangeFeed.getPublishedVersion())))
+                .andExpect(jsonPath("$.notes.length()").value(0))
+                .andExpect(jsonPath("$.deleted.length()").value(0));
+    }
+
+    @Test
+    void answersSearchAndFacetsWithUnavailableUntilTheIndexIsBuilt() throws Exception {
+        save("заметка", "тег");
+
+        mvc.perform(get("/note/search").param("q", "заметка"))
+                .andExpect(status().isServiceUnavailable());
+        mvc.perform(get("/note/facets"))
+                .andExpect(status().isServiceUnavailable());
+    }
+
+    private String eTagOf(Long id) throws Exception {
+        return mvc.perform(get("/note/{id}", id))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+    }
+
+    private Note save(String name, String tag) {
+        return noteRepository.save(Note.builder()
+                        .name(name)
+                        .dateOfCreation(LocalDate.of(2024, 5, 1))
+                        .dateOfUpdate(LocalDate.of(2024, 5, 1))
+                        .isDone(false)
+                        .noteCategories(new ArrayList<>())
+                        .noteTags(new ArrayList<>())
+                        .build(),
+                List.of(CategoryDto.builder().name("категория").build()),
+                List.of(TagDto.builder().name(tag).colour("#ff0000").build()));
+    }
+}
@@ -0,0 +1,256 @@
+package com.example.note.demo.repository;
+
+import com.example.note.demo.dto.CategoryDto;
+import com.example.note.demo.dto.NoteFilter;
+import com.example.note.demo.dto.NoteSelectionDto;
+import com.example.note.demo.dto.TagDto;
+import com.example.note.demo.model.Category;
+import com.example.note.demo.model.Note;
+import com.example.note.demo.model.NoteCategory;
+import com.example.note.demo.model.NoteTag;
+import com.example.note.demo.model.Tag;
+import com.example.note.demo.util.exception.NoDataFoundException;
+import com.example.note.demo.util.exception.ObjectAlreadyInTableException;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Runs every repository method against the schema, records each SQL statement with its parameters
+ * and checks with {@code EXPLAIN} that none of them scans a whole table. Statements without a
+ * WHERE clause, such as the export, read whole tables by design and are left out.
+ */
+class QueryPlanTest {
+    private static final Map<String, List<Object[]>> STATEMENTS = new ConcurrentHashMap<>();
+
+    private static HikariDataSource dataSource;
+    private static JdbcTemplate template;
+
+    @BeforeAll
+    static void runRepositories() {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl("jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        Flyway.configure().dataSource(dataSource).load().migrate();
+        template = new JdbcTemplate(dataSource);
+        JdbcTemplate recording = new JdbcTemplate(new RecordingDataSource(dataSource));
+
+        NoteChangeRepository noteChangeRepository = new NoteChangeRepository(recording);
+        NoteRepository noteRepository = new NoteRepository(recording, noteChangeRepository, new SimpleMeterRegistry());
+        CategoryRepository categoryRepository = new CategoryRepository(recording, noteChangeRepository);
+        TagRepository tagRepository = new TagRepository(recording, noteChangeRepository);
+        NoteCategoryRepository noteCategoryRepository = new NoteCategoryRepository(recording, noteChangeRepository);
+        NoteTagRepository noteTagRepository = new NoteTagRepository(recording, noteChangeRepository);
+        NoteExportRepository noteExportRepository = new NoteExportRepository(recording, 100);
+
+        for (int i = 0; i < 50; i++) {
+            noteRepository.save(note("note " + i),
+                    List.of(CategoryDto.builder().name("category " + i % 5).build()),
+                    List.of(TagDto.builder().name("tag " + i % 7).colour("#00ff00").build()));
+        }
+        noteRepository.saveAll(List.of(
+                withRelations(note("imported"), "category 1", "tag 1"),
+                withRelations(note("imported new"), "new category", "new tag")));
+        Category category = categoryRepository.save(Category.builder().name("category").build());
+        Tag tag = tagRepository.save(Tag.builder().name("tag").colour("#ff0000").build());
+
+        noteRepository.getById(1L);
+        noteRepository.getAll();
+        noteRepository.getPage(0L, 10, new NoteFilter());
+        noteRepository.getPage(5L, 10, new NoteFilter(true, LocalDate.of(2024, 1, 1), LocalDate.of(2024, 12, 31),
+                1L, 1L));
+        noteRepository.update(note("updated"), 2L);
+        categoryRepository.getById(category.getId());
+        categoryRepository.getAll();
+        categoryRepository.update(Category.builder().name("renamed category").build(), category.getId());
+        tagRepository.getById(tag.getId());
+        tagRepository.getAll();
+        tagRepository.update(Tag.builder().name("renamed tag").colour("#0000ff").build(), tag.getId());
+
+        noteCategoryRepository.addCategoryToNote(3L, category.getId());
+        noteCategoryRepository.updateCategoryInNote(3L, category.getId(), 2L);
+        noteCategoryRepository.deleteCategoryFromNote(3L, 2L);
+        noteTagRepository.addTagToNote(3L, tag.getId());
+        noteTagRepository.updateTagInNote(3L, tag.getId(), 2L);
+        noteTagRepository.deleteTagFromNote(3L, 2L);
+        assertThrows(NoDataFoundException.class, () -> noteTagRepository.addTagToNote(3L, -1L));
+        assertThrows(NoDataFoundException.class, () -> noteCategoryRepository.updateCategoryInNote(-1L, 1L, 2L));
+        assertThrows(NoDataFoundException.class, () -> noteTagRepository.deleteTagFromNote(3L, 2L));
+        noteTagRepository.addTagToNote(5L, tag.getId());
+        assertThrows(ObjectAlreadyInTableException.class, () -> noteTagRepository.addTagToNote(5L, tag.getId()));
+        noteTagRepository.deleteTagFromNote(5L, tag.getId());
+        List<Long> selected = noteRepository.findIds(NoteSelectionDto.builder().noteIds(List.of(6L, 7L, 8L)).build());
+        noteTagRepository.addTagToNotes(selected, tag.getId());
+        noteTagRepository.updateTagInNotes(selected, tag.getId(), 1L);
+        noteTagRepository.deleteTagFromNotes(selected, 1L);
+        selected = noteRepository.findIds(NoteSelectionDto.builder().filter(new NoteFilter(false, null, null,
+                1L, null)).build());
+        noteCategoryRepository.addCategoryToNotes(selected, category.getId());
+        noteCategoryRepository.updateCategoryInNotes(selected, category.getId(), 2L);
+        noteCategoryRepository.deleteCategoryFromNotes(selected, 2L);
+        noteExportRepository.streamAll(note -> {
+        });
+
+        noteRepository.delete(4L);
+        noteChangeRepository.findAfter(10L, noteChangeRepository.getLatestVersion(), 100);
+        noteRepository.getChangedAfter(40L, noteChangeRepository.getLatestVersion(), 100);
+        noteChangeRepository.findDeletedAfter(40L, noteChangeRepository.getLatestVersion());
+        noteChangeRepository.deleteUpTo(noteChangeRepository.getOldestVersion());
+        categoryRepository.delete(category.getId());
+        tagRepository.delete(tag.getId());
+    }
+
+    @AfterAll
+    static void close() {
+        dataSource.close();
+    }
+
+    @Test
+    void repositoryStatementsUseIndexes() {
+        assertTrue(STATEMENTS.size() > 20, "Expected every repository statement to be recorded");
+        List<String> fullScans = new ArrayList<>();
+        STATEMENTS.forEach((sql, parameters) -> {
+            if (!hasWhereClause(sql)) {
+                return;
+            }
+            String plan = explain(sql, parameters);
+            if (plan.contains(".tableScan")) {
+                fullScans.add(sql.strip() + "\n" + plan);
+            }
+        });
+        if (!fullScans.isEmpty()) {
+            fail("Full table scans:\n\n" + String.join("\n\n", fullScans));
+        }
+    }
+
+    private static boolean hasWhereClause(String sql) {
+        String normalized = sql.strip().toUpperCase(Locale.ROOT);
+        return normalized.contains("WHERE") || normalized.startsWith("MERGE");
+    }
+
+    private static String explain(String sql, List<Object[]> parameters) {
+        return template.execute((Connection connection) -> {
+            try (PreparedStatement statement = connection.prepareStatement("EXPLAIN " + sql)) {
+                for (Object[] call : parameters) {
+                    Method setter = (Method) call[0];
+                    setter.invoke(statement, (Object[]) call[1]);
+                }
+                try (ResultSet plan = statement.executeQuery()) {
+                    StringBuilder result = new StringBuilder();
+                    while (plan.next()) {
+                        result.append(plan.getString(1));
+                    }
+                    return result.toString();
+                }
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+
+    private static Note note(String name) {
+        return Note.builder()
+                .name(name)
+                .dateOfCreation(LocalDate.of(2024, 5, 1))
+                .dateOfUpdate(LocalDate.of(2024, 5, 1))
+                .isDone(false)
+                .noteCategories(new ArrayList<>())
+                .noteTags(new ArrayList<>())
+                .build();
+    }
+
+    private static Note withRelations(Note note, String category, String tag) {
+        note.getNoteCategories().add(NoteCategory.builder()
+                .note(note)
+                .category(Category.builder().name(category).build())
+                .build());
+        note.getNoteTags().add(NoteTag.builder()
+                .note(note)
+                .tag(Tag.builder().name(tag).colour("#00ff00").build())
+                .build());
+        return note;
+    }
+
+    /**
+     * Records the SQL of every prepared statement with the parameter setters called before its
+     * first execution.
+     */
+    private static class RecordingDataSource extends DelegatingDataSource {
+        RecordingDataSource(DataSource dataSource) {
+            super(dataSource);
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            Connection connection = super.getConnection();
+            return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class},
+                    (proxy, method, args) -> {
+                        Object result = invoke(connection, method, args);
+                        if (method.getName().equals("prepareStatement")) {
+                            return recording((PreparedStatement) result, (String) args[0]);
+                        }
+                        if (method.getName().equals("createStatement")) {
+                            return recording((Statement) result);
+                        }
+                        return result;
+                    });
+        }
+
+        private static PreparedStatement recording(PreparedStatement statement, String sql) {
+            List<Object[]> parameters = new ArrayList<>();
+            return (PreparedStatement) Proxy.newProxyInstance(RecordingDataSource.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class}, (proxy, method, args) -> {
+                        String name = method.getName();
+                        if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+                            parameters.add(new Object[]{method, args});
+                        } else if (name.startsWith("execute") || name.equals("addBatch")) {
+                            STATEMENTS.putIfAbsent(sql, List.copyOf(parameters));
+                        }
+                        return invoke(statement, method, args);
+                    });
+        }
+
+        private static Statement recording(Statement statement) {
+            return (Statement) Proxy.newProxyInstance(RecordingDataSource.class.getClassLoader(),
+                    new Class<?>[]{Statement.class}, (proxy, method, args) -> {
+                        if (method.getName().startsWith("execute") && args != null && args[0] instanceof String sql) {
+                            STATEMENTS.putIfAbsent(sql, List.of());
+                        }
+                        return invoke(statement, method, args);
+                    });
+        }
+
+        private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getTargetException();
+            }
+        }
+    }
+}
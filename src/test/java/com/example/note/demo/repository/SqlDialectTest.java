@@ -0,0 +1,109 @@
+package com.example.note.demo.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SqlDialectTest {
+    private static final String MERGE = """
+            MERGE INTO names n
+            USING (VALUES (CAST(? AS VARCHAR(100)))) AS s(name)
+            ON n.name = s.name
+            WHEN NOT MATCHED THEN INSERT (name) VALUES (s.name)
+            """;
+    private static final String INSERT = """
+            INSERT INTO names (name)
+            VALUES (?)
+            ON CONFLICT (name) DO NOTHING
+            """;
+
+    private DriverManagerDataSource dataSource;
+    private JdbcTemplate template;
+
+    @BeforeEach
+    void createTable() {
+        dataSource = new DriverManagerDataSource("jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=5000");
+        template = new JdbcTemplate(dataSource);
+        template.execute("CREATE TABLE names (id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, "
+                + "name VARCHAR(100) NOT NULL, CONSTRAINT uq_names_name UNIQUE (name))");
+    }
+
+    @Test
+    void detectsH2() {
+        assertEquals(SqlDialect.H2, SqlDialect.of(template));
+    }
+
+    @Test
+    void insertsOnlyMissingRows() {
+        template.update("INSERT INTO names (name) VALUES ('b')");
+
+        int[] counts = SqlDialect.H2.insertMissing(template, MERGE, INSERT, rows("a", "b", "c"));
+
+        assertArrayEquals(new int[]{1, 0, 1}, counts);
+        assertEquals(3, template.queryForObject("SELECT COUNT(*) FROM names", Integer.class));
+    }
+
+    @Test
+    void mergesAgainRowsInsertedConcurrently() throws Exception {
+        try (Connection concurrent = dataSource.getConnection()) {
+            concurrent.setAutoCommit(false);
+            try (Statement statement = concurrent.createStatement()) {
+                statement.executeUpdate("INSERT INTO names (name) VALUES ('b')");
+            }
+            // the merge waits for the lock on 'b' and fails with a duplicate once it is committed
+            CompletableFuture<Void> commit = CompletableFuture.runAsync(() -> {
+                try {
+                    TimeUnit.MILLISECONDS.sleep(300);
+                    concurrent.commit();
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+
+            int[] counts = SqlDialect.H2.insertMissing(template, MERGE, INSERT, rows("a", "b", "c"));
+
+            commit.get(5, TimeUnit.SECONDS);
+            assertArrayEquals(new int[]{1, 0, 1}, counts);
+        }
+        assertEquals(List.of("a", "b", "c"), template.queryForList("SELECT name FROM names ORDER BY name", String.class));
+    }
+
+    @Test
+    void tellsWhichForeignKeyWasViolated() {
+        template.execute("CREATE TABLE tags (id BIGINT PRIMARY KEY)");
+        template.execute("CREATE TABLE notes (id BIGINT PRIMARY KEY)");
+        template.execute("CREATE TABLE note_tag (note_id BIGINT NOT NULL REFERENCES notes(id), "
+                + "tag_id BIGINT NOT NULL REFERENCES tags(id))");
+        template.update("INSERT INTO notes (id) VALUES (1)");
+        template.update("INSERT INTO tags (id) VALUES (1)");
+
+        DataIntegrityViolationException missingTag = assertThrows(DataIntegrityViolationException.class,
+                () -> template.update("INSERT INTO note_tag (note_id, tag_id) VALUES (1, 2)"));
+        assertTrue(SqlDialect.isForeignKeyViolation(missingTag, "tag_id"));
+        assertFalse(SqlDialect.isForeignKeyViolation(missingTag, "note_id"));
+
+        DataIntegrityViolationException missingNote = assertThrows(DataIntegrityViolationException.class,
+                () -> template.update("INSERT INTO note_tag (note_id, tag_id) VALUES (2, 1)"));
+        assertTrue(SqlDialect.isForeignKeyViolation(missingNote, "note_id"));
+        assertFalse(SqlDialect.isForeignKeyViolation(missingNote, "tag_id"));
+    }
+
+    private static List<Object[]> rows(String... names) {
+        return List.of(names).stream().map(name -> new Object[]{name}).toList();
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.note.demo.service;
+
+import com.example.note.demo.configuration.cache.CacheEntryPatcher;
+import com.example.note.demo.dto.NoteDto;
+import com.example.note.demo.dto.TagDto;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class NoteCacheUpdaterTest {
+    private static final TagDto FIRST = TagDto.builder().id(1L).name("первый").build();
+    private static final TagDto SECOND = TagDto.builder().id(2L).name("второй").build();
+
+    private final Cache notes = mock(Cache.class);
+    private final NoteListCache noteListCache = mock(NoteListCache.class);
+    private NoteDto cached;
+    private NoteCacheUpdater updater;
+
+    @BeforeEach
+    void setUp() {
+        CacheEntryPatcher cacheEntryPatcher = mock(CacheEntryPatcher.class);
+        when(cacheEntryPatcher.patch(eq("notes"), eq(1L), eq(NoteDto.class), any())).thenAnswer(invocation -> {
+            if (cached == null) {
+                return null;
+            }
+            UnaryOperator<NoteDto> change = invocation.getArgument(3);
+            NoteDto patched = change.apply(copy(cached));
+            if (patched != null) {
+                cached = patched;
+            }
+            return patched;
+        });
+        doAnswer(invocation -> {
+            cached = null;
+            return null;
+        }).when(notes).evict(1L);
+        CacheManager cacheManager = mock(CacheManager.class);
+        when(cacheManager.getCache("notes")).thenReturn(notes);
+        updater = new NoteCacheUpdater(cacheEntryPatcher, noteListCache, cacheManager);
+        cached = NoteDto.builder().id(1L).name("заметка").tags(List.of()).version(10L).build();
+    }
+
+    @Test
+    void patchesCachedNoteInOrder() {
+        updater.replaceTag(1L, null, FIRST, 11);
+        updater.replaceTag(1L, null, SECOND, 12);
+
+        assertEquals(List.of(1L, 2L), cached.getTags().stream().map(TagDto::getId).toList());
+        assertEquals(12L, cached.getVersion());
+        verify(notes, never()).evict(any());
+        verify(noteListCache, times(2)).update(eq(1L), any());
+        verify(noteListCache, never()).invalidate();
+    }
+
+    @Test
+    void evictsCachedNoteWhenPatchesArriveInReverseOrder() {
+        updater.replaceTag(1L, null, SECOND, 12);
+        assertEquals(12L, cached.getVersion());
+
+        // the change at version 11 is not in the cached note patched to version 12
+        updater.replaceTag(1L, null, FIRST, 11);
+
+        verify(notes).evict(1L);
+        assertNull(cached);
+    }
+
+    @Test
+    void skipsPatchOfTheCachedVersion() {
+        cached.setTags(List.of(FIRST));
+        cached.setVersion(11L);
+
+        updater.replaceTag(1L, null, FIRST, 11);
+
+        assertEquals(11L, cached.getVersion());
+        assertEquals(List.of(FIRST.getId()), cached.getTags().stream().map(TagDto::getId).toList());
+        verify(notes, never()).evict(any());
+    }
+
+    private static NoteDto copy(NoteDto note) {
+        return NoteDto.builder()
+                .id(note.getId())
+                .name(note.getName())
+                .tags(new ArrayList<>(note.getTags()))
+                .version(note.getVersion())
+                .build();
+    }
+}
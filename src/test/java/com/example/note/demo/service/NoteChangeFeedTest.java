@@ -0,0 +1,183 @@
+package com.example.note.demo.service;
+
+import com.example.note.demo.dto.NoteChangeDto;
+import com.example.note.demo.model.Note;
+import com.example.note.demo.repository.NoteChangeRepository;
+import com.example.note.demo.repository.NoteRepository;
+import com.example.note.demo.util.mapper.NoteMapper;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class NoteChangeFeedTest {
+    private static final Duration GAP_TIMEOUT = Duration.ofMillis(200);
+
+    private HikariDataSource dataSource;
+    private NoteChangeRepository noteChangeRepository;
+    private NoteRepository noteRepository;
+    private NoteChangeFeed feed;
+
+    @BeforeEach
+    void setUp() {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl("jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        Flyway.configure().dataSource(dataSource).load().migrate();
+        JdbcTemplate template = new JdbcTemplate(dataSource);
+        noteChangeRepository = new NoteChangeRepository(template);
+        noteRepository = new NoteRepository(template, noteChangeRepository, new SimpleMeterRegistry());
+        feed = new NoteChangeFeed(noteChangeRepository, noteRepository, new NoteMapper(),
+                new NoteSearchIndex(null, new SimpleMeterRegistry(), 10000), new SimpleMeterRegistry(),
+                500, 100, 100000, GAP_TIMEOUT);
+        feed.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        dataSource.close();
+    }
+
+    @Test
+    void publishesNewChangesWithTheirNotes() throws Exception {
+        CompletableFuture<List<NoteChangeDto>> events = feed.changes(null).take(2).collectList().toFuture();
+        Note note = save("первая");
+        noteRepository.delete(note.getId());
+        feed.poll();
+
+        List<NoteChangeDto> changes = events.get(5, TimeUnit.SECONDS);
+        assertEquals(List.of("created", "deleted"), changes.stream().map(NoteChangeDto::getType).toList());
+        assertEquals(note.getId(), changes.get(0).getNoteId());
+        assertNull(changes.get(1).getNote());
+        assertEquals(changes.get(1).getVersion(), feed.getPublishedVersion());
+    }
+
+    @Test
+    void resetsSubscribersWhenGapOutlastsTheTimeout() throws Exception {
+        Note note = save("до разрыва");
+        feed.poll();
+        long beforeGap = feed.getPublishedVersion();
+        CompletableFuture<List<NoteChangeDto>> events = feed.changes(null).take(2).collectList().toFuture();
+
+        try (Connection pending = dataSource.getConnection()) {
+            pending.setAutoCommit(false);
+            insertChange(pending, note.getId());
+            Note afterGap = save("после разрыва");
+
+            feed.poll();
+            assertEquals(beforeGap, feed.getPublishedVersion());
+
+            Thread.sleep(GAP_TIMEOUT.toMillis() + 100);
+            feed.poll();
+            assertEquals(afterGap.getVersion(), feed.getPublishedVersion());
+            pending.rollback();
+        }
+        Note next = save("следующая");
+        feed.poll();
+
+        List<NoteChangeDto> changes = events.get(5, TimeUnit.SECONDS);
+        assertEquals(NoteChangeDto.RESET, changes.get(0).getType());
+        assertEquals(beforeGap + 2, changes.get(0).getVersion());
+        assertEquals("created", changes.get(1).getType());
+        assertEquals(next.getId(), changes.get(1).getNoteId());
+    }
+
+    @Test
+    void restartsTheGapTimeoutWhenTheMissingVersionChanges() throws Exception {
+        Note note = save("до разрыва");
+        feed.poll();
+        long beforeGap = feed.getPublishedVersion();
+        CompletableFuture<List<NoteChangeDto>> events = feed.changes(null).take(4).collectList().toFuture();
+
+        try (Connection first = dataSource.getConnection(); Connection second = dataSource.getConnection()) {
+            first.setAutoCommit(false);
+            second.setAutoCommit(false);
+            insertChange(first, note.getId());
+            save("после первого разрыва");
+            feed.poll();
+            assertEquals(beforeGap, feed.getPublishedVersion());
+
+            Thread.sleep(GAP_TIMEOUT.toMillis() / 2 + 50);
+            first.commit();
+            insertChange(second, note.getId());
+            Note afterSecondGap = save("после второго разрыва");
+            feed.poll();
+            assertEquals(beforeGap + 2, feed.getPublishedVersion());
+
+            Thread.sleep(GAP_TIMEOUT.toMillis() / 2 + 50);
+            feed.poll();
+            assertEquals(beforeGap + 2, feed.getPublishedVersion());
+
+            second.commit();
+            feed.poll();
+            assertEquals(afterSecondGap.getVersion(), feed.getPublishedVersion());
+        }
+
+        List<NoteChangeDto> changes = events.get(5, TimeUnit.SECONDS);
+        assertEquals(List.of("updated", "created", "updated", "created"),
+                changes.stream().map(NoteChangeDto::getType).toList());
+        assertEquals(List.of(beforeGap + 1, beforeGap + 2, beforeGap + 3, beforeGap + 4),
+                changes.stream().map(NoteChangeDto::getVersion).toList());
+    }
+
+    @Test
+    void replaysChangesMissedSinceTheGivenVersion() throws Exception {
+        Note first = save("первая");
+        Note second = save("вторая");
+        feed.poll();
+
+        List<NoteChangeDto> changes = feed.changes(first.getVersion()).take(1).collectList()
+                .toFuture().get(5, TimeUnit.SECONDS);
+        assertEquals(second.getId(), changes.get(0).getNoteId());
+        assertEquals("вторая", changes.get(0).getNote().getName());
+    }
+
+    @Test
+    void resetsSubscribersResumingBeforeTheOldestChange() throws Exception {
+        Note first = save("первая");
+        save("вторая");
+        save("третья");
+        feed.poll();
+        noteChangeRepository.deleteUpTo(first.getVersion() + 1);
+
+        List<NoteChangeDto> changes = feed.changes(first.getVersion() - 1).take(1).collectList()
+                .toFuture().get(5, TimeUnit.SECONDS);
+        assertEquals(NoteChangeDto.RESET, changes.get(0).getType());
+        assertEquals(feed.getPublishedVersion(), changes.get(0).getVersion());
+    }
+
+    private static void insertChange(Connection connection, long noteId) throws Exception {
+        try (PreparedStatement insert = connection.prepareStatement(
+                "INSERT INTO note_changes (note_id, operation) VALUES (?, 'UPDATED')")) {
+            insert.setLong(1, noteId);
+            insert.executeUpdate();
+        }
+    }
+
+    private Note save(String name) {
+        Note note = noteRepository.save(Note.builder()
+                .name(name)
+                .dateOfCreation(LocalDate.of(2024, 5, 1))
+                .dateOfUpdate(LocalDate.of(2024, 5, 1))
+                .isDone(false)
+                .noteCategories(new ArrayList<>())
+                .noteTags(new ArrayList<>())
+                .build(), List.of(), List.of());
+        return noteRepository.getById(note.getId());
+    }
+}
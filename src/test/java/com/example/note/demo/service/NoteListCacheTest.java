@@ -0,0 +1,162 @@
+package com.example.note.demo.service;
+
+import com.example.note.demo.configuration.cache.CacheEntryPatcher;
+import com.example.note.demo.dto.NoteDto;
+import com.example.note.demo.dto.NoteListView;
+import com.example.note.demo.repository.NoteRepository;
+import com.example.note.demo.util.mapper.NoteMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.core.task.SyncTaskExecutor;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class NoteListCacheTest {
+    private static final int MAX_SIZE = 3;
+
+    private final Cache notes = mock(Cache.class);
+    private final CacheEntryPatcher cacheEntryPatcher = mock(CacheEntryPatcher.class);
+    private final NoteRepository noteRepository = mock(NoteRepository.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private NoteListView cached;
+    private boolean patchFails;
+    private NoteListCache noteListCache;
+
+    @BeforeEach
+    void setUp() {
+        when(notes.get("all", NoteListView.class)).thenAnswer(invocation -> cached);
+        doAnswer(invocation -> {
+            cached = null;
+            return null;
+        }).when(notes).evict("all");
+        when(cacheEntryPatcher.patch(eq("notes"), eq("all"), eq(NoteListView.class), any())).thenAnswer(invocation -> {
+            if (cached == null) {
+                return null;
+            }
+            UnaryOperator<NoteListView> change = invocation.getArgument(3);
+            NoteListView patched = change.apply(copy(cached));
+            if (patched == null || patchFails) {
+                return null;
+            }
+            cached = patched;
+            return patched;
+        });
+        CacheManager cacheManager = mock(CacheManager.class);
+        when(cacheManager.getCache("notes")).thenReturn(notes);
+        noteListCache = new NoteListCache(noteRepository, new NoteMapper(), cacheManager, cacheEntryPatcher,
+                new SyncTaskExecutor(), meterRegistry, MAX_SIZE, Duration.ofMinutes(1));
+        cached = view(false, note(1, 1), note(2, 1), note(4, 1));
+    }
+
+    @Test
+    void appliesWritesToTheViewById() {
+        noteListCache.put(note(3, 1));
+        noteListCache.put(note(2, 2));
+        noteListCache.remove(1L);
+
+        assertEquals(List.of(2L, 3L), ids(cached));
+        assertEquals(2L, cached.getNotes().get(0).getVersion());
+        verify(notes, never()).evict(any());
+    }
+
+    @Test
+    void keepsNewerNoteAndLeavesOutNotesPastTheView() {
+        noteListCache.put(note(2, 0));
+        noteListCache.put(note(5, 1));
+
+        assertEquals(List.of(1L, 2L, 4L), ids(cached));
+        assertEquals(1L, cached.getNotes().get(1).getVersion());
+        assertEquals(0L, cached.getVersion());
+    }
+
+    @Test
+    void invalidatesTheViewWhenPatchFails() {
+        patchFails = true;
+
+        noteListCache.put(note(2, 2));
+
+        verify(notes).evict("all");
+        assertNull(cached);
+    }
+
+    @Test
+    void readsCursorPastTheViewFromTheRepositoryWithoutLoadingIt() {
+        assertNull(noteListCache.getPage(4, 2));
+        cached = null;
+        assertNull(noteListCache.getPage(1, 2));
+
+        verifyNoInteractions(noteRepository);
+        assertEquals(2.0, meterRegistry.get("note.list.cache.requests").tag("result", "miss").counter().count());
+    }
+
+    @Test
+    void servesCursorOverSparseIdsFromTheView() {
+        cached = view(false, note(10, 1), note(20, 1), note(30, 1));
+
+        assertEquals(List.of(20L, 30L), noteListCache.getPage(10, 2).stream().map(NoteDto::getId).toList());
+
+        verifyNoInteractions(noteRepository);
+        assertEquals(1.0, meterRegistry.get("note.list.cache.requests").tag("result", "hit").counter().count());
+    }
+
+    @Test
+    void countsUncoveredPageAsMiss() {
+        assertEquals(List.of(1L, 2L), noteListCache.getPage(0, 2).stream().map(NoteDto::getId).toList());
+        assertNull(noteListCache.getPage(2, 2));
+
+        verifyNoInteractions(noteRepository);
+        assertEquals(1.0, meterRegistry.get("note.list.cache.requests").tag("result", "hit").counter().count());
+        assertEquals(1.0, meterRegistry.get("note.list.cache.requests").tag("result", "miss").counter().count());
+    }
+
+    private static List<Long> ids(NoteListView view) {
+        return view.getNotes().stream().map(NoteDto::getId).toList();
+    }
+
+    private static NoteListView view(boolean complete, NoteDto... notes) {
+        return NoteListView.builder()
+                .version(0)
+                .loadedAt(System.currentTimeMillis())
+                .complete(complete)
+                .notes(List.of(notes))
+                .build();
+    }
+
+    private static NoteListView copy(NoteListView view) {
+        List<NoteDto> notes = new ArrayList<>();
+        view.getNotes().forEach(note -> notes.add(note.toBuilder().build()));
+        return NoteListView.builder()
+                .version(view.getVersion())
+                .loadedAt(view.getLoadedAt())
+                .complete(view.isComplete())
+                .notes(notes)
+                .build();
+    }
+
+    private static NoteDto note(long id, long version) {
+        return NoteDto.builder()
+                .id(id)
+                .name("заметка " + id)
+                .categories(List.of())
+                .tags(List.of())
+                .version(version)
+                .build();
+    }
+}
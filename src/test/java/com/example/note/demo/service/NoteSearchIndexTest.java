@@ -0,0 +1,213 @@
+package com.example.note.demo.service;
+
+import com.example.note.demo.dto.CategoryDto;
+import com.example.note.demo.dto.NoteDto;
+import com.example.note.demo.dto.NoteFacetFilter;
+import com.example.note.demo.dto.NoteFacetsDto;
+import com.example.note.demo.dto.TagDto;
+import com.example.note.demo.model.Note;
+import com.example.note.demo.model.NoteTag;
+import com.example.note.demo.model.Tag;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class NoteSearchIndexTest {
+    private final NoteSearchIndex index = new NoteSearchIndex(null, new SimpleMeterRegistry(), 10000);
+
+    @Test
+    void tokenizesOnAnythingButLettersAndDigits() {
+        assertEquals(List.of("купить", "елку", "2", "шт"), NoteSearchIndex.tokenize("Купить ЁЛКУ, 2 шт.!"));
+        assertEquals(List.of("a", "b", "c3"), NoteSearchIndex.tokenize("  A-b_c3 "));
+        assertEquals(List.of(), NoteSearchIndex.tokenize(" ,.; "));
+        assertEquals(List.of(), NoteSearchIndex.tokenize(null));
+    }
+
+    @Test
+    void matchesEveryQueryTermAsPrefix() {
+        index(1, "Купить молоко");
+        index(2, "Купить хлеб");
+        index(3, "Молочный коктейль");
+
+        assertEquals(List.of(1L), index.search("куп мол", null, null, 10));
+        assertEquals(List.of(1L, 3L), sorted(index.search("мол", null, null, 10)));
+        assertEquals(List.of(), index.search("купить сыр", null, null, 10));
+        assertEquals(List.of(3L), index.search("МОЛОЧНЫЙ", null, null, 10));
+    }
+
+    @Test
+    void matchesSingleCharacterTermsOnlyExactly() {
+        index(1, "a");
+        index(2, "ab");
+
+        assertEquals(List.of(1L), index.search("a", null, null, 10));
+        assertEquals(List.of(2L), index.search("ab", null, null, 10));
+    }
+
+    @Test
+    void ranksExactMatchesAbovePrefixMatches() {
+        index(1, "кот");
+        index(2, "котлета");
+
+        assertEquals(List.of(1L, 2L), index.search("кот", null, null, 10));
+    }
+
+    @Test
+    void ranksShorterNamesAboveLongerOnes() {
+        index(1, "отчет за квартал");
+        index(2, "отчет");
+
+        assertEquals(List.of(2L, 1L), index.search("отчет", null, null, 10));
+    }
+
+    @Test
+    void ranksRareTermsAboveCommonOnes() {
+        index(1, "milk");
+        index(2, "milk");
+        index(3, "mint");
+        index(4, "milk");
+
+        assertEquals(List.of(3L, 4L, 2L, 1L), index.search("mi", null, null, 10));
+        assertEquals(List.of(3L, 4L), index.search("mi", null, null, 2));
+    }
+
+    @Test
+    void ranksOnlyTheNewestCandidates() {
+        NoteSearchIndex bounded = new NoteSearchIndex(null, new SimpleMeterRegistry(), 2);
+        bounded.index(NoteDto.builder().id(1L).name("отчет").build());
+        bounded.index(NoteDto.builder().id(2L).name("отчет за год").build());
+        bounded.index(NoteDto.builder().id(3L).name("отчет за квартал").build());
+
+        assertEquals(List.of(2L, 3L), sorted(bounded.search("отчет", null, null, 10)));
+    }
+
+    @Test
+    void filtersByTag() {
+        index.index(NoteDto.builder().id(1L).name("план").tags(List.of(TagDto.builder().id(7L).build())).build());
+        index(2, "план");
+
+        assertEquals(List.of(1L), index.search("план", 7L, null, 10));
+        assertEquals(List.of(), index.search("план", 8L, null, 10));
+    }
+
+    @Test
+    void leavesOutNotesWhoseIdsDoNotFit() {
+        long large = 1L << Integer.SIZE;
+        index(1, "отчет");
+        index(large, "отчет за год");
+        linked(large + 1, true, List.of(1L), List.of(10L));
+        index.unlinkTag(large + 1, 1L);
+        index.remove(large);
+
+        assertEquals(List.of(1L), index.search("отчет", null, null, 10));
+        assertEquals(1, index.facets(new NoteFacetFilter()).getTotal());
+    }
+
+    @Test
+    void refreshReindexesFoundNotesAndRemovesTheRest() {
+        index(1, "старое имя");
+        index(2, "удаленная");
+
+        index.refresh(List.of(1L, 2L), List.of(Note.builder()
+                .id(1L)
+                .name("новое имя")
+                .isDone(true)
+                .noteTags(List.of(NoteTag.builder().tag(Tag.builder().id(5L).build()).build()))
+                .noteCategories(List.of())
+                .build()));
+
+        assertEquals(List.of(), index.search("старое", null, null, 10));
+        assertEquals(List.of(1L), index.search("новое", 5L, null, 10));
+        assertEquals(List.of(), index.search("удаленная", null, null, 10));
+    }
+
+    @Test
+    void countsFacetsOfAllNotes() {
+        linked(1, true, List.of(1L, 2L), List.of(10L));
+        linked(2, false, List.of(1L), List.of(10L, 20L));
+        linked(3, false, List.of(), List.of());
+
+        NoteFacetsDto facets = index.facets(new NoteFacetFilter());
+        assertEquals(3, facets.getTotal());
+        assertEquals(1, facets.getDone());
+        assertEquals(Map.of(1L, 2L, 2L, 1L), facets.getTags());
+        assertEquals(Map.of(10L, 2L, 20L, 1L), facets.getCategories());
+    }
+
+    @Test
+    void countsFacetsOfFilteredNotes() {
+        linked(1, true, List.of(1L, 2L), List.of(10L));
+        linked(2, false, List.of(1L), List.of(10L, 20L));
+        linked(3, false, List.of(2L), List.of());
+
+        NoteFacetsDto all = index.facets(NoteFacetFilter.builder().tagId(List.of(1L, 2L)).build());
+        assertEquals(1, all.getTotal());
+        assertEquals(Map.of(1L, 1L, 2L, 1L), all.getTags());
+
+        NoteFacetsDto any = index.facets(NoteFacetFilter.builder().tagId(List.of(1L, 2L)).any(true).build());
+        assertEquals(3, any.getTotal());
+        assertEquals(Map.of(10L, 2L, 20L, 1L), any.getCategories());
+
+        NoteFacetsDto notDone = index.facets(NoteFacetFilter.builder().categoryId(List.of(10L)).isDone(false).build());
+        assertEquals(1, notDone.getTotal());
+        assertEquals(0, notDone.getDone());
+        assertEquals(Map.of(1L, 1L), notDone.getTags());
+    }
+
+    @Test
+    void countsFacetsOfSmallSelectionsByTheirLinks() {
+        for (long id = 1; id <= 40; id++) {
+            linked(id, id % 2 == 0, List.of(1L), List.of(10L));
+        }
+        linked(41, true, List.of(1L, 2L), List.of(20L));
+
+        NoteFacetsDto facets = index.facets(NoteFacetFilter.builder().tagId(List.of(2L)).build());
+        assertEquals(1, facets.getTotal());
+        assertEquals(1, facets.getDone());
+        assertEquals(Map.of(1L, 1L, 2L, 1L), facets.getTags());
+        assertEquals(Map.of(20L, 1L), facets.getCategories());
+    }
+
+    @Test
+    void countsFacetsOfNotesRefreshedFromTheChangeFeed() {
+        linked(1, false, List.of(1L), List.of(10L));
+        linked(2, false, List.of(1L), List.of(10L));
+
+        // note 1 was marked done and moved to tag 2 on another node, note 2 was deleted there
+        index.refresh(List.of(1L, 2L), List.of(Note.builder()
+                .id(1L)
+                .name("note")
+                .isDone(true)
+                .noteTags(List.of(NoteTag.builder().tag(Tag.builder().id(2L).build()).build()))
+                .noteCategories(List.of())
+                .build()));
+
+        NoteFacetsDto facets = index.facets(new NoteFacetFilter());
+        assertEquals(1, facets.getTotal());
+        assertEquals(1, facets.getDone());
+        assertEquals(Map.of(2L, 1L), facets.getTags());
+        assertEquals(Map.of(), facets.getCategories());
+    }
+
+    private void linked(long id, boolean done, List<Long> tagIds, List<Long> categoryIds) {
+        index.index(NoteDto.builder()
+                .id(id)
+                .name("note " + id)
+                .isDone(done)
+                .tags(tagIds.stream().map(tagId -> TagDto.builder().id(tagId).build()).toList())
+                .categories(categoryIds.stream().map(categoryId -> CategoryDto.builder().id(categoryId).build()).toList())
+                .build());
+    }
+
+    private void index(long id, String name) {
+        index.index(NoteDto.builder().id(id).name(name).build());
+    }
+
+    private static List<Long> sorted(List<Long> ids) {
+        return ids.stream().sorted().toList();
+    }
+}